@@ -0,0 +1,98 @@
+package com.fixme.authservice.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Which destinations have at least one subscriber on this node (the simple broker does not say).
+// Fed by SUBSCRIBE / UNSUBSCRIBE / DISCONNECT frames on the inbound channel, see WebSocketConfig.
+@Component
+public class LocalSubscriptions implements ChannelInterceptor {
+
+    private static final String USER_PREFIX = "/user/";
+
+    // guarded by this
+    private final Map<String, Map<String, String>> bySession = new HashMap<>(); // session → subscription id → destination
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    private volatile Runnable onChange = () -> { };
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getCommand() == null || accessor.getSessionId() == null) return message;
+
+        boolean changed = switch (accessor.getCommand()) {
+            case SUBSCRIBE -> subscribe(accessor.getSessionId(), accessor.getSubscriptionId(),
+                    key(accessor.getDestination(), accessor.getUser()));
+            case UNSUBSCRIBE -> unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+            case DISCONNECT -> disconnect(accessor.getSessionId());
+            default -> false;
+        };
+        if (changed) onChange.run();
+        return message;
+    }
+
+    // /user/queue/x of user 42 is tracked as /user/42/queue/x, the destination it is sent to
+    public static String userDestination(String userName, String queue) {
+        return USER_PREFIX + userName + queue;
+    }
+
+    private static String key(String destination, Principal user) {
+        if (destination == null || !destination.startsWith(USER_PREFIX) || user == null) return destination;
+        return userDestination(user.getName(), destination.substring(USER_PREFIX.length() - 1));
+    }
+
+    public synchronized boolean hasSubscribers(String destination) {
+        return counts.containsKey(destination);
+    }
+
+    public synchronized Set<String> destinations() {
+        return new HashSet<>(counts.keySet());
+    }
+
+    // called after the set of destinations() changed (one listener: the cluster publisher)
+    public void onChange(Runnable listener) {
+        this.onChange = listener;
+    }
+
+    // true when a destination got its first subscriber
+    private synchronized boolean subscribe(String session, String subscriptionId, String destination) {
+        if (subscriptionId == null || destination == null) return false;
+        String previous = bySession.computeIfAbsent(session, s -> new HashMap<>()).put(subscriptionId, destination);
+        boolean changed = previous != null && decrement(previous);
+        return counts.merge(destination, 1, Integer::sum) == 1 || changed;
+    }
+
+    private synchronized boolean unsubscribe(String session, String subscriptionId) {
+        Map<String, String> subscriptions = bySession.get(session);
+        if (subscriptions == null || subscriptionId == null) return false;
+        String destination = subscriptions.remove(subscriptionId);
+        if (subscriptions.isEmpty()) bySession.remove(session);
+        return destination != null && decrement(destination);
+    }
+
+    private synchronized boolean disconnect(String session) {
+        Map<String, String> subscriptions = bySession.remove(session);
+        if (subscriptions == null) return false;
+        boolean changed = false;
+        for (String destination : subscriptions.values()) {
+            changed |= decrement(destination);
+        }
+        return changed;
+    }
+
+    // true when the destination lost its last subscriber
+    private boolean decrement(String destination) {
+        Integer left = counts.computeIfPresent(destination, (d, n) -> n == 1 ? null : n - 1);
+        return left == null;
+    }
+}
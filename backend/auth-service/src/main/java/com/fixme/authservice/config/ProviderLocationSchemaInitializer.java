@@ -0,0 +1,50 @@
+package com.fixme.authservice.config;
+
+import com.fixme.authservice.repository.ProviderBusinessRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Adds provider_business.location (POINT, SRID 0, x = lng / y = lat) + a SPATIAL INDEX on it.
+// Hibernate's ddl-auto can't create either, so we do it once at startup (MySQL 8 only).
+// The column is generated from latitude/longitude, so the entity and the existing writes stay as they are.
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "nearby.search-backend", havingValue = "database")
+public class ProviderLocationSchemaInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // only here so the table already exists (ddl-auto) when we run
+    private final ProviderBusinessRepository businessRepository;
+
+    @PostConstruct
+    public void init() {
+        Integer hasColumn = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'provider_business' AND COLUMN_NAME = 'location'
+                """, Integer.class);
+
+        if (hasColumn == null || hasColumn == 0) {
+            // rows without a location get POINT(0 0); queries still filter on latitude/longitude IS NOT NULL
+            jdbcTemplate.execute("""
+                    ALTER TABLE provider_business
+                    ADD COLUMN location POINT SRID 0
+                    GENERATED ALWAYS AS (POINT(COALESCE(longitude, 0), COALESCE(latitude, 0))) STORED NOT NULL
+                    """);
+            System.out.println("provider_business.location column created");
+        }
+
+        Integer hasIndex = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.STATISTICS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'provider_business' AND INDEX_NAME = 'idx_provider_business_location'
+                """, Integer.class);
+
+        if (hasIndex == null || hasIndex == 0) {
+            jdbcTemplate.execute("CREATE SPATIAL INDEX idx_provider_business_location ON provider_business (location)");
+            System.out.println("provider_business spatial index created");
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.fixme.authservice.config;
 
+import com.fixme.authservice.security.JwtAuthenticationFilter;
+import com.fixme.authservice.security.TokenAuthenticator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationManagers;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -18,28 +28,47 @@ import java.util.List;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // a Bearer token is always verified (AuthUser in the security context, bad token → 401).
+    // auth.jwt.required=false keeps requests without a token working until every client sends one
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   TokenAuthenticator tokenAuthenticator,
+                                                   @Value("${auth.jwt.required:false}") boolean required) throws Exception {
 
         http
                 // 👈 مهم جداً للـ Flutter Web
                 .cors(Customizer.withDefaults())
                 .csrf(csrf -> csrf.disable())
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/api/customers/**").permitAll()
-                        .anyRequest().permitAll()
-                )
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new JwtAuthenticationFilter(tokenAuthenticator), UsernamePasswordAuthenticationFilter.class)
+                .authorizeHttpRequests(auth -> {
+                    auth.requestMatchers("/api/auth/**", "/ws/**", "/actuator/health", "/actuator/health/**").permitAll();
+                    // metrics (cache sizes, queue depths, per-endpoint traffic) are not for the public,
+                    // also while auth.jwt.required is false
+                    auth.requestMatchers("/actuator/**").hasRole("ADMIN");
+                    // user-scoped endpoints check the path id against the token themselves (CurrentUser)
+                    if (required) {
+                        auth.requestMatchers("/api/admin/**").hasRole("ADMIN");
+                        auth.anyRequest().authenticated();
+                    } else {
+                        // without a token as before; with one it has to be an admin token
+                        auth.requestMatchers("/api/admin/**").access(AuthorizationManagers.anyOf(
+                                AuthenticatedAuthorizationManager.anonymous(),
+                                AuthorityAuthorizationManager.hasRole("ADMIN")));
+                        auth.anyRequest().permitAll();
+                    }
+                })
+                .exceptionHandling(e -> e.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
                 .httpBasic(basic -> basic.disable())
                 .formLogin(form -> form.disable());
 
         return http.build();
     }
 
-    // نفس الـ PasswordEncoder اللي محتاجه AuthService
+    // نفس الـ PasswordEncoder اللي محتاجه AuthService (called through PasswordHasher, off the request threads)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     // إعداد CORS عام لكل الـ APIs
@@ -53,6 +82,8 @@ public class SecurityConfig {
         config.setAllowedMethods(List.of("GET", "POST", "PUT","PATCH", "DELETE", "OPTIONS"));
         // الهيدرز المسموحة
         config.setAllowedHeaders(List.of("*"));
+        // pagination cursor of list endpoints
+        config.setExposedHeaders(List.of("X-Next-Cursor"));
         // إحنا مش بنستعمل Cookies حالياً، فخليها false
         config.setAllowCredentials(false);
 
@@ -1,25 +1,63 @@
 package com.fixme.authservice.config;
 
+import com.fixme.authservice.security.StompAuthInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final LocalSubscriptions localSubscriptions;
+
+    // providers now stay subscribed to /topic/pending-requests/{cell} instead of polling,
+    // so dead connections have to be noticed: server/client heartbeats every 10s
+    private static final long[] HEARTBEAT_MS = {10_000, 10_000};
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // messages sent to /topic/** will be broadcast
-        registry.enableSimpleBroker("/topic");
+        // messages sent to /topic/** will be broadcast, /queue/** is for /user/queue/... (one user's sessions)
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(HEARTBEAT_MS)
+                .setTaskScheduler(stompHeartbeatScheduler());
         // messages sent from client start with /app
         registry.setApplicationDestinationPrefixes("/app");
+        // /user/queue/x → the sessions of the CONNECT user (StompAuthInterceptor), via Spring's user registry
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    // only for the simple broker's heartbeats, not a general purpose scheduler;
+    // the container initializes it (afterPropertiesSet) and shuts it down with the context
+    @Bean
+    public ThreadPoolTaskScheduler stompHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("stomp-heartbeat-");
+        return scheduler;
+    }
+
+    // auth first (CONNECT sets the user), then local subscriptions,
+    // announced to the other nodes in chat.broker.mode=kafka (see KafkaTopicPublisher)
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor, localSubscriptions);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // frames of one session reach @MessageMapping in the order they were sent;
+        // from there ConversationLanes keeps the order per conversation
+        registry.setPreserveReceiveOrder(true);
+
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS(); // مهم للـ Flutter Web
@@ -0,0 +1,36 @@
+package com.fixme.authservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// connected STOMP sessions (anonymous included) and distinct signed-in users of this node
+@Component
+public class WebSocketSessionMetrics {
+
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    public WebSocketSessionMetrics(MeterRegistry registry, SimpUserRegistry userRegistry) {
+        Gauge.builder("ws.sessions.connected", sessions, Set::size).register(registry);
+        Gauge.builder("ws.users.connected", userRegistry, SimpUserRegistry::getUserCount).register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent e) {
+        String session = SimpMessageHeaderAccessor.getSessionId(e.getMessage().getHeaders());
+        if (session != null) sessions.add(session);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent e) {
+        sessions.remove(e.getSessionId());
+    }
+}
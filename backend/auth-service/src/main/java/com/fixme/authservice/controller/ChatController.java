@@ -1,13 +1,23 @@
 package com.fixme.authservice.controller;
 
 import com.fixme.authservice.dto.*;
+import com.fixme.authservice.event.ChatMessagesPersisted;
 import com.fixme.authservice.model.Conversation;
+import com.fixme.authservice.model.UserRole;
+import com.fixme.authservice.security.AuthUser;
+import com.fixme.authservice.security.CurrentUser;
 import com.fixme.authservice.service.ChatService;
+import com.fixme.authservice.service.ConversationLanes;
+import com.fixme.authservice.service.TopicPublisher;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -16,7 +26,14 @@ import java.util.List;
 public class ChatController {
 
     private final ChatService chatService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationLanes conversationLanes;
+    private final TopicPublisher topicPublisher;
+
+    public static final String CHAT_QUEUE = "/queue/chat";
+
+    // /topic/requests/{id} (participants only, see StompAuthInterceptor); for clients not on /user/queue/chat yet
+    @Value("${chat.ws.legacy-topics:false}")
+    private boolean legacyTopics;
 
     // ✅ get or create conversation by requestId
     @GetMapping("/request/{requestId}")
@@ -26,25 +43,98 @@ public class ChatController {
     }
 
     // ✅ load messages
+    // no params → whole conversation (old behaviour). limit / before / after → one page by message id,
+    // oldest first, next page cursor in X-Next-Cursor
     @GetMapping("/{conversationId}/messages")
-    public List<ChatMessageDto> getMessages(@PathVariable Long conversationId) {
-        return chatService.getMessages(conversationId);
+    public ResponseEntity<List<ChatMessageDto>> getMessages(
+            @PathVariable Long conversationId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after
+    ) {
+        requireParticipant(conversationId);
+        if (limit == null && before == null && after == null) {
+            return ResponseEntity.ok(chatService.getMessages(conversationId));
+        }
+        ChatMessagePage page = chatService.getMessages(conversationId, limit, before, after);
+        return CustomerController.withNextCursor(page.getItems(), page.getNextCursor());
+    }
+
+    // ✅ reconnect: only the messages after the last one the client has
+    @GetMapping("/{conversationId}/messages/since/{lastSeenId}")
+    public ResponseEntity<List<ChatMessageDto>> getMessagesSince(
+            @PathVariable Long conversationId,
+            @PathVariable Long lastSeenId,
+            @RequestParam(required = false) Integer limit
+    ) {
+        requireParticipant(conversationId);
+        ChatMessagePage page = chatService.getMessagesSince(conversationId, lastSeenId, limit);
+        return CustomerController.withNextCursor(page.getItems(), page.getNextCursor());
+    }
+
+    // ✅ conversation list: last message preview + unread count, most recent first
+    @GetMapping("/users/{userId}/conversations")
+    public List<ConversationSummaryDto> getConversations(
+            @PathVariable Long userId,
+            @RequestParam UserRole role,
+            @RequestParam(required = false) Integer limit
+    ) {
+        CurrentUser.requireSelf(userId);
+        return chatService.getConversations(userId, role, limit);
+    }
+
+    // ✅ mark read up to messageId (unread counts in the list start after it)
+    @PostMapping("/{conversationId}/read")
+    public void markRead(
+            @PathVariable Long conversationId,
+            @RequestParam Long userId,
+            @RequestParam Long messageId
+    ) {
+        CurrentUser.requireSelf(userId);
+        chatService.markRead(conversationId, userId, messageId);
     }
 
     // ✅ WebSocket: send message
+    // handed to the conversation's lane: in order per conversation, conversations in parallel.
+    // Only signed-in sessions (StompAuthInterceptor) can send, and only as themselves.
     @MessageMapping("/chat.send")
-    public void sendMessageWs(SendChatMessageRequest req) {
-        ChatMessageDto saved = chatService.sendMessage(
-                req.getConversationId(),
-                req.getSenderId(),
-                req.getSenderRole(),
-                req.getMessage()
-        );
-
-        // broadcast to both sides
-        messagingTemplate.convertAndSend(
-                "/topic/requests/" + saved.getConversationId(),
-                saved
-        );
+    public void sendMessageWs(SendChatMessageRequest req, Principal principal) {
+        if (!(principal instanceof AuthUser user)) {
+            throw new AccessDeniedException("Sign in to send messages");
+        }
+        if (req.getSenderId() != null && !req.getSenderId().equals(user.userId())) {
+            throw new IllegalArgumentException("Sender does not match the session user");
+        }
+
+        Long sender = user.userId();
+        conversationLanes.dispatch(req.getConversationId(), () -> {
+            ChatMessageDto saved = chatService.sendMessage(
+                    req.getConversationId(),
+                    sender,
+                    req.getSenderRole(),
+                    req.getMessage()
+            );
+
+            // to both sides right away, the insert follows in the background (see ChatMessageWriter)
+            ConversationParticipants p = chatService.participantsOf(saved.getConversationId());
+            topicPublisher.publishToUser(p.customerId(), CHAT_QUEUE, saved);
+            if (p.providerId() != null) {
+                topicPublisher.publishToUser(p.providerId(), CHAT_QUEUE, saved);
+            }
+            if (legacyTopics) {
+                topicPublisher.publish("/topic/requests/" + saved.getConversationId(), saved);
+            }
+        });
+    }
+
+    // durability ack: every message of the conversation up to upToId is saved
+    @EventListener
+    public void onPersisted(ChatMessagesPersisted e) {
+        topicPublisher.publish("/topic/requests/" + e.conversationId() + "/persisted", e);
+    }
+
+    private void requireParticipant(Long conversationId) {
+        ConversationParticipants p = chatService.participantsOf(conversationId);
+        CurrentUser.requireOneOf(p.customerId(), p.providerId());
     }
 }
@@ -4,15 +4,19 @@ import com.fixme.authservice.dto.*;
 import com.fixme.authservice.model.ServiceType;
 import com.fixme.authservice.model.Vehicle;
 import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.security.CurrentUser;
 import com.fixme.authservice.service.CustomerNearbyProviderService;
 import com.fixme.authservice.service.CustomerRequestService;
 import com.fixme.authservice.service.CustomerService;
+import com.fixme.authservice.service.RequestStatusStream;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -22,9 +26,22 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class CustomerController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // one page of a list: the items as the body, the next page's cursor (if any) in X-Next-Cursor.
+    // Shared by the paged endpoints of all controllers
+    public static <T> ResponseEntity<List<T>> withNextCursor(List<T> items, String nextCursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+
     private final CustomerService customerService;
     private final CustomerRequestService customerRequestService;
     private final CustomerNearbyProviderService customerNearbyProviderService;
+    private final RequestStatusStream requestStatusStream;
 
     // إضافة سيارة جديدة
     @PostMapping("/{userId}/vehicles")
@@ -32,6 +49,7 @@ public class CustomerController {
             @PathVariable Long userId,
             @Valid @RequestBody VehicleRequest request
     ) {
+        CurrentUser.requireSelf(userId);
         Vehicle v = customerService.addVehicle(userId, request);
 
         VehicleResponse response = new VehicleResponse(
@@ -53,6 +71,7 @@ public class CustomerController {
             @PathVariable Long vehicleId,
             @Valid @RequestBody VehicleRequest request
     ) {
+        CurrentUser.requireSelf(userId);
         Vehicle v = customerService.updateVehicle(userId, vehicleId, request);
 
         VehicleResponse response = new VehicleResponse(
@@ -73,6 +92,7 @@ public class CustomerController {
             @PathVariable Long userId,
             @PathVariable Long vehicleId
     ) {
+        CurrentUser.requireSelf(userId);
         try {
             customerService.deleteVehicle(userId, vehicleId);
             return ResponseEntity.noContent().build();
@@ -93,16 +113,24 @@ public class CustomerController {
         }
     }
 
+    // limit/cursor optional: without limit everything in radius is returned (old behaviour),
+    // with it the next page cursor comes back in the X-Next-Cursor header
     @GetMapping("/{userId}/providers/nearby")
-    public List<NearbyProviderResponse> nearbyProviders(
+    public ResponseEntity<List<NearbyProviderResponse>> nearbyProviders(
             @PathVariable Long userId,
             @RequestParam double lat,
             @RequestParam double lng,
             @RequestParam(defaultValue = "10") double radiusKm,
             @RequestParam VehicleCategory category,
-            @RequestParam ServiceType serviceType
+            @RequestParam ServiceType serviceType,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor
     ) {
-        return customerNearbyProviderService.nearbyProviders(lat, lng, radiusKm, category, serviceType);
+        CurrentUser.requireSelf(userId);
+        NearbyProviderPage page = customerNearbyProviderService.nearbyProviders(
+                lat, lng, radiusKm, category, serviceType, limit, cursor);
+
+        return withNextCursor(page.getItems(), page.getNextCursor());
     }
 
 
@@ -112,6 +140,7 @@ public class CustomerController {
             @PathVariable Long userId,
             @Valid @RequestBody ServiceRequestCreateRequest request
     ) {
+        CurrentUser.requireSelf(userId);
         return ResponseEntity.ok(customerRequestService.createRequest(userId, request));
     }
 
@@ -122,18 +151,38 @@ public class CustomerController {
             @PathVariable Long requestId,
             @PathVariable Long providerId
     ) {
+        CurrentUser.requireSelf(userId);
         return customerRequestService.assignProvider(userId, requestId, providerId);
     }
 
     // جلب طلبات العميل
+    // limit/before optional (keyset paging, newest first), next page cursor in X-Next-Cursor
     @GetMapping("/{userId}/requests")
-    public List<ServiceRequestResponse> myRequests(@PathVariable Long userId) {
-        return customerRequestService.getMyRequests(userId);
+    public ResponseEntity<List<ServiceRequestResponse>> myRequests(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before
+    ) {
+        CurrentUser.requireSelf(userId);
+        ServiceRequestPage page = customerRequestService.getMyRequests(userId, limit, before);
+        return withNextCursor(page.getItems(), page.getNextCursor());
+    }
+
+    // SSE: status / progress changes of this customer's requests (instead of polling /requests)
+    // reconnects send Last-Event-ID to get what was missed
+    @GetMapping(path = "/{userId}/requests/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter requestStream(
+            @PathVariable Long userId,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        CurrentUser.requireSelf(userId);
+        return requestStatusStream.subscribe(userId, lastEventId);
     }
 
     // جلب سيارات العميل
     @GetMapping("/{userId}/vehicles")
     public List<VehicleResponse> getVehicles(@PathVariable Long userId) {
+        CurrentUser.requireSelf(userId);
         return customerService.getVehicles(userId)
                 .stream()
                 .map(v -> new VehicleResponse(
@@ -153,6 +202,7 @@ public class CustomerController {
             @PathVariable Long userId,
             @PathVariable Long requestId
     ) {
+        CurrentUser.requireSelf(userId);
         return customerRequestService.confirm(userId, requestId);
     }
 }
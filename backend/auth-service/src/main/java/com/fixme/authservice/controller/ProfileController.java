@@ -2,6 +2,7 @@ package com.fixme.authservice.controller;
 
 import com.fixme.authservice.model.User;
 import com.fixme.authservice.repository.UserRepository;
+import com.fixme.authservice.security.CurrentUser;
 import com.fixme.authservice.service.ProfileImageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
@@ -46,6 +47,7 @@ public class ProfileController {
             @PathVariable Long userId,
             @RequestBody UserProfileDto dto
     ) {
+        CurrentUser.requireSelf(userId);
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
@@ -66,6 +68,7 @@ public class ProfileController {
             @PathVariable Long userId,
             @RequestPart("file") MultipartFile file
     ) throws IOException {
+        CurrentUser.requireSelf(userId);
         UserProfileDto dto = profileImageService.uploadProfileImage(userId, file);
         return ResponseEntity.ok(dto);
     }
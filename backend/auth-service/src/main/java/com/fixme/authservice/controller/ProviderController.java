@@ -3,9 +3,11 @@ package com.fixme.authservice.controller;
 import com.fixme.authservice.dto.NearbyRequestResponse;
 import com.fixme.authservice.dto.ProviderBusinessRequest;
 import com.fixme.authservice.dto.ProviderBusinessResponse;
+import com.fixme.authservice.dto.ServiceRequestPage;
 import com.fixme.authservice.dto.ServiceRequestResponse;
 import com.fixme.authservice.model.ProgressStage;
 import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.security.CurrentUser;
 import com.fixme.authservice.service.ProviderRequestService;
 import com.fixme.authservice.service.ProviderService;
 import lombok.RequiredArgsConstructor;
@@ -28,12 +30,14 @@ public class ProviderController {
             @PathVariable Long userId,
             @RequestBody ProviderBusinessRequest request
     ) {
+        CurrentUser.requireSelf(userId);
         ProviderBusinessResponse response = providerService.createOrUpdateBusiness(userId, request);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/{userId}/business")
     public ResponseEntity<ProviderBusinessResponse> getBusiness(@PathVariable Long userId) {
+        CurrentUser.requireSelf(userId);
         ProviderBusinessResponse response = providerService.getBusiness(userId);
         return ResponseEntity.ok(response);
     }
@@ -44,16 +48,32 @@ public class ProviderController {
             @PathVariable Long userId,
             @RequestParam(defaultValue = "10") double radiusKm
     ) {
+        CurrentUser.requireSelf(userId);
         return ResponseEntity.ok(providerRequestService.nearby(userId, radiusKm));
     }
 
+    // push instead of polling: STOMP topics (/topic/pending-requests/{cell}) covering the provider's radius
+    @GetMapping("/{userId}/requests/nearby/topics")
+    public List<String> nearbyRequestTopics(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "10") double radiusKm
+    ) {
+        CurrentUser.requireSelf(userId);
+        return providerRequestService.nearbyTopics(userId, radiusKm);
+    }
+
     // inbox: assigned requests
+    // limit/before optional (keyset paging, newest first), next page cursor in X-Next-Cursor
     @GetMapping("/{providerId}/requests")
-    public List<ServiceRequestResponse> inbox(
+    public ResponseEntity<List<ServiceRequestResponse>> inbox(
             @PathVariable Long providerId,
-            @RequestParam(required = false) RequestStatus status
+            @RequestParam(required = false) RequestStatus status,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before
     ) {
-        return providerRequestService.inbox(providerId, status);
+        CurrentUser.requireSelf(providerId);
+        ServiceRequestPage page = providerRequestService.inbox(providerId, status, limit, before);
+        return CustomerController.withNextCursor(page.getItems(), page.getNextCursor());
     }
 
     // accept: WAITING_PROVIDER -> WAITING_CUSTOMER
@@ -62,13 +82,20 @@ public class ProviderController {
             @PathVariable Long providerId,
             @PathVariable Long requestId
     ) {
+        CurrentUser.requireSelf(providerId);
         return providerRequestService.accept(providerId, requestId);
     }
 
     // ✅ NEW: confirmed jobs (customer confirmed => ACCEPTED)
     @GetMapping("/{providerId}/jobs/confirmed")
-    public List<ServiceRequestResponse> confirmedJobs(@PathVariable Long providerId) {
-        return providerRequestService.confirmedJobs(providerId);
+    public ResponseEntity<List<ServiceRequestResponse>> confirmedJobs(
+            @PathVariable Long providerId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before
+    ) {
+        CurrentUser.requireSelf(providerId);
+        ServiceRequestPage page = providerRequestService.confirmedJobs(providerId, limit, before);
+        return CustomerController.withNextCursor(page.getItems(), page.getNextCursor());
     }
 
     // ✅ NEW: update progress stage
@@ -78,6 +105,7 @@ public class ProviderController {
             @PathVariable Long requestId,
             @RequestParam ProgressStage stage
     ) {
+        CurrentUser.requireSelf(providerId);
         return providerRequestService.updateProgress(providerId, requestId, stage);
     }
 }
@@ -0,0 +1,16 @@
+package com.fixme.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ChatMessagePage {
+    // always oldest first, like the chat screen shows them
+    private List<ChatMessageDto> items;
+
+    // message id to pass as before / after for the next page in the same direction, null when there is none
+    private String nextCursor;
+}
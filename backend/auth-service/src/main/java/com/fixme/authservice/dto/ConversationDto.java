@@ -23,7 +23,7 @@ public class ConversationDto {
                 .id(c.getId())
                 .serviceRequestId(c.getServiceRequest().getId())
                 .customerId(c.getCustomer().getId())
-                .providerId(c.getProvider().getId())
+                .providerId(c.getProvider() == null ? null : c.getProvider().getId())
                 .createdAt(c.getCreatedAt())
                 .build();
     }
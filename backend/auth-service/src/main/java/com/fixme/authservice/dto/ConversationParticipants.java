@@ -0,0 +1,15 @@
+package com.fixme.authservice.dto;
+
+import com.fixme.authservice.model.UserRole;
+
+// who may write in a conversation (see ConversationParticipantCache)
+public record ConversationParticipants(Long conversationId, Long customerId, Long providerId, Long serviceRequestId) {
+
+    // role of userId in this conversation, null when it is not a participant
+    public UserRole roleOf(Long userId) {
+        if (userId == null) return null;
+        if (userId.equals(customerId)) return UserRole.CUSTOMER;
+        if (userId.equals(providerId)) return UserRole.PROVIDER;
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.fixme.authservice.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// one row of a user's conversation list
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversationSummaryDto {
+
+    private Long id;
+    private Long serviceRequestId;
+    private Long customerId;
+    private Long providerId;
+
+    // null when the conversation has no messages yet
+    private Long lastMessageId;
+    private Long lastMessageSenderId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+
+    // messages from the other participant after this user's read cursor
+    private Long unreadCount;
+}
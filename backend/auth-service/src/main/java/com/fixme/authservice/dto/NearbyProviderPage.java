@@ -0,0 +1,15 @@
+package com.fixme.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class NearbyProviderPage {
+    private List<NearbyProviderResponse> items;
+
+    // null when this is the last page
+    private String nextCursor;
+}
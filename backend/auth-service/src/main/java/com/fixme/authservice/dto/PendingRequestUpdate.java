@@ -0,0 +1,18 @@
+package com.fixme.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// pushed on /topic/pending-requests/{cell}
+@Data
+@AllArgsConstructor
+public class PendingRequestUpdate {
+
+    public enum Type { ADDED, REMOVED }
+
+    private Type type;
+    private Long requestId;
+
+    // only for ADDED; distanceKm is null (depends on the provider, the app computes it)
+    private NearbyRequestResponse request;
+}
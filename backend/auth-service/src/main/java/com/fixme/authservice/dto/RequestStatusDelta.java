@@ -0,0 +1,18 @@
+package com.fixme.authservice.dto;
+
+import com.fixme.authservice.model.ProgressStage;
+import com.fixme.authservice.model.RequestStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// one SSE "status" event on /api/customers/{userId}/requests/stream, and one /user/queue/requests message
+@Data
+@AllArgsConstructor
+public class RequestStatusDelta {
+    private Long requestId;
+    private Long providerId;
+
+    private RequestStatus status;
+    private RequestStatus previousStatus;
+    private ProgressStage progressStage;
+}
@@ -0,0 +1,6 @@
+package com.fixme.authservice.event;
+
+// Every message of the conversation with id <= upToId is now in the database (durability ack).
+// Published by ChatMessageWriter once per conversation per committed batch.
+public record ChatMessagesPersisted(Long conversationId, long upToId) {
+}
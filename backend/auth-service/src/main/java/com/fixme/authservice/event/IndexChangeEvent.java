@@ -0,0 +1,14 @@
+package com.fixme.authservice.event;
+
+// A row every node keeps in memory changed or was deleted: a provider (ProviderSpatialIndex), or a service
+// request / vehicle copied into PendingRequestIndex. Published inside the transaction by the service that
+// changed it, which updates this node's index itself; with chat.broker.mode=kafka ClusterIndexSync tells
+// the other nodes after commit.
+public record IndexChangeEvent(Kind kind, Long id) {
+
+    public enum Kind {
+        PROVIDER,
+        REQUEST,
+        VEHICLE
+    }
+}
@@ -0,0 +1,47 @@
+package com.fixme.authservice.event;
+
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.model.ProgressStage;
+import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+
+import java.time.LocalDateTime;
+
+// JSON value of the Kafka records on outbox.topic (key = requestId)
+public record RequestLifecycleMessage(
+        String type,
+        Long requestId,
+        Long customerId,
+        Long providerId,
+        RequestStatus status,
+        RequestStatus previousStatus,
+        ProgressStage progressStage,
+        ServiceType serviceType,
+        VehicleCategory vehicleCategory,
+        Double latitude,
+        Double longitude,
+        LocalDateTime occurredAt
+) {
+
+    public static final String CREATED = "REQUEST_CREATED";
+    public static final String CHANGED = "REQUEST_CHANGED";
+
+    public static RequestLifecycleMessage of(ServiceRequestEvent event, LocalDateTime occurredAt) {
+        ServiceRequestResponse r = event.request();
+        return new RequestLifecycleMessage(
+                event.previousStatus() == null ? CREATED : CHANGED,
+                r.getId(),
+                r.getCustomerId(),
+                r.getProviderId(),
+                r.getStatus(),
+                event.previousStatus(),
+                r.getProgressStage(),
+                r.getServiceType(),
+                r.getVehicleCategory(),
+                r.getLatitude(),
+                r.getLongitude(),
+                occurredAt
+        );
+    }
+}
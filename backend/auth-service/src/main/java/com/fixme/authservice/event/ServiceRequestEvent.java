@@ -0,0 +1,17 @@
+package com.fixme.authservice.event;
+
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.model.RequestStatus;
+
+// A service request was created (previousStatus == null) or moved to another status.
+// Published inside the transaction; listeners that talk to clients run AFTER_COMMIT.
+public record ServiceRequestEvent(ServiceRequestResponse request, RequestStatus previousStatus) {
+
+    public boolean enteredPending() {
+        return previousStatus != RequestStatus.PENDING && request.getStatus() == RequestStatus.PENDING;
+    }
+
+    public boolean leftPending() {
+        return previousStatus == RequestStatus.PENDING && request.getStatus() != RequestStatus.PENDING;
+    }
+}
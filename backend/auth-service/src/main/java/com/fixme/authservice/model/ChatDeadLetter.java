@@ -0,0 +1,51 @@
+package com.fixme.authservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// A chat message ChatMessageWriter gave up on (database failing for max-attempts): it was already broadcast,
+// so it is kept here for support / re-insert. Written by the writer with JDBC, like chat_messages.
+@Entity
+@Table(name = "chat_dead_letters")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // the id handed out by the writer (and seen by the clients)
+    @Column(name = "message_id", nullable = false)
+    private Long messageId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sender_role", length = 16)
+    private UserRole senderRole;
+
+    @Column(nullable = false, length = 2000)
+    private String message;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -6,7 +6,11 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(
+        name = "chat_messages",
+        // history pages and "since" lookups are range scans on (conversation_id, id)
+        indexes = @Index(name = "idx_chat_conversation_id", columnList = "conversation_id, id")
+)
 @Getter
 @Setter
 @NoArgsConstructor
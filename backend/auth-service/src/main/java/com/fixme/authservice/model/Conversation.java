@@ -8,7 +8,12 @@ import java.time.LocalDateTime;
 @Entity
 @Table(
         name = "conversations",
-        uniqueConstraints = @UniqueConstraint(columnNames = "service_request_id")
+        uniqueConstraints = @UniqueConstraint(columnNames = "service_request_id"),
+        // conversation lists: a user's conversations, most recent message first
+        indexes = {
+                @Index(name = "idx_conv_customer_last", columnList = "customer_id, last_message_id"),
+                @Index(name = "idx_conv_provider_last", columnList = "provider_id, last_message_id")
+        }
 )
 @Getter
 @Setter
@@ -29,9 +34,14 @@ public class Conversation {
     @JoinColumn(name = "customer_id")
     private User customer;
 
-    @ManyToOne(optional = false)
+    // null for a conversation opened before a provider was assigned
+    @ManyToOne
     @JoinColumn(name = "provider_id")
     private User provider;
 
     private LocalDateTime createdAt;
+
+    // ✅ denormalized: newest chat_messages.id, kept up to date by ChatMessageWriter (no FK, only a pointer)
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
 }
@@ -0,0 +1,39 @@
+package com.fixme.authservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// how far one participant has read a conversation (unread = messages from the other side after lastReadMessageId).
+// Created for both participants with the conversation; unreadCount is kept up to date by ChatMessageWriter
+// (+1 per message from the other side) and recounted by markRead, so the inbox does not count messages.
+@Entity
+@Table(
+        name = "conversation_read_cursors",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"conversation_id", "user_id"})
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversationReadCursor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "conversation_id")
+    private Conversation conversation;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Column(nullable = false)
+    private Long lastReadMessageId;
+
+    // null = cursor from before this column, counted once at startup (ChatMessageWriter.start)
+    @Column(name = "unread_count")
+    private Long unreadCount;
+}
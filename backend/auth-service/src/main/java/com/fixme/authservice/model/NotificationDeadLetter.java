@@ -0,0 +1,41 @@
+package com.fixme.authservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// A verification code NotificationDispatcher gave up on (retries exhausted or queue full), kept for support / resend.
+// Only the verification_tokens id, never the code itself: a live code in a support table could be used by anyone reading it.
+@Entity
+@Table(name = "notification_dead_letters")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private VerificationType channel; // EMAIL / PHONE
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(name = "token_id", nullable = false)
+    private Long tokenId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.fixme.authservice.model;
 
+import com.fixme.authservice.util.WeeklySchedule;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -36,12 +37,12 @@ public class ProviderBusiness {
     private String description;       // وصف قصير
     private String services;          // مثلاً "Towing, Tires, Garage"
     private String openingHours;      // مثلاً "Sun-Thu 09:00-18:00"
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @Enumerated(EnumType.STRING)
     @CollectionTable(name = "provider_business_categories", joinColumns = @JoinColumn(name = "business_id"))
     @Column(name = "category")
     private java.util.Set<VehicleCategory> categories;
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @Enumerated(EnumType.STRING)
     @CollectionTable(
             name = "provider_business_offered_services",
@@ -49,6 +50,15 @@ public class ProviderBusiness {
     )
     @Column(name = "service_type")
     private Set<ServiceType> offeredServices;
+
+    // ✅ categories + offeredServices packed as bits (see CapabilityMask), used by nearby search
+    @Column(name = "capability_mask")
+    private Long capabilityMask;
+
+    // ✅ openingHours compiled into the week bitmap (see WeeklySchedule.toBytes), so SQL can test "open now"
+    @Column(name = "opening_minutes", length = WeeklySchedule.BYTES)
+    private byte[] openingMinutes;
+
     // ✅ NEW: provider location
     @Column(nullable = true)
     private Double latitude;
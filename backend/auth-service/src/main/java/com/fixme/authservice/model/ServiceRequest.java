@@ -5,7 +5,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "service_requests")
+// (owner, created_at, id) indexes back the keyset pages of the customer / provider lists
+@Table(name = "service_requests", indexes = {
+        @Index(name = "idx_sr_customer_created", columnList = "customer_id, createdAt, id"),
+        @Index(name = "idx_sr_provider_created", columnList = "provider_id, createdAt, id"),
+        @Index(name = "idx_sr_provider_status_created", columnList = "provider_id, status, createdAt, id")
+})
 public class ServiceRequest {
 
     @Id
@@ -1,14 +1,37 @@
 package com.fixme.authservice.repository;
 
+import com.fixme.authservice.dto.ChatMessageDto;
 import com.fixme.authservice.model.ChatMessage;
-import com.fixme.authservice.model.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findByConversationOrderBySentAtAsc(Conversation conversation);
+    // ✅ straight into the DTO, walking the (conversation_id, id) index; ids grow with sentAt
+    String DTO_SELECT = """
+            select new com.fixme.authservice.dto.ChatMessageDto(
+                m.id, m.conversation.id, m.sender.id, m.senderRole, m.message, m.sentAt)
+            from ChatMessage m
+            where m.conversation.id = :conversationId
+            """;
+
+    // page = PageRequest.of(0, n) for one page (n + 1 to detect a next one), Pageable.unpaged() for everything
+
+    // older than beforeId, newest first (caller flips the page back to oldest first)
+    @Query(DTO_SELECT + " and m.id < :beforeId order by m.id desc")
+    List<ChatMessageDto> findDtosBefore(@Param("conversationId") Long conversationId,
+                                        @Param("beforeId") long beforeId,
+                                        Pageable page);
+
+    // newer than afterId, oldest first
+    @Query(DTO_SELECT + " and m.id > :afterId order by m.id asc")
+    List<ChatMessageDto> findDtosAfter(@Param("conversationId") Long conversationId,
+                                       @Param("afterId") long afterId,
+                                       Pageable page);
+
     void deleteByConversationIdIn(List<Long> conversationIds);
 }
-
@@ -0,0 +1,39 @@
+package com.fixme.authservice.repository;
+
+import com.fixme.authservice.model.ConversationReadCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ConversationReadCursorRepository extends JpaRepository<ConversationReadCursor, Long> {
+
+    // one statement whether the cursor exists or not (two first reads at once cannot both insert);
+    // only moves forward
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(nativeQuery = true, value = """
+            insert into conversation_read_cursors (conversation_id, user_id, last_read_message_id)
+            values (:conversationId, :userId, :messageId)
+            on duplicate key update last_read_message_id = greatest(last_read_message_id, :messageId)
+            """)
+    int advance(@Param("conversationId") Long conversationId,
+                @Param("userId") Long userId,
+                @Param("messageId") Long messageId);
+
+    // what is left after the cursor: usually nothing or a few messages, the range scan on
+    // chat_messages (conversation_id, id) starts at the cursor
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ConversationReadCursor rc
+            set rc.unreadCount = (select count(m.id) from ChatMessage m
+                                  where m.conversation.id = rc.conversation.id
+                                    and m.id > rc.lastReadMessageId
+                                    and m.sender.id <> rc.user.id)
+            where rc.conversation.id = :conversationId and rc.user.id = :userId
+            """)
+    int recountUnread(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+
+    void deleteByConversationIdIn(List<Long> conversationIds);
+}
@@ -1,7 +1,12 @@
 package com.fixme.authservice.repository;
 
+import com.fixme.authservice.dto.ConversationParticipants;
+import com.fixme.authservice.dto.ConversationSummaryDto;
 import com.fixme.authservice.model.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,6 +15,34 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
 
     Optional<Conversation> findByServiceRequestId(Long serviceRequestId);
 
+    @Query("""
+            select new com.fixme.authservice.dto.ConversationParticipants(
+                c.id, c.customer.id, c.provider.id, c.serviceRequest.id)
+            from Conversation c
+            where c.id = :id
+            """)
+    Optional<ConversationParticipants> findParticipantsById(@Param("id") Long id);
+
+    // ✅ conversation list in one query: last message through the denormalized pointer,
+    // unread from the counter on the user's read cursor (no count over chat_messages per conversation)
+    String SUMMARY_SELECT = """
+            select new com.fixme.authservice.dto.ConversationSummaryDto(
+                c.id, c.serviceRequest.id, c.customer.id, c.provider.id,
+                m.id, m.sender.id, substring(m.message, 1, 120), m.sentAt,
+                coalesce(rc.unreadCount, 0L))
+            from Conversation c
+            left join ChatMessage m on m.id = c.lastMessageId
+            left join ConversationReadCursor rc on rc.conversation.id = c.id and rc.user.id = :userId
+            """;
+
+    String MOST_RECENT_FIRST = " order by c.lastMessageId desc, c.id desc";
+
+    @Query(SUMMARY_SELECT + "where c.customer.id = :userId" + MOST_RECENT_FIRST)
+    List<ConversationSummaryDto> findSummariesByCustomerId(@Param("userId") Long userId, Pageable page);
+
+    @Query(SUMMARY_SELECT + "where c.provider.id = :userId" + MOST_RECENT_FIRST)
+    List<ConversationSummaryDto> findSummariesByProviderId(@Param("userId") Long userId, Pageable page);
+
     List<Conversation> findByCustomerId(Long customerId);
     List<Conversation> findByProviderId(Long providerId);
 
@@ -0,0 +1,7 @@
+package com.fixme.authservice.repository;
+
+import com.fixme.authservice.model.NotificationDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface NotificationDeadLetterRepository extends JpaRepository<NotificationDeadLetter, Long> {
+}
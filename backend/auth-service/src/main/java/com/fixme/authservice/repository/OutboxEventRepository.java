@@ -0,0 +1,38 @@
+package com.fixme.authservice.repository;
+
+import com.fixme.authservice.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // oldest unclaimed (or lease expired) first, FOR UPDATE SKIP LOCKED (lock.timeout -2):
+    // two relays claiming at the same moment never get the same rows
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select o from OutboxEvent o where o.claimedUntil is null or o.claimedUntil < :now order by o.id")
+    List<OutboxEvent> findClaimable(@Param("now") LocalDateTime now, Pageable page);
+
+    @Modifying
+    @Query("update OutboxEvent o set o.claimedBy = :relay, o.claimedUntil = :until where o.id in :ids")
+    int claim(@Param("ids") List<Long> ids, @Param("relay") String relay, @Param("until") LocalDateTime until);
+
+    // only rows still leased to this relay: after an expired lease another relay may own (and delete) them
+    @Modifying
+    @Query("delete from OutboxEvent o where o.id in :ids and o.claimedBy = :relay")
+    int deleteClaimed(@Param("ids") List<Long> ids, @Param("relay") String relay);
+
+    @Modifying
+    @Query("update OutboxEvent o set o.claimedBy = null, o.claimedUntil = null where o.id in :ids and o.claimedBy = :relay")
+    int release(@Param("ids") List<Long> ids, @Param("relay") String relay);
+}
@@ -1,8 +1,18 @@
 package com.fixme.authservice.repository;
 
 import com.fixme.authservice.model.ProviderBusiness;
+import com.fixme.authservice.model.ServiceType;
 import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.NearbyCursor;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,4 +26,90 @@ public interface ProviderBusinessRepository extends JpaRepository<ProviderBusine
     void deleteByUser(User user);
     List<ProviderBusiness> findByLatitudeNotNullAndLongitudeNotNull();
 
+    // startup only: capability_mask may still be missing on old rows
+    @EntityGraph(attributePaths = {"categories", "offeredServices"})
+    List<ProviderBusiness> findWithCapabilitiesByLatitudeNotNullAndLongitudeNotNull();
+
+    // one provider for ProviderSpatialIndex, changed on another node (see ClusterIndexSync)
+    @EntityGraph(attributePaths = {"categories", "offeredServices"})
+    Optional<ProviderBusiness> findWithCapabilitiesById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update ProviderBusiness b set b.capabilityMask = :mask where b.id = :id")
+    void updateCapabilityMask(@Param("id") Long id, @Param("mask") long mask);
+
+    @Transactional
+    @Modifying
+    @Query("update ProviderBusiness b set b.openingMinutes = :minutes where b.id = :id")
+    void updateOpeningMinutes(@Param("id") Long id, @Param("minutes") byte[] minutes);
+
+    interface NearbyBusinessRow {
+        Long getBusinessId();
+        Double getDistanceKm();
+    }
+
+    // ✅ MySQL spatial search (needs ProviderLocationSchemaInitializer):
+    // MBRContains on the bounding box uses the SPATIAL INDEX, ST_Distance_Sphere cuts it down to the circle.
+    // The sphere is GeoUtil's (:earthRadiusM), not MySQL's default 6370986 m, so distanceKm and the cursor
+    // are the same as the index backend's.
+    // Open now = bit openBit of byte openByte (1-based) of opening_minutes, so LIMIT counts open providers only.
+    String NEARBY_SQL = """
+            SELECT b.id AS businessId,
+                   ST_Distance_Sphere(b.location, POINT(:lng, :lat), :earthRadiusM) / 1000 AS distanceKm
+            FROM provider_business b
+            WHERE MBRContains(ST_MakeEnvelope(POINT(:minLng, :minLat), POINT(:maxLng, :maxLat)), b.location)
+              AND b.latitude IS NOT NULL AND b.longitude IS NOT NULL
+              AND (b.capability_mask & :serviceBit) <> 0
+              AND (b.capability_mask & :categoryBits) <> 0
+              AND (ASCII(SUBSTRING(b.opening_minutes, :openByte, 1)) & :openBit) <> 0
+              AND ST_Distance_Sphere(b.location, POINT(:lng, :lat), :earthRadiusM) <= :radiusKm * 1000
+              AND (ST_Distance_Sphere(b.location, POINT(:lng, :lat), :earthRadiusM) / 1000 > :afterKm
+                   OR (ST_Distance_Sphere(b.location, POINT(:lng, :lat), :earthRadiusM) / 1000 = :afterKm
+                       AND b.id > :afterId))
+            ORDER BY distanceKm, b.id
+            LIMIT :maxResults
+            """;
+
+    @Query(value = NEARBY_SQL, nativeQuery = true)
+    List<NearbyBusinessRow> findNearby(
+            @Param("lat") double lat,
+            @Param("lng") double lng,
+            @Param("minLat") double minLat,
+            @Param("minLng") double minLng,
+            @Param("maxLat") double maxLat,
+            @Param("maxLng") double maxLng,
+            @Param("radiusKm") double radiusKm,
+            @Param("earthRadiusM") double earthRadiusM,
+            @Param("categoryBits") long categoryBits,
+            @Param("serviceBit") long serviceBit,
+            @Param("openByte") int openByte,
+            @Param("openBit") int openBit,
+            @Param("afterKm") double afterKm,
+            @Param("afterId") long afterId,
+            @Param("maxResults") int maxResults
+    );
+
+    // up to maxResults providers within radiusKm serving category + serviceType and open at minuteOfWeek,
+    // nearest first, after the cursor (null = from the start)
+    default List<NearbyBusinessRow> findNearby(double lat, double lng, double radiusKm,
+                                               VehicleCategory category, ServiceType serviceType,
+                                               int minuteOfWeek, NearbyCursor after, int maxResults) {
+        double dLat = GeoUtil.latDelta(radiusKm);
+        double dLng = GeoUtil.lngDelta(lat, radiusKm);
+        return findNearby(
+                lat, lng,
+                Math.max(-90, lat - dLat), lng - dLng,
+                Math.min(90, lat + dLat), lng + dLng,
+                radiusKm,
+                GeoUtil.EARTH_RADIUS_KM * 1000,
+                CapabilityMask.categoryBit(VehicleCategory.ALL) | CapabilityMask.categoryBit(category),
+                CapabilityMask.serviceBit(serviceType),
+                minuteOfWeek / 8 + 1,
+                1 << (minuteOfWeek % 8),
+                after != null ? after.distanceKm() : -1,
+                after != null ? after.businessId() : 0,
+                maxResults
+        );
+    }
 }
@@ -1,17 +1,134 @@
 package com.fixme.authservice.repository;
 
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.model.ProgressStage;
 import com.fixme.authservice.model.RequestStatus;
 import com.fixme.authservice.model.ServiceRequest;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.UserRole;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ServiceRequestRepository extends JpaRepository<ServiceRequest, Long> {
 
-    List<ServiceRequest> findByCustomerIdOrderByCreatedAtDesc(Long customerId);
+    // ✅ request lists: one query straight into the DTO (no lazy vehicle/customer/provider per row)
+    String RESPONSE_SELECT = """
+            select new com.fixme.authservice.dto.ServiceRequestResponse(
+                r.id, r.customer.id, p.id,
+                v.id, v.plateNumber, v.make, v.model, v.year,
+                r.description, v.vehicleCategory, r.serviceType,
+                r.latitude, r.longitude, r.status, r.progressStage, r.createdAt)
+            from ServiceRequest r
+            join r.vehicle v
+            left join r.provider p
+            """;
+
+    // keyset: rows strictly after (beforeAt, beforeId) in "newest first" order, see RequestCursor
+    String BEFORE_CURSOR = """
+             and (r.createdAt < :beforeAt or (r.createdAt = :beforeAt and r.id < :beforeId))
+            order by r.createdAt desc, r.id desc
+            """;
+
+    // page = PageRequest.of(0, n) for one page (n + 1 to detect a next one), Pageable.unpaged() for everything
+    @Query(RESPONSE_SELECT + "where r.customer.id = :customerId" + BEFORE_CURSOR)
+    List<ServiceRequestResponse> findResponsesByCustomerId(@Param("customerId") Long customerId,
+                                                           @Param("beforeAt") LocalDateTime beforeAt,
+                                                           @Param("beforeId") long beforeId,
+                                                           Pageable page);
+
+    @Query(RESPONSE_SELECT + "where r.provider.id = :providerId" + BEFORE_CURSOR)
+    List<ServiceRequestResponse> findResponsesByProviderId(@Param("providerId") Long providerId,
+                                                           @Param("beforeAt") LocalDateTime beforeAt,
+                                                           @Param("beforeId") long beforeId,
+                                                           Pageable page);
+
+    @Query(RESPONSE_SELECT + "where r.provider.id = :providerId and r.status = :status" + BEFORE_CURSOR)
+    List<ServiceRequestResponse> findResponsesByProviderIdAndStatus(@Param("providerId") Long providerId,
+                                                                    @Param("status") RequestStatus status,
+                                                                    @Param("beforeAt") LocalDateTime beforeAt,
+                                                                    @Param("beforeId") long beforeId,
+                                                                    Pageable page);
+
+    @Query(RESPONSE_SELECT + "where r.id = :id")
+    Optional<ServiceRequestResponse> findResponseById(@Param("id") Long id);
+
+    // ✅ status transitions: the check and the change are one UPDATE, so two racing callers can't both win.
+    // return = rows changed (0 → not found / not yours / wrong state / lost the race)
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ServiceRequest r
+            set r.provider = :provider, r.status = :to
+            where r.id = :id and r.customer.id = :customerId and r.status = :from
+              and exists (select u.id from User u where u.id = :providerId and u.role = :providerRole)
+            """)
+    int assignProvider(@Param("id") Long id,
+                       @Param("customerId") Long customerId,
+                       @Param("provider") User provider,
+                       @Param("providerId") Long providerId,
+                       @Param("providerRole") UserRole providerRole,
+                       @Param("from") RequestStatus from,
+                       @Param("to") RequestStatus to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ServiceRequest r set r.status = :to
+            where r.id = :id and r.customer.id = :customerId and r.status = :from
+            """)
+    int transitionAsCustomer(@Param("id") Long id,
+                             @Param("customerId") Long customerId,
+                             @Param("from") RequestStatus from,
+                             @Param("to") RequestStatus to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ServiceRequest r set r.status = :to
+            where r.id = :id and r.provider.id = :providerId and r.status = :from
+            """)
+    int transitionAsProvider(@Param("id") Long id,
+                             @Param("providerId") Long providerId,
+                             @Param("from") RequestStatus from,
+                             @Param("to") RequestStatus to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ServiceRequest r set r.progressStage = :stage
+            where r.id = :id and r.provider.id = :providerId and r.status in :allowed
+            """)
+    int updateProgress(@Param("id") Long id,
+                       @Param("providerId") Long providerId,
+                       @Param("stage") ProgressStage stage,
+                       @Param("allowed") Collection<RequestStatus> allowed);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update ServiceRequest r set r.progressStage = :stage, r.status = :to
+            where r.id = :id and r.provider.id = :providerId and r.status in :allowed
+            """)
+    int updateProgressAndStatus(@Param("id") Long id,
+                                @Param("providerId") Long providerId,
+                                @Param("stage") ProgressStage stage,
+                                @Param("allowed") Collection<RequestStatus> allowed,
+                                @Param("to") RequestStatus to);
+
     List<ServiceRequest> findByStatus(RequestStatus status);
-    List<ServiceRequest> findByProviderIdOrderByCreatedAtDesc(Long providerId);
-    List<ServiceRequest> findByProviderIdAndStatusOrderByCreatedAtDesc(Long providerId, RequestStatus status);
+
+    // startup load of PendingRequestIndex: vehicle in the same query
+    @EntityGraph(attributePaths = {"vehicle"})
+    List<ServiceRequest> findWithVehicleByStatus(RequestStatus status);
+
+    // one request for PendingRequestIndex, changed on another node (see ClusterIndexSync)
+    @EntityGraph(attributePaths = {"vehicle"})
+    Optional<ServiceRequest> findWithVehicleById(Long id);
 
     boolean existsByVehicleIdAndStatusIn(Long vehicleId, List<RequestStatus> statuses);
 
@@ -0,0 +1,15 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+
+import java.security.Principal;
+
+// the user of a verified JWT: the principal of an HTTP request (JwtAuthenticationFilter) or of a STOMP session,
+// where its name is what /user/{name}/... destinations resolve to
+public record AuthUser(Long userId, UserRole role) implements Principal {
+
+    @Override
+    public String getName() {
+        return userId.toString();
+    }
+}
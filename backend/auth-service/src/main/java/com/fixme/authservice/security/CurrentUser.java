@@ -0,0 +1,48 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+// The caller as JwtAuthenticationFilter verified it, so controllers and services can check who is asking
+// without loading the user row.
+//
+// A request without a token passes these checks: it only reaches the controllers while
+// auth.jwt.required is false (see SecurityConfig). A token of another user → 403 (AccessDeniedException).
+public final class CurrentUser {
+
+    private CurrentUser() {
+    }
+
+    // null for an anonymous request
+    public static AuthUser get() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getPrincipal() instanceof AuthUser user ? user : null;
+    }
+
+    // /{userId}/... endpoints: the caller must be that user (or an admin)
+    public static void requireSelf(Long userId) {
+        AuthUser me = get();
+        if (me == null || me.role() == UserRole.ADMIN || me.userId().equals(userId)) return;
+        throw new AccessDeniedException("Not your account");
+    }
+
+    // the caller must be one of userIds (e.g. the customer and provider of a conversation) or an admin
+    public static void requireOneOf(Long... userIds) {
+        AuthUser me = get();
+        if (me == null || me.role() == UserRole.ADMIN) return;
+        for (Long id : userIds) {
+            if (me.userId().equals(id)) return;
+        }
+        throw new AccessDeniedException("Not your conversation");
+    }
+
+    // role of userId from the caller's token; null when the request has no token or an admin acts for
+    // another user (look it up instead). A token of another user may not act as userId
+    public static UserRole roleOf(Long userId) {
+        requireSelf(userId);
+        AuthUser me = get();
+        return me != null && me.userId().equals(userId) ? me.role() : null;
+    }
+}
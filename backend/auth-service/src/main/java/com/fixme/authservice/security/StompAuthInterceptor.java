@@ -0,0 +1,85 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+import com.fixme.authservice.service.ConversationParticipantCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// STOMP CONNECT with "Authorization: Bearer <jwt>" → the session belongs to that user (AuthUser),
+// which /user/queue/... destinations need. Spring keeps the user for the rest of the session.
+// Without a token the session stays anonymous (topics only) unless chat.ws.allow-anonymous is false.
+//
+// SUBSCRIBE to a conversation topic (/topic/requests/{conversationId}[/persisted]) needs a signed-in
+// participant of that conversation (or an admin).
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private static final String BEARER = "Bearer ";
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/requests/(\\d+)(/persisted)?$");
+
+    private final TokenAuthenticator tokenAuthenticator;
+    private final ConversationParticipantCache participants;
+    private final boolean allowAnonymous;
+
+    public StompAuthInterceptor(TokenAuthenticator tokenAuthenticator,
+                                ConversationParticipantCache participants,
+                                @Value("${chat.ws.allow-anonymous:true}") boolean allowAnonymous) {
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.participants = participants;
+        this.allowAnonymous = allowAnonymous;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) return message;
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            checkSubscription(accessor);
+            return message;
+        }
+        if (accessor.getCommand() != StompCommand.CONNECT) return message;
+
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith(BEARER)) {
+            if (allowAnonymous) return message;
+            throw new MessageDeliveryException("Missing token");
+        }
+
+        AuthUser user = tokenAuthenticator.authenticate(header.substring(BEARER.length()).trim());
+        if (user == null) {
+            throw new MessageDeliveryException("Invalid token");
+        }
+        accessor.setUser(user);
+        return message;
+    }
+
+    private void checkSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        Matcher m = destination == null ? null : CONVERSATION_TOPIC.matcher(destination);
+        if (m == null || !m.matches()) return;
+
+        if (!(accessor.getUser() instanceof AuthUser user)) {
+            throw new MessageDeliveryException("Sign in to subscribe to " + destination);
+        }
+        if (user.role() == UserRole.ADMIN) return;
+
+        Long conversationId = Long.valueOf(m.group(1));
+        try {
+            if (participants.get(conversationId).roleOf(user.userId()) == null) {
+                throw new MessageDeliveryException("Not part of conversation " + conversationId);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new MessageDeliveryException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bearer token → AuthUser. A verified token is remembered (LRU keyed by its SHA-256, never the token itself)
+// until it expires, so a client sending the same token on every call costs one hash + map lookup
+// instead of an HMAC check and JSON parse each time.
+//
+// Every request goes through here, so the LRU is split into STRIPES independent maps picked by the
+// first byte of the hash: concurrent requests only contend when their tokens land on the same stripe.
+@Component
+public class TokenAuthenticator {
+
+    private static final int STRIPES = 64;
+
+    private final JwtUtil jwtUtil;
+
+    // access-order LinkedHashMaps = LRU per stripe, each guarded by itself
+    private final Map<ByteBuffer, Verified>[] stripes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalid;
+
+    private record Verified(AuthUser user, long expiresAt) {
+    }
+
+    public TokenAuthenticator(JwtUtil jwtUtil,
+                              MeterRegistry registry,
+                              @Value("${auth.jwt.cache-size:10000}") int maxEntries) {
+        this.jwtUtil = jwtUtil;
+        int perStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        this.stripes = newStripes(perStripe);
+
+        this.hits = Counter.builder("auth.jwt.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("auth.jwt.cache.requests").tag("result", "miss").register(registry);
+        this.invalid = Counter.builder("auth.jwt.invalid").register(registry);
+        Gauge.builder("auth.jwt.cache.size", this, TokenAuthenticator::size).register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<ByteBuffer, Verified>[] newStripes(int perStripe) {
+        Map<ByteBuffer, Verified>[] maps = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            maps[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Verified> eldest) {
+                    return size() > perStripe;
+                }
+            };
+        }
+        return maps;
+    }
+
+    private int size() {
+        int size = 0;
+        for (Map<ByteBuffer, Verified> m : stripes) {
+            synchronized (m) {
+                size += m.size();
+            }
+        }
+        return size;
+    }
+
+    // null when the token is not valid (bad signature, expired, malformed)
+    public AuthUser authenticate(String token) {
+        byte[] hash = sha256(token);
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        // SHA-256 bytes are uniform: the first one spreads tokens evenly over the stripes
+        Map<ByteBuffer, Verified> verified = stripes[(hash[0] & 0xff) % STRIPES];
+        long now = System.currentTimeMillis();
+
+        synchronized (verified) {
+            Verified v = verified.get(key);
+            if (v != null) {
+                if (v.expiresAt() > now) {
+                    hits.increment();
+                    return v.user();
+                }
+                verified.remove(key);
+            }
+        }
+        misses.increment();
+
+        AuthUser user;
+        long expiresAt;
+        try {
+            Claims claims = jwtUtil.parseClaims(token);
+            String role = claims.get("role", String.class);
+            if (role == null) throw new IllegalArgumentException("No role");
+            user = new AuthUser(Long.parseLong(claims.getSubject()), UserRole.valueOf(role));
+            expiresAt = claims.getExpiration() == null ? Long.MAX_VALUE : claims.getExpiration().getTime();
+        } catch (JwtException | IllegalArgumentException e) {
+            invalid.increment();
+            return null;
+        }
+
+        synchronized (verified) {
+            verified.put(key, new Verified(user, expiresAt));
+        }
+        return user;
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.fixme.authservice.service;
 
+import com.fixme.authservice.event.IndexChangeEvent;
 import com.fixme.authservice.model.Conversation;
+import com.fixme.authservice.model.ProviderBusiness;
 import com.fixme.authservice.model.ServiceRequest;
 import com.fixme.authservice.model.User;
 import com.fixme.authservice.model.UserRole;
 import com.fixme.authservice.repository.*;
+import com.fixme.authservice.util.TransactionUtil;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +30,12 @@ public class AdminService {
     private final ServiceRequestRepository serviceRequestRepository;
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ConversationReadCursorRepository conversationReadCursorRepository;
+    private final ProviderSpatialIndex providerSpatialIndex;
+    private final PendingRequestIndex pendingRequestIndex;
+    private final RecentMessageCache recentMessageCache;
+    private final ConversationParticipantCache conversationParticipantCache;
+    private final ApplicationEventPublisher events;
 
     public void deleteCustomer(Long userId) {
         User user = userRepository.findById(userId)
@@ -59,7 +69,13 @@ public class AdminService {
         // ✅ 1) delete chat/conversations/serviceRequests first (they block provider/user)
         deleteProviderRelations(userId);
 
-        // ✅ 2) delete provider business
+        // ✅ 2) delete provider business (and drop it from nearby search)
+        providerBusinessRepository.findByUser(user)
+                .map(ProviderBusiness::getId)
+                .ifPresent(id -> {
+                    TransactionUtil.afterCommit(() -> providerSpatialIndex.remove(id));
+                    events.publishEvent(new IndexChangeEvent(IndexChangeEvent.Kind.PROVIDER, id));
+                });
         providerBusinessRepository.deleteByUser(user);
 
         // ✅ 3) if provider has vehicles too (optional)
@@ -111,6 +127,11 @@ public class AdminService {
                 .map(ServiceRequest::getId)
                 .toList();
 
+        for (Long id : srIds) {
+            pendingRequestIndex.remove(id);
+            events.publishEvent(new IndexChangeEvent(IndexChangeEvent.Kind.REQUEST, id));
+        }
+
         // 1) delete conversations that are linked by serviceRequestId (and their chat messages)
         //    We might not have a "findByServiceRequestIdIn", so we delete conversations by ids:
         //    First get conversations via customer/provider already handled above, but this is extra safe:
@@ -130,10 +151,13 @@ public class AdminService {
                 .map(Conversation::getId)
                 .toList();
 
-        // ✅ must delete chat_messages first
+        // ✅ must delete chat_messages and read cursors first
         chatMessageRepository.deleteByConversationIdIn(convIds);
+        conversationReadCursorRepository.deleteByConversationIdIn(convIds);
 
         // ✅ then conversations
         conversationRepository.deleteAllById(convIds);
+        recentMessageCache.evict(convIds);
+        conversationParticipantCache.evict(convIds);
     }
 }
@@ -5,18 +5,19 @@ import com.fixme.authservice.model.*;
 import com.fixme.authservice.repository.UserRepository;
 import com.fixme.authservice.repository.VerificationTokenRepository;
 import com.fixme.authservice.security.JwtUtil;
-import lombok.RequiredArgsConstructor;
+import com.fixme.authservice.security.PasswordHasher;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.Random;
 
 @Service
-@RequiredArgsConstructor
 public class AuthService {
 
     public static class PasswordHashGenerator {
@@ -30,23 +31,45 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final VerificationTokenRepository tokenRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final EmailService emailService;
-    private final Optional<SmsService> smsService;
+    private final PasswordHasher passwordHasher;
+    private final NotificationDispatcher notifications;
     private final JwtUtil jwtUtil;
+    // signup / resetPassword: the BCrypt hash (~100 ms) is made before the transaction,
+    // so no connection is held while waiting for PasswordHasher
+    private final TransactionTemplate tx;
+
+    public AuthService(UserRepository userRepository,
+                       VerificationTokenRepository tokenRepository,
+                       PasswordHasher passwordHasher,
+                       NotificationDispatcher notifications,
+                       JwtUtil jwtUtil,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.tokenRepository = tokenRepository;
+        this.passwordHasher = passwordHasher;
+        this.notifications = notifications;
+        this.jwtUtil = jwtUtil;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
 
-    @Transactional
     public void signup(SignupRequest request) {
         if (!request.getPassword().equals(request.getConfirmPassword())) {
             throw new IllegalArgumentException("Passwords do not match");
         }
 
+        // checked again by the unique constraints on insert; here so a taken email costs no hash
         userRepository.findByEmail(request.getEmail())
                 .ifPresent(u -> { throw new IllegalArgumentException("Email already in use"); });
 
         userRepository.findByPhone(request.getPhone())
                 .ifPresent(u -> { throw new IllegalArgumentException("Phone already in use"); });
 
+        String passwordHash = passwordHasher.encode(request.getPassword());
+
+        tx.executeWithoutResult(status -> createUser(request, passwordHash));
+    }
+
+    private void createUser(SignupRequest request, String passwordHash) {
         ProviderApprovalStatus providerStatus =
                 request.getRole() == UserRole.PROVIDER
                         ? ProviderApprovalStatus.PENDING
@@ -57,7 +80,7 @@ public class AuthService {
                 .lastName(request.getLastName())
                 .email(request.getEmail())
                 .phone(request.getPhone())
-                .passwordHash(passwordEncoder.encode(request.getPassword()))
+                .passwordHash(passwordHash)
                 .role(request.getRole())
                 .verified(false)
                 .providerApprovalStatus(providerStatus)
@@ -80,14 +103,8 @@ public class AuthService {
 
         tokenRepository.save(token);
 
-        if (token.getType() == VerificationType.EMAIL) {
-            emailService.sendVerificationCode(user.getEmail(), tokenCode);
-        } else if (token.getType() == VerificationType.PHONE) {
-            smsService.ifPresentOrElse(
-                    s -> s.sendVerificationCode(user.getPhone(), tokenCode),
-                    () -> System.out.println("SMS disabled (Twilio not configured). Code=" + tokenCode)
-            );
-        }
+        // sent after commit by NotificationDispatcher, not while holding the transaction
+        notifications.sendVerificationCode(token);
 
         System.out.println("SIGNUP VERIFICATION CODE for user " + user.getEmail() + " = " + tokenCode);
     }
@@ -97,7 +114,7 @@ public class AuthService {
                 .or(() -> userRepository.findByPhone(request.getIdentifier()))
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        if (!passwordHasher.matches(request.getPassword(), user.getPasswordHash())) {
             throw new IllegalArgumentException("Invalid credentials");
         }
 
@@ -110,6 +127,11 @@ public class AuthService {
             throw new IllegalStateException("Provider not approved yet");
         }
 
+        // auth.bcrypt.strength changed since this hash was made → store it again with the current cost
+        if (passwordHasher.needsRehash(user.getPasswordHash())) {
+            user.setPasswordHash(passwordHasher.encode(request.getPassword()));
+        }
+
         user.setLastLoginAt(LocalDateTime.now());
         userRepository.save(user);
 
@@ -176,25 +198,36 @@ public class AuthService {
 
         tokenRepository.save(token);
 
-        if (token.getType() == VerificationType.EMAIL) {
-            emailService.sendVerificationCode(user.getEmail(), tokenCode);
-        } else if (token.getType() == VerificationType.PHONE) {
-            smsService.ifPresentOrElse(
-                    s -> s.sendVerificationCode(user.getPhone(), tokenCode),
-                    () -> System.out.println("SMS disabled. Reset code=" + tokenCode)
-            );
-        }
+        // sent after commit by NotificationDispatcher, not while holding the transaction
+        notifications.sendVerificationCode(token);
 
         System.out.println("RESET PASSWORD CODE for " + request.getIdentifier() + " = " + tokenCode);
     }
 
     // ✅ NEW: Reset password using code
-    @Transactional
+    // checked once before hashing (a wrong code costs no hash), and again in the short write transaction
     public void resetPassword(ResetPasswordRequest request) {
         if (!request.getNewPassword().equals(request.getConfirmPassword())) {
             throw new IllegalArgumentException("Passwords do not match");
         }
 
+        validResetToken(request);
+
+        String passwordHash = passwordHasher.encode(request.getNewPassword());
+
+        tx.executeWithoutResult(status -> {
+            // used or expired while hashing?
+            VerificationToken token = validResetToken(request);
+            User user = token.getUser();
+            user.setPasswordHash(passwordHash);
+            userRepository.save(user);
+
+            token.setUsed(true);
+            tokenRepository.save(token);
+        });
+    }
+
+    private VerificationToken validResetToken(ResetPasswordRequest request) {
         User user = userRepository.findByEmail(request.getIdentifier())
                 .or(() -> userRepository.findByPhone(request.getIdentifier()))
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -212,12 +245,7 @@ public class AuthService {
         if (!token.getUser().getId().equals(user.getId())) {
             throw new IllegalArgumentException("Invalid token");
         }
-
-        user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
-        userRepository.save(user);
-
-        token.setUsed(true);
-        tokenRepository.save(token);
+        return token;
     }
 
     private String generateVerificationCode() {
@@ -263,14 +291,8 @@ public class AuthService {
 
         tokenRepository.save(token);
 
-        if (token.getType() == VerificationType.EMAIL) {
-            emailService.sendVerificationCode(user.getEmail(), tokenCode);
-        } else if (token.getType() == VerificationType.PHONE) {
-            smsService.ifPresentOrElse(
-                    s -> s.sendVerificationCode(user.getPhone(), tokenCode),
-                    () -> System.out.println("SMS disabled. SIGNUP resend code=" + tokenCode)
-            );
-        }
+        // sent after commit by NotificationDispatcher, not while holding the transaction
+        notifications.sendVerificationCode(token);
     }
 
 }
@@ -0,0 +1,381 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.event.ChatMessagesPersisted;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind for chat messages: ids are handed out in memory so a message can be broadcast right away,
+// and one writer thread inserts them with JDBC batches, committing when the batch is full or maxDelayMs passed.
+//
+// One FIFO queue + one writer → rows are inserted in id order, so per-conversation order is kept.
+// Ids continue from max(id) at startup, so only this instance may insert into chat_messages.
+// A batch that still fails after max-attempts goes to chat_dead_letters (or the log, if that fails too)
+// and the writer moves on, so one outage cannot stall the queue forever.
+//
+// chat.write-behind.enabled=false: each message is inserted on the sender's thread and gets its id from the
+// database (auto increment), so several nodes can share the table. Required with chat.broker.mode=kafka.
+@Component
+@DependsOn("entityManagerFactory") // start() reads max(id): the table must exist (ddl-auto) first
+public class ChatMessageWriter {
+
+    private static final String INSERT = """
+            insert into chat_messages (id, conversation_id, sender_id, sender_role, message, sent_at)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+    // conversations.last_message_id only moves forward (batches commit in id order, this is for safety)
+    private static final String BUMP_LAST_MESSAGE = """
+            update conversations set last_message_id = ?
+            where id = ? and (last_message_id is null or last_message_id < ?)
+            """;
+    // the other participant's unread counter, only if its cursor is before the message
+    // (a client may mark read a broadcast message before it is inserted)
+    private static final String COUNT_UNREAD = """
+            update conversation_read_cursors set unread_count = unread_count + 1
+            where conversation_id = ? and user_id <> ? and last_read_message_id < ?
+            """;
+    private static final String INSERT_GENERATED = """
+            insert into chat_messages (conversation_id, sender_id, sender_role, message, sent_at)
+            values (?, ?, ?, ?, ?)
+            """;
+    private static final String INSERT_DEAD_LETTER = """
+            insert into chat_dead_letters
+                (message_id, conversation_id, sender_id, sender_role, message, sent_at, attempts, last_error, created_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+
+    private final boolean writeBehind;
+    private final boolean clustered;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutMs;
+    private final int maxAttempts;
+    private final BlockingQueue<Pending> queue;
+
+    // one permit per queued or unwritten message; taken before submitLock, so a sender waiting for room
+    // does not hold up the others
+    private final Semaphore capacity;
+
+    // guards nextId + enqueue, so queue order == id order
+    private final Object submitLock = new Object();
+    private long nextId;
+    private CompletableFuture<Void> lastSubmitted = CompletableFuture.completedFuture(null);
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private record Pending(ChatMessageDto message, CompletableFuture<Void> persisted) {
+    }
+
+    public ChatMessageWriter(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher events,
+                             @Value("${chat.write-behind.enabled:true}") boolean writeBehind,
+                             @Value("${chat.broker.mode:local}") String brokerMode,
+                             @Value("${chat.write-behind.batch-size:200}") int batchSize,
+                             @Value("${chat.write-behind.max-delay-ms:10}") long maxDelayMs,
+                             @Value("${chat.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${chat.write-behind.offer-timeout-ms:2000}") long offerTimeoutMs,
+                             @Value("${chat.write-behind.max-attempts:10}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.writeBehind = writeBehind;
+        this.clustered = "kafka".equals(brokerMode);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        // ids from max(id) are only unique on one node: a second node would hand out the same ones
+        if (writeBehind && clustered) {
+            throw new IllegalStateException("chat.broker.mode=kafka needs chat.write-behind.enabled=false");
+        }
+
+        backfill();
+
+        running = true;
+        if (!writeBehind) return;
+
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from chat_messages", Long.class);
+        nextId = maxId + 1;
+
+        writer = new Thread(this::run, "chat-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // rows from before last_message_id / unread_count existed; a no-op once they are filled
+    void backfill() {
+        // one index lookup each, only conversations still null
+        jdbcTemplate.update("""
+                update conversations set last_message_id =
+                    (select max(m.id) from chat_messages m where m.conversation_id = conversations.id)
+                where last_message_id is null
+                """);
+        // read cursors for both participants, then counted once
+        // (insert ignore: several nodes may start at the same time)
+        jdbcTemplate.update("""
+                insert ignore into conversation_read_cursors (conversation_id, user_id, last_read_message_id)
+                select p.conversation_id, p.user_id, 0 from (
+                    select c.id as conversation_id, c.customer_id as user_id from conversations c
+                    union all
+                    select c.id, c.provider_id from conversations c where c.provider_id is not null
+                ) p
+                where not exists (select 1 from conversation_read_cursors rc
+                                  where rc.conversation_id = p.conversation_id and rc.user_id = p.user_id)
+                """);
+        jdbcTemplate.update("""
+                update conversation_read_cursors set unread_count =
+                    (select count(m.id) from chat_messages m
+                     where m.conversation_id = conversation_read_cursors.conversation_id
+                       and m.id > conversation_read_cursors.last_read_message_id
+                       and m.sender_id <> conversation_read_cursors.user_id)
+                where unread_count is null
+                """);
+    }
+
+    // writes what is still queued before the datasource goes away
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // under submitLock: no submit can slip in after the writer saw running == false and an empty queue
+        synchronized (submitLock) {
+            running = false;
+        }
+        if (writer != null) writer.join(30_000);
+    }
+
+    // gives the message its id and queues it; the future completes once the row is committed
+    public CompletableFuture<Void> submit(ChatMessageDto message) {
+        if (!writeBehind) {
+            if (!running) throw new IllegalStateException("Chat is shutting down");
+            insertNow(message);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!running) throw new IllegalStateException("Chat is shutting down");
+        try {
+            // no room = the database is behind: senders wait a little, then get an error
+            if (!capacity.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Chat is busy, try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Chat is busy, try again");
+        }
+
+        CompletableFuture<Void> persisted = new CompletableFuture<>();
+        synchronized (submitLock) {
+            if (!running) {
+                capacity.release();
+                throw new IllegalStateException("Chat is shutting down");
+            }
+            message.setId(nextId++);
+            // cannot fail: the permit holds a slot
+            queue.add(new Pending(message, persisted));
+            lastSubmitted = persisted;
+        }
+        return persisted;
+    }
+
+    // blocks until everything submitted before this call has been written (or dropped)
+    public void flush() {
+        CompletableFuture<Void> last;
+        synchronized (submitLock) {
+            last = lastSubmitted;
+        }
+        last.handle((ok, error) -> null).join();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // group commit: fill the batch until it is full or the oldest message waited maxDelay
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) break;
+                    Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                capacity.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    // the database being down must not reorder messages: the same batch is retried (with backoff)
+    // until it goes in, up to maxAttempts (3 once stopping); then it is dead-lettered
+    private void writeWithRetry(List<Pending> batch) throws InterruptedException {
+        long backoffMs = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // e.g. the conversation was deleted meanwhile → retry one by one, drop only the bad rows
+                if (batch.size() == 1) {
+                    System.out.println("Chat message " + batch.get(0).message().getId() + " dropped: " + e.getMessage());
+                    batch.get(0).persisted().completeExceptionally(e);
+                    return;
+                }
+                for (Pending p : batch) {
+                    writeWithRetry(List.of(p));
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || (!running && attempt >= 3)) {
+                    deadLetter(batch, attempt, e);
+                    return;
+                }
+                System.out.println("Chat writer failed, retrying in " + backoffMs + " ms: " + e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private void deadLetter(List<Pending> batch, int attempts, RuntimeException error) {
+        System.out.println("Chat writer giving up on " + batch.size() + " messages after " + attempts
+                + " attempts: " + error.getMessage());
+        String lastError = error.getMessage() == null ? null
+                : error.getMessage().substring(0, Math.min(error.getMessage().length(), 1000));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            tx.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_DEAD_LETTER, batch, batch.size(), (ps, p) -> {
+                ChatMessageDto m = p.message();
+                ps.setLong(1, m.getId());
+                ps.setLong(2, m.getConversationId());
+                ps.setLong(3, m.getSenderId());
+                ps.setString(4, m.getSenderRole() == null ? null : m.getSenderRole().name());
+                ps.setString(5, m.getMessage());
+                ps.setTimestamp(6, m.getSentAt() == null ? null : Timestamp.valueOf(m.getSentAt()));
+                ps.setInt(7, attempts);
+                ps.setString(8, lastError);
+                ps.setTimestamp(9, now);
+            }));
+        } catch (RuntimeException e) {
+            // most likely the same outage: the log is all that is left
+            System.out.println("Could not store chat dead letters: " + e.getMessage());
+            batch.forEach(p -> System.out.println("Chat message lost: " + p.message()));
+        }
+        batch.forEach(p -> p.persisted().completeExceptionally(error));
+    }
+
+    private void write(List<Pending> batch) {
+        Map<Long, Long> lastIds = lastIdPerConversation(batch);
+        tx.executeWithoutResult(status -> {
+            // cursors first: markRead locks the cursor before it reads chat_messages, same order here
+            jdbcTemplate.batchUpdate(COUNT_UNREAD, batch, batch.size(), (ps, p) -> {
+                ps.setLong(1, p.message().getConversationId());
+                ps.setLong(2, p.message().getSenderId());
+                ps.setLong(3, p.message().getId());
+            });
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, p) -> {
+                ChatMessageDto m = p.message();
+                ps.setLong(1, m.getId());
+                ps.setLong(2, m.getConversationId());
+                ps.setLong(3, m.getSenderId());
+                ps.setString(4, m.getSenderRole() == null ? null : m.getSenderRole().name());
+                ps.setString(5, m.getMessage());
+                ps.setTimestamp(6, Timestamp.valueOf(m.getSentAt()));
+            });
+            // one row per conversation in the batch, same transaction as the messages
+            jdbcTemplate.batchUpdate(BUMP_LAST_MESSAGE, new ArrayList<>(lastIds.entrySet()), lastIds.size(), (ps, e) -> {
+                ps.setLong(1, e.getValue());
+                ps.setLong(2, e.getKey());
+                ps.setLong(3, e.getValue());
+            });
+        });
+        acknowledge(batch, lastIds);
+    }
+
+    // no write-behind: the row and last_message_id in one transaction, id generated by the database
+    private void insertNow(ChatMessageDto m) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        tx.executeWithoutResult(status -> {
+            // cursor first, like write(); the id is not known yet, but it is newer than anything a client has seen
+            jdbcTemplate.update(COUNT_UNREAD, m.getConversationId(), m.getSenderId(), Long.MAX_VALUE);
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT_GENERATED, new String[]{"id"});
+                ps.setLong(1, m.getConversationId());
+                ps.setLong(2, m.getSenderId());
+                ps.setString(3, m.getSenderRole() == null ? null : m.getSenderRole().name());
+                ps.setString(4, m.getMessage());
+                ps.setTimestamp(5, Timestamp.valueOf(m.getSentAt()));
+                return ps;
+            }, keys);
+            m.setId(keys.getKey().longValue());
+            jdbcTemplate.update(BUMP_LAST_MESSAGE, m.getId(), m.getConversationId(), m.getId());
+        });
+        acknowledge(List.of(), Map.of(m.getConversationId(), m.getId()));
+    }
+
+    private static Map<Long, Long> lastIdPerConversation(List<Pending> batch) {
+        Map<Long, Long> upTo = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            upTo.merge(p.message().getConversationId(), p.message().getId(), Math::max);
+        }
+        return upTo;
+    }
+
+    private void acknowledge(List<Pending> batch, Map<Long, Long> upTo) {
+        for (Pending p : batch) {
+            p.persisted().complete(null);
+        }
+        try {
+            upTo.forEach((conversationId, id) -> events.publishEvent(new ChatMessagesPersisted(conversationId, id)));
+        } catch (RuntimeException e) {
+            // the rows are committed; a failed ack broadcast must not stop the writer
+            System.out.println("Chat persisted ack failed: " + e.getMessage());
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.fixme.authservice.service;
 
 import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.dto.ChatMessagePage;
+import com.fixme.authservice.dto.ConversationParticipants;
+import com.fixme.authservice.dto.ConversationSummaryDto;
 import com.fixme.authservice.model.*;
 import com.fixme.authservice.repository.*;
+import com.fixme.authservice.security.CurrentUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -17,59 +26,187 @@ public class ChatService {
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final ServiceRequestRepository serviceRequestRepository;
-    private final UserRepository userRepository;
+    private final ConversationReadCursorRepository readCursorRepository;
+    private final ChatMessageWriter chatMessageWriter;
+    private final RecentMessageCache recentMessages;
+    private final ConversationParticipantCache participants;
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_MESSAGE_LENGTH = 2000; // chat_messages.message
 
     @Transactional
     public Conversation getOrCreateConversation(Long requestId) {
-        return conversationRepository.findByServiceRequestId(requestId)
-                .orElseGet(() -> {
-                    ServiceRequest r = serviceRequestRepository.findById(requestId)
-                            .orElseThrow(() -> new IllegalArgumentException("Request not found"));
-
-                    Conversation c = Conversation.builder()
-                            .serviceRequest(r)
-                            .customer(r.getCustomer())
-                            .provider(r.getProvider())
-                            .createdAt(LocalDateTime.now())
-                            .build();
-
-                    return conversationRepository.save(c);
-                });
+        Optional<Conversation> existing = conversationRepository.findByServiceRequestId(requestId);
+        if (existing.isPresent()) {
+            Conversation c = existing.get();
+            // opened before a provider was assigned → no provider yet
+            CurrentUser.requireOneOf(c.getCustomer().getId(), c.getProvider() == null ? null : c.getProvider().getId());
+            return c;
+        }
+
+        ServiceRequest r = serviceRequestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Request not found"));
+        // only the request's customer / provider may open its conversation
+        CurrentUser.requireOneOf(r.getCustomer().getId(), r.getProvider() == null ? null : r.getProvider().getId());
+
+        Conversation c = conversationRepository.save(Conversation.builder()
+                .serviceRequest(r)
+                .customer(r.getCustomer())
+                .provider(r.getProvider())
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        // both cursors up front: ChatMessageWriter counts unread messages on them
+        readCursorRepository.save(readCursor(c, c.getCustomer()));
+        if (c.getProvider() != null) {
+            readCursorRepository.save(readCursor(c, c.getProvider()));
+        }
+        return c;
     }
 
+    private static ConversationReadCursor readCursor(Conversation c, User user) {
+        return ConversationReadCursor.builder()
+                .conversation(c)
+                .user(user)
+                .lastReadMessageId(0L)
+                .unreadCount(0L)
+                .build();
+    }
+
+    // no limit / cursor → the whole conversation, oldest first (old behaviour)
     @Transactional(readOnly = true)
     public List<ChatMessageDto> getMessages(Long conversationId) {
-        Conversation c = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
-
-        return chatMessageRepository
-                .findByConversationOrderBySentAtAsc(c)
-                .stream()
-                .map(ChatMessageDto::fromEntity)
-                .toList();
+        requireConversation(conversationId);
+        return chatMessageRepository.findDtosAfter(conversationId, 0L, Pageable.unpaged());
+    }
+
+    // ✅ one page of history: latest page by default, older with before, newer with after.
+    // next cursor = id to pass again in the same direction.
+    // No surrounding transaction: a page served by RecentMessageCache must not touch the database at all
+    public ChatMessagePage getMessages(Long conversationId, Integer limit, Long before, Long after) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+
+        int size = pageSize(limit, DEFAULT_PAGE_SIZE);
+        boolean latest = before == null && after == null && size <= recentMessages.capacity();
+        if (latest) {
+            Optional<ChatMessagePage> cached = recentMessages.latest(conversationId, size);
+            if (cached.isPresent()) return cached.get();
+        }
+
+        requireConversation(conversationId);
+        if (after != null) {
+            return newerPage(conversationId, after, size);
+        }
+
+        // latest page missed the cache: load a whole ring's worth and seed it with that
+        int fetch = latest ? recentMessages.capacity() : size;
+        List<ChatMessageDto> rows = chatMessageRepository.findDtosBefore(
+                conversationId, before == null ? Long.MAX_VALUE : before, PageRequest.of(0, fetch + 1));
+        if (latest) recentMessages.seed(conversationId, rows);
+        boolean more = rows.size() > size;
+
+        List<ChatMessageDto> items = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        Collections.reverse(items);
+        return new ChatMessagePage(items, more ? items.get(0).getId().toString() : null);
+    }
+
+    // reconnecting client: everything after the last message it has, up to MAX_PAGE_SIZE per call
+    public ChatMessagePage getMessagesSince(Long conversationId, Long lastSeenId, Integer limit) {
+        long afterId = lastSeenId == null ? 0L : lastSeenId;
+        int size = pageSize(limit, MAX_PAGE_SIZE);
+
+        Optional<ChatMessagePage> cached = recentMessages.since(conversationId, afterId, size);
+        if (cached.isPresent()) return cached.get();
+
+        requireConversation(conversationId);
+        return newerPage(conversationId, afterId, size);
     }
 
+    private ChatMessagePage newerPage(Long conversationId, long afterId, int size) {
+        List<ChatMessageDto> rows = chatMessageRepository.findDtosAfter(
+                conversationId, afterId, PageRequest.of(0, size + 1));
+        if (rows.size() <= size) {
+            return new ChatMessagePage(rows, null);
+        }
+
+        List<ChatMessageDto> items = rows.subList(0, size);
+        return new ChatMessagePage(items, items.get(size - 1).getId().toString());
+    }
+
+    // ✅ conversation list (inbox) of a customer or provider: last message + unread count, one query
+    @Transactional(readOnly = true)
+    public List<ConversationSummaryDto> getConversations(Long userId, UserRole role, Integer limit) {
+        Pageable rows = limit == null ? PageRequest.of(0, MAX_PAGE_SIZE) : PageRequest.of(0, pageSize(limit, MAX_PAGE_SIZE));
+        return switch (role) {
+            case CUSTOMER -> conversationRepository.findSummariesByCustomerId(userId, rows);
+            case PROVIDER -> conversationRepository.findSummariesByProviderId(userId, rows);
+            default -> throw new IllegalArgumentException("Only customers and providers have conversations");
+        };
+    }
+
+    // userId has read up to messageId (moves forward only); the upsert locks the cursor row,
+    // so the recount and ChatMessageWriter's +1 never interleave
     @Transactional
+    public void markRead(Long conversationId, Long userId, Long messageId) {
+        if (participants.get(conversationId).roleOf(userId) == null) {
+            throw new IllegalArgumentException("User is not part of this conversation");
+        }
+
+        readCursorRepository.advance(conversationId, userId, messageId);
+        readCursorRepository.recountUnread(conversationId, userId);
+    }
+
+    // customer + provider of the conversation, for /user/queue/chat
+    public ConversationParticipants participantsOf(Long conversationId) {
+        return participants.get(conversationId);
+    }
+
+    private void requireConversation(Long conversationId) {
+        participants.get(conversationId);
+    }
+
+    private static int pageSize(Integer limit, int fallback) {
+        if (limit == null) return fallback;
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    // ✅ no transaction on the send path: the message gets its id right away and is broadcast by the caller,
+    // ChatMessageWriter inserts it shortly after (ChatMessagesPersisted once it is durable)
     public ChatMessageDto sendMessage(
             Long conversationId,
             Long senderId,
             UserRole senderRole,
             String message
     ) {
-        Conversation c = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        // checked here, not by the database: the message is broadcast before it is inserted
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("Message is empty");
+        }
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("Message is too long");
+        }
+        // ✅ participants from the cache: no conversation / user lookups, the insert is the only statement
+        UserRole role = participants.get(conversationId).roleOf(senderId);
+        if (role == null) {
+            throw new IllegalArgumentException("Sender is not part of this conversation");
+        }
+        if (senderRole != null && senderRole != role) {
+            throw new IllegalArgumentException("Sender role does not match");
+        }
 
-        User sender = userRepository.findById(senderId)
-                .orElseThrow(() -> new IllegalArgumentException("Sender not found"));
-
-        ChatMessage m = ChatMessage.builder()
-                .conversation(c)
-                .sender(sender)
-                .senderRole(senderRole)
+        ChatMessageDto m = ChatMessageDto.builder()
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .senderRole(role)
                 .message(message)
                 .sentAt(LocalDateTime.now())
                 .build();
 
-        return ChatMessageDto.fromEntity(chatMessageRepository.save(m));
+        chatMessageWriter.submit(m);
+        recentMessages.append(m);
+        return m;
     }
 }
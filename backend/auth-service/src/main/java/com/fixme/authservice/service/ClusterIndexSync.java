@@ -0,0 +1,189 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.RequestStatusDelta;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.IndexChangeEvent;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import com.fixme.authservice.model.ProgressStage;
+import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.repository.ServiceRequestRepository;
+import com.fixme.authservice.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+// Cluster mode: every node keeps its own ProviderSpatialIndex (+ NearbyResultCache on top of it),
+// PendingRequestIndex and RequestStatusStream channels, and updates them only for what it committed itself.
+// This relays those changes through one Kafka topic that every node reads (assigned partition, no group):
+//
+// - index changes carry only the id; the other nodes reload the row, so they end up with what is committed
+//   whatever order changes of the same row arrive in (a deleted row is dropped from the index)
+// - request status changes carry the SSE delta, delivered to the customer's channel if this node has one
+//
+// Applied about one poll after the commit. A node positions its consumer before loading its indexes,
+// so nothing committed while it starts is missed.
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "kafka")
+public class ClusterIndexSync {
+
+    private static final Duration POLL = Duration.ofMillis(500);
+    private static final String INDEX = "index";
+    private static final String STATUS = "status";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final KafkaAdmin kafkaAdmin;
+    private final JsonMapper jsonMapper;
+    private final ProviderSpatialIndex spatialIndex;
+    private final PendingRequestIndex pendingRequestIndex;
+    private final RequestStatusStream requestStatusStream;
+    private final ServiceRequestRepository requestRepository;
+    private final VehicleRepository vehicleRepository;
+    private final String topic;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private volatile boolean running;
+    private Consumer<String, String> consumer;
+    private Thread poller;
+
+    record IndexMessage(String node, IndexChangeEvent.Kind kind, Long id) {
+    }
+
+    record StatusMessage(String node, Long customerId, Long requestId, Long providerId,
+                         RequestStatus status, RequestStatus previousStatus, ProgressStage progressStage) {
+    }
+
+    public ClusterIndexSync(KafkaTemplate<String, String> kafkaTemplate,
+                            ConsumerFactory<?, ?> consumerFactory,
+                            KafkaAdmin kafkaAdmin,
+                            JsonMapper jsonMapper,
+                            ProviderSpatialIndex spatialIndex,
+                            PendingRequestIndex pendingRequestIndex,
+                            RequestStatusStream requestStatusStream,
+                            ServiceRequestRepository requestRepository,
+                            VehicleRepository vehicleRepository,
+                            @Value("${chat.broker.kafka.sync-topic:fixme.cluster-sync}") String topic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+        this.kafkaAdmin = kafkaAdmin;
+        this.jsonMapper = jsonMapper;
+        this.spatialIndex = spatialIndex;
+        this.pendingRequestIndex = pendingRequestIndex;
+        this.requestStatusStream = requestStatusStream;
+        this.requestRepository = requestRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.topic = topic;
+    }
+
+    @PostConstruct
+    public void start() {
+        kafkaAdmin.createOrModifyTopics(new NewTopic(topic, 1, (short) 1)
+                .configs(Map.of("retention.ms", "600000")));
+
+        TopicPartition partition = new TopicPartition(topic, 0);
+        Properties props = new Properties();
+        props.put("enable.auto.commit", "false");
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        @SuppressWarnings("unchecked")
+        Consumer<String, String> c = (Consumer<String, String>) consumerFactory.createConsumer(null, "cluster-sync", nodeId, props);
+        c.assign(List.of(partition));
+        c.seekToEnd(List.of(partition));
+        c.position(partition); // resolve "end" now, before the reload below
+        consumer = c;
+
+        // the indexes loaded when they were created; changes committed since then are only on the topic
+        // before our position, so load again now that everything after it will be read
+        spatialIndex.rebuild();
+        pendingRequestIndex.rebuild();
+
+        running = true;
+        poller = new Thread(() -> poll(c), "cluster-sync");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        poller.join(5_000);
+    }
+
+    // only after commit, so a rolled back change is never announced
+    @TransactionalEventListener
+    public void onIndexChanged(IndexChangeEvent event) {
+        send(INDEX, new IndexMessage(nodeId, event.kind(), event.id()));
+    }
+
+    @TransactionalEventListener
+    public void onRequestChanged(ServiceRequestEvent event) {
+        ServiceRequestResponse r = event.request();
+        if (event.enteredPending() || event.leftPending()) {
+            send(INDEX, new IndexMessage(nodeId, IndexChangeEvent.Kind.REQUEST, r.getId()));
+        }
+        RequestStatusDelta d = RequestStatusStream.delta(event);
+        send(STATUS, new StatusMessage(nodeId, r.getCustomerId(), d.getRequestId(), d.getProviderId(),
+                d.getStatus(), d.getPreviousStatus(), d.getProgressStage()));
+    }
+
+    private void send(String type, Object message) {
+        kafkaTemplate.send(topic, type, jsonMapper.writeValueAsString(message));
+    }
+
+    private void poll(Consumer<String, String> c) {
+        try (c) {
+            while (running) {
+                for (ConsumerRecord<String, String> record : c.poll(POLL)) {
+                    try {
+                        apply(record);
+                    } catch (RuntimeException e) {
+                        System.out.println("Cluster sync record skipped: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (WakeupException e) {
+            // stop()
+        }
+    }
+
+    private void apply(ConsumerRecord<String, String> record) {
+        if (record.value() == null) return;
+
+        if (INDEX.equals(record.key())) {
+            IndexMessage m = jsonMapper.readValue(record.value(), IndexMessage.class);
+            if (nodeId.equals(m.node())) return;
+
+            switch (m.kind()) {
+                case PROVIDER -> spatialIndex.reload(m.id());
+                case REQUEST -> requestRepository.findWithVehicleById(m.id())
+                        .ifPresentOrElse(pendingRequestIndex::sync, () -> pendingRequestIndex.remove(m.id()));
+                case VEHICLE -> vehicleRepository.findById(m.id()).ifPresent(pendingRequestIndex::vehicleChanged);
+            }
+        } else if (STATUS.equals(record.key())) {
+            StatusMessage m = jsonMapper.readValue(record.value(), StatusMessage.class);
+            if (nodeId.equals(m.node())) return;
+
+            requestStatusStream.onRemoteChange(m.customerId(), new RequestStatusDelta(
+                    m.requestId(), m.providerId(), m.status(), m.previousStatus(), m.progressStage()));
+        }
+    }
+}
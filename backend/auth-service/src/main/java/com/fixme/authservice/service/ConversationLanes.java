@@ -0,0 +1,91 @@
+package com.fixme.authservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Chat work from the STOMP inbound channel, run on a fixed set of single-threaded lanes picked by conversation id:
+// one conversation is always handled by the same thread, in arrival order, while other conversations run
+// on the other lanes. A busy conversation can fill only its own lane, not the whole inbound pool.
+@Component
+public class ConversationLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    private final Timer waitTimer;
+    private final Timer runTimer;
+
+    public ConversationLanes(MeterRegistry registry,
+                             @Value("${chat.lanes.count:0}") int count,
+                             @Value("${chat.lanes.queue-capacity:1000}") int queueCapacity) {
+        int n = count > 0 ? count : 2 * Runtime.getRuntime().availableProcessors();
+        this.lanes = new ThreadPoolExecutor[n];
+        for (int i = 0; i < n; i++) {
+            String name = "chat-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+            Gauge.builder("chat.lanes.queue.depth", lanes[i], lane -> lane.getQueue().size())
+                    .tag("lane", Integer.toString(i))
+                    .register(registry);
+        }
+
+        // wait = queued until its lane picked it up, run = the work itself
+        this.waitTimer = Timer.builder("chat.lanes.latency").tag("stage", "wait").register(registry);
+        this.runTimer = Timer.builder("chat.lanes.latency").tag("stage", "run").register(registry);
+    }
+
+    // runs task after everything dispatched earlier for the same conversation
+    public void dispatch(Long conversationId, Runnable task) {
+        long queuedAt = System.nanoTime();
+        try {
+            lanes[laneOf(conversationId)].execute(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // same as an exception in a @MessageMapping method: logged, the lane goes on
+                    System.out.println("Chat lane task failed (conversation " + conversationId + "): " + e.getMessage());
+                } finally {
+                    runTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Chat is busy, try again");
+        }
+    }
+
+    int laneOf(Long conversationId) {
+        if (conversationId == null) return 0;
+        // spread consecutive ids (Fibonacci hashing) before taking the lane
+        long h = conversationId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) lanes.length);
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
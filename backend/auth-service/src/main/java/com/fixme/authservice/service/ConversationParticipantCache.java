@@ -0,0 +1,76 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ConversationParticipants;
+import com.fixme.authservice.repository.ConversationRepository;
+import com.fixme.authservice.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// conversation id → (customer, provider, request), so sending a message or reading a page checks the
+// participants without a query. A conversation's participants never change; entries only go away when
+// AdminService deletes the conversation.
+@Component
+public class ConversationParticipantCache {
+
+    // ~100 bytes per entry
+    private static final int MAX_ENTRIES = 100_000;
+
+    private final ConversationRepository conversationRepository;
+
+    // access-order LinkedHashMap = LRU, guarded by itself
+    private final Map<Long, ConversationParticipants> entries = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ConversationParticipants> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // bumped on every eviction, so a load that raced with a delete is not stored after it
+    private long generation = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ConversationParticipantCache(ConversationRepository conversationRepository, MeterRegistry registry) {
+        this.conversationRepository = conversationRepository;
+        this.hits = Counter.builder("chat.participants.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("chat.participants.requests").tag("result", "miss").register(registry);
+    }
+
+    public ConversationParticipants get(Long conversationId) {
+        long seenGeneration;
+        synchronized (entries) {
+            ConversationParticipants cached = entries.get(conversationId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            seenGeneration = generation;
+        }
+        misses.increment();
+
+        ConversationParticipants loaded = conversationRepository.findParticipantsById(conversationId)
+                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        synchronized (entries) {
+            if (generation == seenGeneration) entries.put(conversationId, loaded);
+        }
+        return loaded;
+    }
+
+    // conversations deleted in the current transaction
+    public void evict(Collection<Long> conversationIds) {
+        List<Long> ids = List.copyOf(conversationIds);
+        TransactionUtil.afterCommit(() -> {
+            synchronized (entries) {
+                generation++;
+                ids.forEach(entries::remove);
+            }
+        });
+    }
+}
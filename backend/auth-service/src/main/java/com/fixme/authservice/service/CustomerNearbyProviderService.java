@@ -1,70 +1,91 @@
 package com.fixme.authservice.service;
 
+import com.fixme.authservice.dto.NearbyProviderPage;
 import com.fixme.authservice.dto.NearbyProviderResponse;
 import com.fixme.authservice.model.ProviderBusiness;
 import com.fixme.authservice.model.ServiceType;
 import com.fixme.authservice.model.VehicleCategory;
 import com.fixme.authservice.repository.ProviderBusinessRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.NearbyCursor;
 import com.fixme.authservice.util.OpeningHoursUtil;
-import java.time.ZoneId;
+import com.fixme.authservice.util.WeeklySchedule;
 
 
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CustomerNearbyProviderService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // DB backend: never pull more rows than this in one query
+    private static final int DATABASE_MAX_RESULTS = 200;
+
     private final ProviderBusinessRepository businessRepository;
+    private final ProviderSpatialIndex spatialIndex;
+    private final NearbyResultCache nearbyCache;
+
+    // index = in-memory grid (default), database = MySQL spatial index (see ProviderLocationSchemaInitializer)
+    @Value("${nearby.search-backend:index}")
+    private String searchBackend;
+
+    private record Candidate(Long businessId, double distanceKm) {
+    }
+
+    private record CandidatePage(List<Candidate> candidates, NearbyCursor next) {
+    }
 
-    public List<NearbyProviderResponse> nearbyProviders(
+    // limit == null → everything in radius (old behaviour); cursor = nextCursor of the previous page
+    public NearbyProviderPage nearbyProviders(
             double lat,
             double lng,
             double radiusKm,
             VehicleCategory category,
-            ServiceType serviceType
+            ServiceType serviceType,
+            Integer limit,
+            String cursor
 
     ) {
+        NearbyCursor after = NearbyCursor.decode(cursor);
+        int pageSize = (limit == null) ? Integer.MAX_VALUE - 1 : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
 
-        List<ProviderBusiness> all = businessRepository.findByLatitudeNotNullAndLongitudeNotNull();
+        // ✅ open-now is a bit lookup on the pre-compiled schedule
+        int minuteOfWeek = WeeklySchedule.currentMinuteOfWeek(OpeningHoursUtil.ZONE);
 
-        return all.stream()
-                .filter(b -> b.getLatitude() != null && b.getLongitude() != null)
+        // one page of candidates within radius, matching category + service + open now, nearest first
+        CandidatePage page = "database".equals(searchBackend)
+                ? fromDatabase(lat, lng, radiusKm, category, serviceType, minuteOfWeek, after, pageSize)
+                : fromIndex(lat, lng, radiusKm, category, serviceType, minuteOfWeek, after, pageSize);
 
-                // ✅ Filter by vehicle category
-                .filter(b -> {
-                    if (b.getCategories() == null || b.getCategories().isEmpty()) return false;
-                    return b.getCategories().contains(VehicleCategory.ALL)
-                            || b.getCategories().contains(category);
-                })
+        String nextCursor = page.next() != null ? page.next().encode() : null;
+        List<Candidate> candidates = page.candidates();
+        if (candidates.isEmpty()) return new NearbyProviderPage(List.of(), nextCursor);
 
-                // ✅ NEW: Filter by service type
-                .filter(b -> {
-                    if (b.getOfferedServices() == null || b.getOfferedServices().isEmpty()) return false;
-                    return b.getOfferedServices().contains(serviceType);
-                })
-                .filter(b -> OpeningHoursUtil.isOpenNow(b.getOpeningHours(), ZoneId.of("Asia/Jerusalem")))
-
-                // distance calc
-                .map(b -> {
-                    double d = haversineKm(lat, lng, b.getLatitude(), b.getLongitude());
-                    return new Object[]{b, d};
-                })
-
-                // within radius
-                .filter(arr -> (double) arr[1] <= radiusKm)
+        // load only the candidates, not the whole table
+        List<Long> ids = candidates.stream().map(Candidate::businessId).toList();
+        Map<Long, ProviderBusiness> byId = businessRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(ProviderBusiness::getId, Function.identity()));
 
-                // sort by distance
-                .sorted(Comparator.comparingDouble(arr -> (double) arr[1]))
+        List<NearbyProviderResponse> items = candidates.stream()
+                .filter(c -> byId.containsKey(c.businessId()))
 
                 // map to DTO
-                .map(arr -> {
-                    ProviderBusiness b = (ProviderBusiness) arr[0];
-                    double d = (double) arr[1];
+                .map(c -> {
+                    ProviderBusiness b = byId.get(c.businessId());
+                    long mask = b.getCapabilityMask() != null
+                            ? b.getCapabilityMask()
+                            : CapabilityMask.of(b.getCategories(), b.getOfferedServices());
 
                     return NearbyProviderResponse.builder()
                             .userId(b.getUser().getId())
@@ -76,30 +97,74 @@ public class CustomerNearbyProviderService {
                             .services(b.getServices())
 
                             // ✅ NEW
-                            .offeredServices(b.getOfferedServices())
+                            .offeredServices(CapabilityMask.services(mask))
 
                             .openingHours(b.getOpeningHours())
                             .latitude(b.getLatitude())
                             .longitude(b.getLongitude())
-                            .categories(b.getCategories())
-                            .distanceKm(d)
+                            .categories(CapabilityMask.categories(mask))
+                            .distanceKm(c.distanceKm())
                             .build();
                 })
                 .collect(Collectors.toList());
+
+        return new NearbyProviderPage(items, nextCursor);
     }
 
-    // ✅ Haversine
-    private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
+    // ✅ only the grid cells overlapping the radius are visited; category + service is a BitSet AND there,
+    // and only a bounded top-K heap is kept
+    private CandidatePage fromIndex(double lat, double lng, double radiusKm,
+                                    VehicleCategory category, ServiceType serviceType,
+                                    int minuteOfWeek, NearbyCursor after, int pageSize) {
+        Predicate<ProviderSpatialIndex.Entry> openNow = e -> e.schedule().isOpenAt(minuteOfWeek);
+
+        // one extra to know if there is a next page
+        // neighbourhood radii go through the cell cache, exact distances are still computed from (lat, lng);
+        // wide ones straight to the index (grid, or columnar when nearby.columnar-from-km is set)
+        boolean cached = radiusKm < NearbyResultCache.MAX_RADIUS_KM && !spatialIndex.usesColumnar(radiusKm);
+        List<ProviderSpatialIndex.Match> matches = cached
+                ? ProviderSpatialIndex.nearest(
+                        nearbyCache.candidates(lat, lng, radiusKm, category, serviceType),
+                        lat, lng, radiusKm, openNow, after, pageSize + 1)
+                : spatialIndex.nearest(lat, lng, radiusKm, category, serviceType, openNow, after, pageSize + 1);
+
+        boolean hasMore = matches.size() > pageSize;
+        if (hasMore) matches = matches.subList(0, pageSize);
+
+        List<Candidate> candidates = matches.stream()
+                .map(m -> new Candidate(m.entry().businessId(), m.distanceKm()))
+                .toList();
+        return new CandidatePage(candidates, hasMore ? cursorOf(candidates.get(candidates.size() - 1)) : null);
+    }
 
-        double a =
-                Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                        Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                                Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    // ✅ bounding box + distance + filters + open now + cursor + LIMIT all run inside MySQL,
+    // so every query returns full pages. Without a limit (pageSize = everything) it pages through
+    // the whole radius DATABASE_MAX_RESULTS rows at a time and returns no cursor, like the index backend
+    private CandidatePage fromDatabase(double lat, double lng, double radiusKm,
+                                       VehicleCategory category, ServiceType serviceType,
+                                       int minuteOfWeek, NearbyCursor after, int pageSize) {
+        int rows = Math.min(pageSize, DATABASE_MAX_RESULTS);
+
+        List<Candidate> page = new ArrayList<>();
+        NearbyCursor from = after;
+        while (true) {
+            List<Candidate> batch = businessRepository.findNearby(
+                            lat, lng, radiusKm, category, serviceType, minuteOfWeek, from, rows + 1)
+                    .stream()
+                    .map(r -> new Candidate(r.getBusinessId(), r.getDistanceKm()))
+                    .toList();
+
+            boolean hasMore = batch.size() > rows;
+            if (hasMore) batch = batch.subList(0, rows);
+            page.addAll(batch);
+
+            if (!hasMore) return new CandidatePage(page, null);
+            from = cursorOf(batch.get(batch.size() - 1));
+            if (page.size() >= pageSize) return new CandidatePage(page, from);
+        }
+    }
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    private static NearbyCursor cursorOf(Candidate c) {
+        return new NearbyCursor(c.distanceKm(), c.businessId());
     }
 }
@@ -1,12 +1,17 @@
 package com.fixme.authservice.service;
 
 import com.fixme.authservice.dto.ServiceRequestCreateRequest;
+import com.fixme.authservice.dto.ServiceRequestPage;
 import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
 import com.fixme.authservice.model.*;
 import com.fixme.authservice.repository.ServiceRequestRepository;
 import com.fixme.authservice.repository.UserRepository;
 import com.fixme.authservice.repository.VehicleRepository;
+import com.fixme.authservice.security.CurrentUser;
+import com.fixme.authservice.util.RequestCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,12 +25,18 @@ public class CustomerRequestService {
     private final UserRepository userRepository;
     private final VehicleRepository vehicleRepository;
     private final ServiceRequestRepository requestRepository;
+    private final PendingRequestIndex pendingRequestIndex;
+    private final ApplicationEventPublisher events;
 
     public ServiceRequestResponse createRequest(Long userId, ServiceRequestCreateRequest req) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        if (user.getRole() != UserRole.CUSTOMER) {
+        // ✅ a verified token already says who the caller is: a reference instead of loading the user
+        UserRole role = CurrentUser.roleOf(userId);
+        User user = role != null
+                ? userRepository.getReferenceById(userId)
+                : userRepository.findById(userId)
+                        .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        if ((role != null ? role : user.getRole()) != UserRole.CUSTOMER) {
             throw new IllegalStateException("User is not a customer");
         }
 
@@ -61,56 +72,58 @@ public class CustomerRequestService {
         // ✅ default progress
         r.setProgressStage(ProgressStage.ON_THE_WAY);
 
-        return toResponse(requestRepository.save(r));
+        ServiceRequest saved = requestRepository.save(r);
+        pendingRequestIndex.sync(saved);
+
+        ServiceRequestResponse response = toResponse(saved);
+        events.publishEvent(new ServiceRequestEvent(response, null));
+        return response;
     }
 
+    // PENDING -> WAITING_PROVIDER in one conditional UPDATE; its row count is the outcome, nothing is read first
     public ServiceRequestResponse assignProvider(Long customerId, Long requestId, Long providerId) {
-        ServiceRequest r = requestRepository.findById(requestId)
-                .orElseThrow(() -> new IllegalArgumentException("Request not found"));
-
-        if (!r.getCustomer().getId().equals(customerId)) {
-            throw new IllegalStateException("Not your request");
-        }
-
-        if (r.getStatus() != RequestStatus.PENDING) {
-            throw new IllegalStateException("Request is not in PENDING state");
-        }
-
-        User provider = userRepository.findById(providerId)
-                .orElseThrow(() -> new IllegalArgumentException("Provider not found"));
-
-        if (provider.getRole() != UserRole.PROVIDER) {
-            throw new IllegalStateException("User is not a provider");
+        int changed = requestRepository.assignProvider(
+                requestId, customerId,
+                userRepository.getReferenceById(providerId), providerId, UserRole.PROVIDER,
+                RequestStatus.PENDING, RequestStatus.WAITING_PROVIDER
+        );
+        if (changed == 0) {
+            // not found, not this customer's, no longer PENDING (lost the race) or providerId is no provider
+            throw new IllegalStateException("Request is not PENDING for this customer, or provider not found");
         }
 
-        r.setProvider(provider);
-        r.setStatus(RequestStatus.WAITING_PROVIDER);
-
-        return toResponse(requestRepository.save(r));
+        // no longer visible to other providers
+        pendingRequestIndex.remove(requestId);
+        return changed(requestId, RequestStatus.PENDING);
     }
 
+    // newest first; limit == null → all, before = nextCursor of the previous page
     @Transactional(readOnly = true)
-    public List<ServiceRequestResponse> getMyRequests(Long userId) {
-        return requestRepository.findByCustomerIdOrderByCreatedAtDesc(userId)
-                .stream()
-                .map(this::toResponse)
-                .toList();
+    public ServiceRequestPage getMyRequests(Long userId, Integer limit, String before) {
+        RequestCursor cursor = RequestCursor.decode(before);
+        List<ServiceRequestResponse> rows = requestRepository.findResponsesByCustomerId(
+                userId, cursor.createdAt(), cursor.id(), RequestPages.rowsFor(limit));
+        return RequestPages.of(rows, limit);
     }
 
+    // WAITING_CUSTOMER -> ACCEPTED in one conditional UPDATE
     public ServiceRequestResponse confirm(Long customerId, Long requestId) {
-        ServiceRequest r = requestRepository.findById(requestId)
-                .orElseThrow(() -> new IllegalArgumentException("Request not found"));
-
-        if (!r.getCustomer().getId().equals(customerId)) {
-            throw new IllegalStateException("Not your request");
-        }
-
-        if (r.getStatus() != RequestStatus.WAITING_CUSTOMER) {
+        int changed = requestRepository.transitionAsCustomer(
+                requestId, customerId, RequestStatus.WAITING_CUSTOMER, RequestStatus.ACCEPTED);
+        if (changed == 0) {
+            // not found, not this customer's, or not waiting for the customer (any more)
             throw new IllegalStateException("Request is not waiting for customer confirm");
         }
+        return changed(requestId, RequestStatus.WAITING_CUSTOMER);
+    }
 
-        r.setStatus(RequestStatus.ACCEPTED);
-        return toResponse(requestRepository.save(r));
+    // ✅ only the winner of a transition reads the row, once, after its UPDATE (same transaction, so it sees
+    // what the UPDATE wrote): the response and the event listeners (outbox, SSE, STOMP) need the whole request
+    private ServiceRequestResponse changed(Long requestId, RequestStatus previousStatus) {
+        ServiceRequestResponse response = requestRepository.findResponseById(requestId).orElseThrow();
+        // let listeners know (after commit)
+        events.publishEvent(new ServiceRequestEvent(response, previousStatus));
+        return response;
     }
 
     private ServiceRequestResponse toResponse(ServiceRequest r) {
@@ -1,11 +1,13 @@
 package com.fixme.authservice.service;
 
 import com.fixme.authservice.dto.VehicleRequest;
+import com.fixme.authservice.event.IndexChangeEvent;
 import com.fixme.authservice.model.*;
 import com.fixme.authservice.repository.ServiceRequestRepository;
 import com.fixme.authservice.repository.UserRepository;
 import com.fixme.authservice.repository.VehicleRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +21,8 @@ public class CustomerService {
     private final UserRepository userRepository;
     private final VehicleRepository vehicleRepository;
     private final ServiceRequestRepository serviceRequestRepository;
+    private final PendingRequestIndex pendingRequestIndex;
+    private final ApplicationEventPublisher events;
 
 
 
@@ -77,8 +81,10 @@ public class CustomerService {
 
         vehicle.setVehicleCategory(category);
 
-
-        return vehicleRepository.save(vehicle);
+        Vehicle saved = vehicleRepository.save(vehicle);
+        pendingRequestIndex.vehicleChanged(saved);
+        events.publishEvent(new IndexChangeEvent(IndexChangeEvent.Kind.VEHICLE, saved.getId()));
+        return saved;
     }
     public void deleteVehicle(Long userId, Long vehicleId) {
         User user = userRepository.findById(userId)
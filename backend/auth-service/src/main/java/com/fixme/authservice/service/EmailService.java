@@ -1,10 +1,21 @@
 package com.fixme.authservice.service;
 
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
 import org.springframework.stereotype.Service;
 
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class EmailService {
@@ -12,6 +23,21 @@ public class EmailService {
     private final JavaMailSender mailSender;
 
     public void sendVerificationCode(String toEmail, String code) {
+        mailSender.send(verificationMessage(toEmail, code));
+    }
+
+    // one SMTP connection for the whole batch (JavaMailSenderImpl), instead of connect + TLS + auth per mail.
+    // Throws MailSendException with getFailedMessages() when some of them failed
+    public void sendAll(SimpleMailMessage... messages) {
+        mailSender.send(messages);
+    }
+
+    // an SMTP connection kept open across batches (one per NotificationDispatcher worker), see Connection
+    public Connection openConnection() {
+        return new Connection();
+    }
+
+    public SimpleMailMessage verificationMessage(String toEmail, String code) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setTo(toEmail);
         message.setSubject("FixMe");
@@ -22,6 +48,78 @@ public class EmailService {
                         "Best regards,\n" +
                         "The FixMe Team"
         );
-        mailSender.send(message);
+        return message;
+    }
+
+    // Connects on first use and stays connected, so later batches skip connect + TLS + auth.
+    // A connection the server dropped (idle timeout, restart) is noticed before the next batch and reopened;
+    // one that breaks mid-batch is closed and the unsent messages are reported as failed.
+    // Not thread safe: one per thread. Other JavaMailSenders fall back to sendAll.
+    public final class Connection implements AutoCloseable {
+
+        private Transport transport;
+
+        private Connection() {
+        }
+
+        // same contract as sendAll: MailSendException with getFailedMessages() when some of them failed
+        public void send(SimpleMailMessage... messages) {
+            if (!(mailSender instanceof JavaMailSenderImpl sender)) {
+                sendAll(messages);
+                return;
+            }
+
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            try {
+                connect(sender);
+            } catch (MessagingException e) {
+                // nothing went out: empty failed map, like JavaMailSenderImpl
+                throw new MailSendException("SMTP connect failed: " + e.getMessage(), e);
+            }
+
+            for (int i = 0; i < messages.length; i++) {
+                try {
+                    MimeMessage mime = sender.createMimeMessage();
+                    messages[i].copyTo(new MimeMailMessage(mime));
+                    if (mime.getSentDate() == null) mime.setSentDate(new Date());
+                    mime.saveChanges();
+                    transport.sendMessage(mime, mime.getAllRecipients());
+                } catch (SendFailedException e) {
+                    // recipient rejected: the connection is still fine
+                    failed.put(messages[i], e);
+                } catch (MessagingException e) {
+                    close();
+                    for (int j = i; j < messages.length; j++) {
+                        failed.put(messages[j], e);
+                    }
+                    break;
+                }
+            }
+            if (!failed.isEmpty()) throw new MailSendException(failed);
+        }
+
+        private void connect(JavaMailSenderImpl sender) throws MessagingException {
+            // isConnected() sends a NOOP: false once the server closed an idle connection
+            if (transport != null && transport.isConnected()) return;
+            close();
+
+            String protocol = sender.getProtocol() == null ? "smtp" : sender.getProtocol();
+            String username = sender.getUsername() == null || sender.getUsername().isEmpty() ? null : sender.getUsername();
+            String password = sender.getPassword() == null || sender.getPassword().isEmpty() ? null : sender.getPassword();
+            Transport t = sender.getSession().getTransport(protocol);
+            t.connect(sender.getHost(), sender.getPort(), username, password);
+            transport = t;
+        }
+
+        @Override
+        public void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // already gone
+            }
+            transport = null;
+        }
     }
 }
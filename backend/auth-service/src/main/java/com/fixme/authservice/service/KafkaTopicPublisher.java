@@ -0,0 +1,268 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.config.LocalSubscriptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Cluster mode: every node keeps its own simple broker, and publications are relayed through Kafka
+// to the other nodes that have a local subscriber for that destination.
+//
+// - each node has an inbox topic (<prefix>.<nodeId>) that only it reads
+// - each node announces the destinations it has subscribers for on a compacted interest topic
+//   (key = node id), on change and every heartbeat; nodes silent for 3 heartbeats are ignored
+// - publish = deliver locally + one record per interested node (key = destination, value = JSON payload);
+//   user queues are keyed /user/{id}/queue/x, so they only go to nodes where that user is connected
+//
+// A subscriber is known cluster-wide about one announce interval after it subscribed; clients catch up on
+// anything sent in between with the "since" endpoints.
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "kafka")
+public class KafkaTopicPublisher implements TopicPublisher {
+
+    private static final Duration POLL = Duration.ofMillis(500);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final LocalSubscriptions localSubscriptions;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final KafkaAdmin kafkaAdmin;
+    private final JsonMapper jsonMapper;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final String inboxPrefix;
+    private final String interestTopic;
+    private final long announceMs;
+    private final long heartbeatMs;
+
+    // node id → what it has subscribers for (other nodes only)
+    private final Map<String, Interest> remote = new ConcurrentHashMap<>();
+    private volatile boolean interestChanged = true;
+    private volatile boolean running;
+    private long lastAnnounce = 0;
+
+    private final Counter forwarded;
+    private final Counter received;
+
+    private ScheduledExecutorService announcer;
+    private final List<Thread> consumers = new ArrayList<>();
+    private final List<Consumer<String, String>> openConsumers = new ArrayList<>();
+
+    record Interest(Set<String> destinations, long at) {
+    }
+
+    record Announcement(Set<String> destinations, long at) {
+    }
+
+    public KafkaTopicPublisher(SimpMessagingTemplate messagingTemplate,
+                               LocalSubscriptions localSubscriptions,
+                               KafkaTemplate<String, String> kafkaTemplate,
+                               ConsumerFactory<?, ?> consumerFactory,
+                               KafkaAdmin kafkaAdmin,
+                               JsonMapper jsonMapper,
+                               MeterRegistry registry,
+                               @Value("${chat.broker.kafka.inbox-prefix:fixme.ws-fanout}") String inboxPrefix,
+                               @Value("${chat.broker.kafka.interest-topic:fixme.ws-interest}") String interestTopic,
+                               @Value("${chat.broker.kafka.announce-ms:200}") long announceMs,
+                               @Value("${chat.broker.kafka.heartbeat-ms:10000}") long heartbeatMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.localSubscriptions = localSubscriptions;
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+        this.kafkaAdmin = kafkaAdmin;
+        this.jsonMapper = jsonMapper;
+        this.inboxPrefix = inboxPrefix;
+        this.interestTopic = interestTopic;
+        this.announceMs = announceMs;
+        this.heartbeatMs = heartbeatMs;
+        this.forwarded = Counter.builder("ws.fanout.forwarded").register(registry);
+        this.received = Counter.builder("ws.fanout.received").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        kafkaAdmin.createOrModifyTopics(
+                new NewTopic(inboxTopic(nodeId), 1, (short) 1)
+                        .configs(Map.of("retention.ms", "600000")),
+                new NewTopic(interestTopic, 1, (short) 1)
+                        .configs(Map.of("cleanup.policy", "compact"))
+        );
+
+        running = true;
+        localSubscriptions.onChange(() -> interestChanged = true);
+
+        // inbox: only what is published from now on
+        startConsumer("ws-fanout-inbox", new TopicPartition(inboxTopic(nodeId), 0), false, this::deliver);
+        // interest: the whole compacted topic, then updates
+        startConsumer("ws-fanout-interest", new TopicPartition(interestTopic, 0), true, this::interestReceived);
+
+        announcer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-fanout-announce");
+            t.setDaemon(true);
+            return t;
+        });
+        announcer.scheduleWithFixedDelay(this::announce, 0, announceMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        announcer.shutdown();
+        // tombstone: the other nodes stop forwarding to this one right away
+        kafkaTemplate.send(interestTopic, nodeId, null);
+        kafkaTemplate.flush();
+
+        synchronized (openConsumers) {
+            openConsumers.forEach(Consumer::wakeup);
+        }
+        for (Thread t : consumers) {
+            t.join(5_000);
+        }
+    }
+
+    // other nodes currently known to subscribe to destination
+    int remoteSubscribers(String destination) {
+        long now = System.currentTimeMillis();
+        return (int) remote.values().stream()
+                .filter(i -> now - i.at() <= 3 * heartbeatMs && i.destinations().contains(destination))
+                .count();
+    }
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+
+        long now = System.currentTimeMillis();
+        String json = null;
+        for (Map.Entry<String, Interest> e : remote.entrySet()) {
+            Interest interest = e.getValue();
+            if (now - interest.at() > 3 * heartbeatMs || !interest.destinations().contains(destination)) continue;
+
+            if (json == null) json = jsonMapper.writeValueAsString(payload);
+            kafkaTemplate.send(inboxTopic(e.getKey()), destination, json);
+            forwarded.increment();
+        }
+    }
+
+    // /user/{id}{queue} goes through Spring's user destination handler: the sessions of that user on this node
+    @Override
+    public void publishToUser(Long userId, String queue, Object payload) {
+        publish(LocalSubscriptions.userDestination(userId.toString(), queue), payload);
+    }
+
+    // a publication from another node, for our local subscribers
+    private void deliver(ConsumerRecord<String, String> record) {
+        if (record.key() == null || record.value() == null) return;
+        received.increment();
+        if (!localSubscriptions.hasSubscribers(record.key())) return;
+
+        // already JSON: sent as is, not converted again
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(record.key(), MessageBuilder.createMessage(
+                record.value().getBytes(StandardCharsets.UTF_8), headers.getMessageHeaders()));
+    }
+
+    private void interestReceived(ConsumerRecord<String, String> record) {
+        String node = record.key();
+        if (node == null || node.equals(nodeId)) return;
+
+        if (record.value() == null) {
+            remote.remove(node);
+            return;
+        }
+        Announcement a = jsonMapper.readValue(record.value(), Announcement.class);
+        remote.put(node, new Interest(Set.copyOf(a.destinations()), a.at()));
+    }
+
+    // on change (checked every announceMs) and every heartbeat
+    private void announce() {
+        long now = System.currentTimeMillis();
+        if (!interestChanged && now - lastAnnounce < heartbeatMs) return;
+        try {
+            interestChanged = false;
+            String json = jsonMapper.writeValueAsString(new Announcement(localSubscriptions.destinations(), now));
+            kafkaTemplate.send(interestTopic, nodeId, json);
+            lastAnnounce = now;
+        } catch (RuntimeException e) {
+            interestChanged = true;
+            System.out.println("WS fan-out announce failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private String inboxTopic(String node) {
+        return inboxPrefix + "." + node;
+    }
+
+    // assigned partition, no consumer group: every node reads every record of its partitions
+    private void startConsumer(String name, TopicPartition partition, boolean fromBeginning,
+                               java.util.function.Consumer<ConsumerRecord<String, String>> handler) {
+        Properties props = new Properties();
+        props.put("enable.auto.commit", "false");
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        @SuppressWarnings("unchecked")
+        Consumer<String, String> consumer = (Consumer<String, String>) consumerFactory.createConsumer(null, name, nodeId, props);
+        consumer.assign(List.of(partition));
+        if (fromBeginning) {
+            consumer.seekToBeginning(List.of(partition));
+        } else {
+            consumer.seekToEnd(List.of(partition));
+            consumer.position(partition); // resolve "end" now, not at the first poll
+        }
+        synchronized (openConsumers) {
+            openConsumers.add(consumer);
+        }
+
+        Thread t = new Thread(() -> {
+            try (consumer) {
+                while (running) {
+                    for (ConsumerRecord<String, String> record : consumer.poll(POLL)) {
+                        try {
+                            handler.accept(record);
+                        } catch (RuntimeException e) {
+                            System.out.println("WS fan-out record skipped (" + name + "): " + e.getMessage());
+                        }
+                    }
+                }
+            } catch (WakeupException e) {
+                // stop()
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        consumers.add(t);
+    }
+}
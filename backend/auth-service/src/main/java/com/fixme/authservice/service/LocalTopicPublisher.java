@@ -0,0 +1,25 @@
+package com.fixme.authservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+// single node: the simple broker already reaches every subscriber
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LocalTopicPublisher implements TopicPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    @Override
+    public void publishToUser(Long userId, String queue, Object payload) {
+        messagingTemplate.convertAndSendToUser(userId.toString(), queue, payload);
+    }
+}
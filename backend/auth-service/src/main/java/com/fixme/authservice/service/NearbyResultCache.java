@@ -0,0 +1,140 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoGrid;
+import com.fixme.authservice.util.GeoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Short-lived cache of nearby candidates, shared by customers searching from the same small cell
+// with the same category / service / radius.
+//
+// What is cached is the candidate set around the cell center (radius bucket + half diagonal of the cell),
+// not the final page: distances, open-now and the cursor are always recomputed for the caller's real position.
+// A provider change evicts only the entries whose area contains the provider's old or new location.
+@Component
+public class NearbyResultCache {
+
+    // wider searches are not cached: their candidate lists are long and rarely shared
+    public static final double MAX_RADIUS_KM = 50;
+
+    // 0.01° ≈ 1.1 km of latitude
+    private static final double CACHE_CELL_DEG = 0.01;
+
+    private final ProviderSpatialIndex spatialIndex;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final GeoGrid grid = new GeoGrid(CACHE_CELL_DEG);
+
+    // access-order LinkedHashMap = LRU, guarded by itself
+    private final Map<Key, Cached> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+            if (size() <= maxEntries) return false;
+            evictions.increment();
+            return true;
+        }
+    };
+
+    // bumped on every provider change, so a miss computed before an invalidation is not stored after it
+    private long generation = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    record Key(long cell, VehicleCategory category, ServiceType serviceType, int radiusBucketKm) {
+    }
+
+    private record Cached(List<ProviderSpatialIndex.Entry> candidates,
+                          double centerLat, double centerLng, double coverKm, long expiresAt) {
+    }
+
+    public NearbyResultCache(ProviderSpatialIndex spatialIndex,
+                             MeterRegistry registry,
+                             @Value("${nearby.cache.max-entries:2048}") int maxEntries,
+                             @Value("${nearby.cache.ttl-ms:30000}") long ttlMillis) {
+        this.spatialIndex = spatialIndex;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+
+        this.hits = Counter.builder("nearby.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("nearby.cache.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("nearby.cache.evictions").tag("cause", "size").register(registry);
+        this.invalidations = Counter.builder("nearby.cache.evictions").tag("cause", "provider-change").register(registry);
+        Gauge.builder("nearby.cache.size", entries, m -> {
+            synchronized (m) {
+                return m.size();
+            }
+        }).register(registry);
+
+        spatialIndex.addChangeListener(this::invalidate);
+    }
+
+    // every provider that can be within radiusKm of (lat, lng) for this category + service; a superset, unsorted
+    public List<ProviderSpatialIndex.Entry> candidates(double lat, double lng, double radiusKm,
+                                                       VehicleCategory category, ServiceType serviceType) {
+        long cell = grid.cellOf(lat, lng);
+        Key key = new Key(cell, category, serviceType, (int) Math.ceil(radiusKm));
+        long now = System.currentTimeMillis();
+
+        long seenGeneration;
+        synchronized (entries) {
+            Cached cached = entries.get(key);
+            if (cached != null && cached.expiresAt() > now) {
+                hits.increment();
+                return cached.candidates();
+            }
+            seenGeneration = generation;
+        }
+        misses.increment();
+
+        double centerLat = grid.cellCenterLat(cell);
+        double centerLng = grid.cellCenterLng(cell);
+        double coverKm = key.radiusBucketKm() + grid.cellRadiusKm(cell);
+        List<ProviderSpatialIndex.Entry> candidates = List.copyOf(
+                spatialIndex.withinRadius(centerLat, centerLng, coverKm, category, serviceType)
+        );
+
+        synchronized (entries) {
+            if (generation == seenGeneration) {
+                entries.put(key, new Cached(candidates, centerLat, centerLng, coverKm, now + ttlMillis));
+            }
+        }
+        return candidates;
+    }
+
+    private void invalidate(ProviderSpatialIndex.Entry old, ProviderSpatialIndex.Entry current) {
+        synchronized (entries) {
+            generation++;
+
+            Iterator<Map.Entry<Key, Cached>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Cached> e = it.next();
+                if (affects(e.getKey(), e.getValue(), old) || affects(e.getKey(), e.getValue(), current)) {
+                    it.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private static boolean affects(Key key, Cached cached, ProviderSpatialIndex.Entry provider) {
+        if (provider == null) return false;
+        if (!CapabilityMask.matches(provider.capabilityMask(), key.category(), key.serviceType())) return false;
+
+        return GeoUtil.haversineKm(cached.centerLat(), cached.centerLng(),
+                provider.latitude(), provider.longitude()) <= cached.coverKm();
+    }
+}
@@ -0,0 +1,245 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.NotificationDeadLetter;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VerificationToken;
+import com.fixme.authservice.model.VerificationType;
+import com.fixme.authservice.repository.NotificationDeadLetterRepository;
+import com.fixme.authservice.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Verification codes by email / SMS, sent off the request thread once the token row is committed,
+// so a slow SMTP server or Twilio no longer holds the signup transaction (and its pooled connection).
+//
+// A few worker threads take up to batchSize codes at a time; each worker keeps one SMTP connection open
+// across batches (reconnecting when the server dropped it).
+// A failed send is retried with exponential backoff; after maxAttempts (or when the queue is full)
+// the code goes to notification_dead_letters. Retries still waiting at shutdown are dropped: the codes
+// expire within minutes and the user can ask for a new one.
+@Component
+public class NotificationDispatcher {
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final EmailService emailService;
+    private final Optional<SmsService> smsService;
+    private final NotificationDeadLetterRepository deadLetters;
+    private final TransactionTemplate tx;
+
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final BlockingQueue<Notification> queue;
+
+    private final Counter emailsSent;
+    private final Counter smsSent;
+    private final Counter retries;
+    private final Counter deadLettered;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "notification-retry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile boolean running;
+
+    // attempts = sends that already failed; the code only lives in memory, dead letters keep tokenId
+    private record Notification(VerificationType channel, String recipient, Long tokenId, String code, int attempts) {
+    }
+
+    public NotificationDispatcher(EmailService emailService,
+                                  Optional<SmsService> smsService,
+                                  NotificationDeadLetterRepository deadLetters,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry registry,
+                                  @Value("${notifications.workers:2}") int workers,
+                                  @Value("${notifications.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${notifications.batch-size:50}") int batchSize,
+                                  @Value("${notifications.max-attempts:5}") int maxAttempts,
+                                  @Value("${notifications.backoff-ms:1000}") long backoffMs) {
+        this.emailService = emailService;
+        this.smsService = smsService;
+        this.deadLetters = deadLetters;
+        // its own transaction: dead letters are also written from afterCommit callbacks
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.emailsSent = Counter.builder("notifications.sent").tag("channel", "email").register(registry);
+        this.smsSent = Counter.builder("notifications.sent").tag("channel", "sms").register(registry);
+        this.retries = Counter.builder("notifications.retries").register(registry);
+        this.deadLettered = Counter.builder("notifications.dead-letters").register(registry);
+        Gauge.builder("notifications.queue.depth", queue, BlockingQueue::size).register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::run, "notification-" + i);
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    // sends what is already queued, then stops
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        retryScheduler.shutdownNow();
+        for (Thread t : threads) {
+            t.join(30_000);
+        }
+    }
+
+    // token was saved in the current transaction; queued after it commits, a rolled back signup sends nothing
+    public void sendVerificationCode(VerificationToken token) {
+        VerificationType type = token.getType();
+        if (type == VerificationType.PHONE && smsService.isEmpty()) {
+            System.out.println("SMS disabled (Twilio not configured). Code=" + token.getTokenCode());
+            return;
+        }
+        User user = token.getUser();
+        String recipient = type == VerificationType.PHONE ? user.getPhone() : user.getEmail();
+        Notification n = new Notification(type, recipient, token.getId(), token.getTokenCode(), 0);
+        TransactionUtil.afterCommit(() -> enqueue(n));
+    }
+
+    private void enqueue(Notification n) {
+        if (!queue.offer(n)) {
+            deadLetter(n, "queue full");
+        }
+    }
+
+    // each worker keeps its own SMTP connection open across batches
+    private void run() {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        try (EmailService.Connection smtp = emailService.openConnection()) {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Notification first = queue.poll(200, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    deliver(batch, smtp);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // a bug here must not kill the worker
+                    System.out.println("Notification worker error: " + e.getMessage());
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void deliver(List<Notification> batch, EmailService.Connection smtp) {
+        List<Notification> emails = new ArrayList<>();
+        for (Notification n : batch) {
+            if (n.channel() == VerificationType.EMAIL) {
+                emails.add(n);
+            } else {
+                sendSms(n);
+            }
+        }
+        if (!emails.isEmpty()) sendEmails(emails, smtp);
+    }
+
+    private void sendEmails(List<Notification> emails, EmailService.Connection smtp) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[emails.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = emailService.verificationMessage(emails.get(i).recipient(), emails.get(i).code());
+        }
+
+        try {
+            smtp.send(messages);
+            emailsSent.increment(messages.length);
+        } catch (MailSendException e) {
+            // per message when the server rejected some, empty when nothing went out
+            Map<Object, Exception> failed = e.getFailedMessages();
+            for (int i = 0; i < messages.length; i++) {
+                if (failed.isEmpty() || failed.containsKey(messages[i])) {
+                    failed(emails.get(i), failed.getOrDefault(messages[i], e));
+                } else {
+                    emailsSent.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Notification n : emails) {
+                failed(n, e);
+            }
+        }
+    }
+
+    private void sendSms(Notification n) {
+        try {
+            smsService.orElseThrow().sendVerificationCode(n.recipient(), n.code());
+            smsSent.increment();
+        } catch (RuntimeException e) {
+            failed(n, e);
+        }
+    }
+
+    private void failed(Notification n, Exception error) {
+        int attempts = n.attempts() + 1;
+        Notification next = new Notification(n.channel(), n.recipient(), n.tokenId(), n.code(), attempts);
+        if (attempts >= maxAttempts || !running) {
+            deadLetter(next, error.getMessage());
+            return;
+        }
+
+        retries.increment();
+        long delay = Math.min(backoffMs << (attempts - 1), MAX_BACKOFF_MS);
+        retryScheduler.schedule(() -> enqueue(next), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void deadLetter(Notification n, String error) {
+        deadLettered.increment();
+        System.out.println("Notification dead-lettered (" + n.channel() + " " + n.recipient() + "): " + error);
+        try {
+            tx.executeWithoutResult(status -> deadLetters.save(NotificationDeadLetter.builder()
+                    .channel(n.channel())
+                    .recipient(n.recipient())
+                    .tokenId(n.tokenId())
+                    .attempts(n.attempts())
+                    .lastError(error == null ? null : error.substring(0, Math.min(error.length(), 1000)))
+                    .createdAt(LocalDateTime.now())
+                    .build()));
+        } catch (RuntimeException e) {
+            System.out.println("Could not store dead letter: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.OutboxEvent;
+import com.fixme.authservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Drains request_outbox to Kafka in batches, no transaction or row lock held while waiting for Kafka:
+//   1. short transaction: lock the oldest free rows (SKIP LOCKED), lease them to this relay for leaseMs
+//   2. send them all, wait for the acks
+//   3. short transaction: delete the rows still leased to this relay (a failed batch releases them instead)
+// At-least-once: a crash between the acks and the delete re-sends that batch once the lease expires,
+// consumers dedupe on (key, payload).
+// Order per request holds with one relay (batches go one after the other, oldest first). With several
+// nodes running the relay, two of them can hold rows of the same request in different batches, or a
+// lease can expire under a slow send, and the later event may reach Kafka first: consumers that care
+// order a request's events by occurredAt (or run the relay on one node).
+// Producer batching (batch.size / linger.ms) is set under spring.kafka.producer in application.yml.
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate tx;
+
+    private final String topic;
+    private final int batchSize;
+    private final long intervalMs;
+    private final long ackTimeoutMs;
+    private final long leaseMs;
+
+    // the lease owner in claimed_by
+    private final String relayId = UUID.randomUUID().toString();
+
+    private final Counter relayed;
+    private final Counter failures;
+
+    private ScheduledExecutorService scheduler;
+
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       KafkaTemplate<String, String> kafkaTemplate,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry registry,
+                       @Value("${outbox.topic:fixme.service-requests}") String topic,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.interval-ms:200}") long intervalMs,
+                       @Value("${outbox.relay.ack-timeout-ms:10000}") long ackTimeoutMs,
+                       @Value("${outbox.relay.lease-ms:30000}") long leaseMs) {
+        // a lease running out while this relay still waits for the acks would let another relay send the rows too
+        if (leaseMs <= ackTimeoutMs) {
+            throw new IllegalArgumentException("outbox.relay.lease-ms must be longer than ack-timeout-ms");
+        }
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.leaseMs = leaseMs;
+        this.relayed = Counter.builder("outbox.relayed").register(registry);
+        this.failures = Counter.builder("outbox.relay.failures").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    // full batches in a row while there is a backlog, then back to waiting intervalMs
+    public void drain() {
+        try {
+            int sent;
+            do {
+                sent = relayBatch();
+            } while (sent == batchSize);
+        } catch (RuntimeException e) {
+            // rows stay in the outbox, next round retries them
+            failures.increment();
+            System.out.println("Outbox relay failed, will retry: " + e.getMessage());
+        }
+    }
+
+    // returns how many rows were shipped
+    public int relayBatch() {
+        List<OutboxEvent> batch = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> rows = outboxRepository.findClaimable(now, PageRequest.of(0, batchSize));
+            if (!rows.isEmpty()) {
+                outboxRepository.claim(ids(rows), relayId, now.plus(leaseMs, ChronoUnit.MILLIS));
+            }
+            return rows;
+        });
+        if (batch.isEmpty()) return 0;
+        List<Long> ids = ids(batch);
+
+        try {
+            List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+            for (OutboxEvent e : batch) {
+                acks.add(kafkaTemplate.send(topic, e.getAggregateId().toString(), e.getPayload()));
+            }
+            kafkaTemplate.flush();
+
+            CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new))
+                    .orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS)
+                    .join();
+        } catch (RuntimeException e) {
+            // free the rows right away instead of after the lease
+            try {
+                tx.executeWithoutResult(status -> outboxRepository.release(ids, relayId));
+            } catch (RuntimeException releaseFailed) {
+                e.addSuppressed(releaseFailed);
+            }
+            throw e;
+        }
+
+        tx.executeWithoutResult(status -> outboxRepository.deleteClaimed(ids, relayId));
+        relayed.increment(batch.size());
+        return batch.size();
+    }
+
+    private static List<Long> ids(List<OutboxEvent> rows) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (OutboxEvent e : rows) ids.add(e.getId());
+        return ids;
+    }
+}
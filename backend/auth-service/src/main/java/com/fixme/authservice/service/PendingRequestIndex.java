@@ -0,0 +1,226 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.NearbyRequestResponse;
+import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.model.ServiceRequest;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.Vehicle;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.repository.ServiceRequestRepository;
+import com.fixme.authservice.util.GeoGrid;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory grid of PENDING service requests, so "nearby requests" for a provider only looks at
+// the cells around the provider instead of every pending request in the country.
+// Each entry carries what NearbyRequestResponse needs, so polling does not touch the database.
+//
+// Kept in sync by CustomerRequestService (create / leaves PENDING), CustomerService (vehicle edits)
+// and AdminService (deletes). Changes are applied after the surrounding transaction commits.
+// With chat.broker.mode=kafka the other nodes reload changed requests / vehicles (see ClusterIndexSync).
+@Component
+@RequiredArgsConstructor
+public class PendingRequestIndex {
+
+    // 0.05° ≈ 5.5 km of latitude (default provider radius is 10 km)
+    private static final double CELL_DEG = 0.05;
+
+    private final ServiceRequestRepository requestRepository;
+
+    private final GeoGrid grid = new GeoGrid(CELL_DEG);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<Long, Entry> byId = new HashMap<>();
+    private final Map<Long, Map<Long, Entry>> cells = new HashMap<>();
+
+    public record Entry(
+            Long requestId,
+            Long customerId,
+            Long vehicleId,
+            String plateNumber,
+            String make,
+            String model,
+            Integer year,
+            String description,
+            VehicleCategory vehicleCategory,
+            ServiceType serviceType,
+            double latitude,
+            double longitude,
+            long cell,
+            LocalDateTime createdAt
+    ) {
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        List<ServiceRequest> pending = requestRepository.findWithVehicleByStatus(RequestStatus.PENDING);
+
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            cells.clear();
+            for (ServiceRequest r : pending) {
+                put(toEntry(r));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Pending request index loaded: " + size() + " requests");
+    }
+
+    // r was saved in the current transaction; indexed only while it is PENDING
+    public void sync(ServiceRequest r) {
+        if (r.getId() == null) return;
+
+        Long id = r.getId();
+        if (r.getStatus() != RequestStatus.PENDING || r.getLatitude() == null || r.getLongitude() == null) {
+            TransactionUtil.afterCommit(() -> removeNow(id));
+            return;
+        }
+
+        Entry e = toEntry(r);
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                put(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Long requestId) {
+        TransactionUtil.afterCommit(() -> removeNow(requestId));
+    }
+
+    // vehicle details are copied into the entries → refresh them when the customer edits the vehicle
+    public void vehicleChanged(Vehicle v) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                List<Entry> affected = byId.values().stream()
+                        .filter(e -> e.vehicleId().equals(v.getId()))
+                        .toList();
+                for (Entry e : affected) {
+                    put(new Entry(
+                            e.requestId(), e.customerId(), e.vehicleId(),
+                            v.getPlateNumber(), v.getMake(), v.getModel(), v.getYear(),
+                            e.description(), e.vehicleCategory(), e.serviceType(),
+                            e.latitude(), e.longitude(), e.cell(), e.createdAt()
+                    ));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // PENDING requests within radiusKm of (lat, lng), nearest first
+    public List<NearbyRequestResponse> nearby(double lat, double lng, double radiusKm) {
+        List<NearbyRequestResponse> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            grid.forEachCellCovering(lat, lng, radiusKm, cell -> {
+                Map<Long, Entry> inCell = cells.get(cell);
+                if (inCell == null) return;
+
+                for (Entry e : inCell.values()) {
+                    double d = GeoUtil.haversineKm(lat, lng, e.latitude(), e.longitude());
+                    if (d <= radiusKm) result.add(toResponse(e, d));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        result.sort(Comparator.comparingDouble(NearbyRequestResponse::getDistanceKm)
+                .thenComparing(NearbyRequestResponse::getId));
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeNow(Long requestId) {
+        lock.writeLock().lock();
+        try {
+            Entry old = byId.remove(requestId);
+            if (old != null) unlinkCell(old);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void put(Entry e) {
+        Entry old = byId.put(e.requestId(), e);
+        if (old != null) unlinkCell(old);
+        cells.computeIfAbsent(e.cell(), c -> new HashMap<>()).put(e.requestId(), e);
+    }
+
+    private void unlinkCell(Entry e) {
+        Map<Long, Entry> inCell = cells.get(e.cell());
+        if (inCell == null) return;
+        inCell.remove(e.requestId());
+        if (inCell.isEmpty()) cells.remove(e.cell());
+    }
+
+    private Entry toEntry(ServiceRequest r) {
+        Vehicle v = r.getVehicle();
+        return new Entry(
+                r.getId(),
+                r.getCustomer().getId(),
+                v.getId(),
+                v.getPlateNumber(),
+                v.getMake(),
+                v.getModel(),
+                v.getYear(),
+                r.getDescription(),
+                r.getVehicleCategory(),
+                r.getServiceType(),
+                r.getLatitude(),
+                r.getLongitude(),
+                grid.cellOf(r.getLatitude(), r.getLongitude()),
+                r.getCreatedAt()
+        );
+    }
+
+    private static NearbyRequestResponse toResponse(Entry e, double distanceKm) {
+        return new NearbyRequestResponse(
+                e.requestId(),
+                e.customerId(),
+                e.vehicleId(),
+                e.plateNumber(),
+                e.make(),
+                e.model(),
+                e.year(),
+                e.description(),
+                e.vehicleCategory(),
+                e.latitude(),
+                e.longitude(),
+                distanceKm,
+                RequestStatus.PENDING,
+                e.createdAt()
+        );
+    }
+}
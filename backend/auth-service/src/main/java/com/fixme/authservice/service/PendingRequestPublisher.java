@@ -0,0 +1,75 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.NearbyRequestResponse;
+import com.fixme.authservice.dto.PendingRequestUpdate;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import com.fixme.authservice.util.GeoGrid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Pushes PENDING requests to providers over STOMP instead of them polling "nearby requests".
+// Topics are partitioned by grid cell: a provider subscribes to the cells covering its radius
+// (see topicsCovering), a request is sent only to the topic of the cell it is in.
+// Through TopicPublisher, so with chat.broker.mode=kafka providers connected to other nodes get it too.
+@Component
+@RequiredArgsConstructor
+public class PendingRequestPublisher {
+
+    public static final String TOPIC_PREFIX = "/topic/pending-requests/";
+
+    // 0.1° ≈ 11 km of latitude → a 10 km provider radius is ~9 topics
+    private static final double TOPIC_CELL_DEG = 0.1;
+    private static final double MAX_SUBSCRIBE_RADIUS_KM = 50;
+
+    private final TopicPublisher topicPublisher;
+
+    private final GeoGrid grid = new GeoGrid(TOPIC_CELL_DEG);
+
+    // only after commit, so a rolled back request is never announced
+    @TransactionalEventListener
+    public void onRequestChanged(ServiceRequestEvent event) {
+        ServiceRequestResponse r = event.request();
+
+        if (event.enteredPending()) {
+            send(r, new PendingRequestUpdate(PendingRequestUpdate.Type.ADDED, r.getId(), toNearby(r)));
+        } else if (event.leftPending()) {
+            send(r, new PendingRequestUpdate(PendingRequestUpdate.Type.REMOVED, r.getId(), null));
+        }
+    }
+
+    public List<String> topicsCovering(double lat, double lng, double radiusKm) {
+        List<String> topics = new ArrayList<>();
+        grid.forEachCellCovering(lat, lng, Math.min(radiusKm, MAX_SUBSCRIBE_RADIUS_KM),
+                cell -> topics.add(TOPIC_PREFIX + cell));
+        return topics;
+    }
+
+    private void send(ServiceRequestResponse r, PendingRequestUpdate update) {
+        long cell = grid.cellOf(r.getLatitude(), r.getLongitude());
+        topicPublisher.publish(TOPIC_PREFIX + cell, update);
+    }
+
+    private static NearbyRequestResponse toNearby(ServiceRequestResponse r) {
+        return new NearbyRequestResponse(
+                r.getId(),
+                r.getCustomerId(),
+                r.getVehicleId(),
+                r.getPlateNumber(),
+                r.getMake(),
+                r.getModel(),
+                r.getYear(),
+                r.getDescription(),
+                r.getVehicleCategory(),
+                r.getLatitude(),
+                r.getLongitude(),
+                null,
+                r.getStatus(),
+                r.getCreatedAt()
+        );
+    }
+}
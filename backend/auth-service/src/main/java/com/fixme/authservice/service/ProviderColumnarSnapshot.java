@@ -0,0 +1,136 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.util.GeoUtil;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Immutable struct-of-arrays copy of the provider index, used for wide-radius searches
+// (towing across a whole region) where walking grid cells would touch most providers anyway.
+// ProviderSpatialIndex rebuilds it copy-on-write after any provider change.
+final class ProviderColumnarSnapshot {
+
+    // providers per fork-join task
+    private static final int PARTITION = 4096;
+
+    final long version;
+
+    private final ProviderSpatialIndex.Entry[] entries;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final double[] latRad;
+    private final double[] lngRad;
+    private final double[] cosLat;
+    private final long[] capabilityMask;
+
+    record Hits(int[] positions, double[] distancesKm, int size) {
+        static final Hits EMPTY = new Hits(new int[0], new double[0], 0);
+    }
+
+    private ProviderColumnarSnapshot(long version, ProviderSpatialIndex.Entry[] entries) {
+        this.version = version;
+        this.entries = entries;
+
+        int n = entries.length;
+        this.latitude = new double[n];
+        this.longitude = new double[n];
+        this.latRad = new double[n];
+        this.lngRad = new double[n];
+        this.cosLat = new double[n];
+        this.capabilityMask = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            ProviderSpatialIndex.Entry e = entries[i];
+            latitude[i] = e.latitude();
+            longitude[i] = e.longitude();
+            latRad[i] = Math.toRadians(e.latitude());
+            lngRad[i] = Math.toRadians(e.longitude());
+            cosLat[i] = Math.cos(latRad[i]);
+            capabilityMask[i] = e.capabilityMask();
+        }
+    }
+
+    static ProviderColumnarSnapshot of(long version, ProviderSpatialIndex.Entry[] entries) {
+        return new ProviderColumnarSnapshot(version, entries);
+    }
+
+    ProviderSpatialIndex.Entry entry(int position) {
+        return entries[position];
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    // every provider within radiusKm whose mask has serviceBit and one of categoryBits
+    Hits scan(double lat, double lng, double radiusKm, long categoryBits, long serviceBit) {
+        int n = entries.length;
+        if (n == 0) return Hits.EMPTY;
+
+        double qLat = Math.toRadians(lat);
+        double qLng = Math.toRadians(lng);
+        double qCos = Math.cos(qLat);
+
+        // haversine: d <= r  ⇔  a <= sin²(r / 2R), so rejected providers never need asin/atan2.
+        // Only a pre-filter (with a little slack for rounding): hits are decided and measured by
+        // GeoUtil.haversineKm, exactly like the grid path, so both agree on membership, order and cursors
+        double half = Math.min(Math.PI / 2, radiusKm / (2 * GeoUtil.EARTH_RADIUS_KM));
+        double maxA = Math.sin(half) * Math.sin(half) * (1 + 1e-9) + 1e-15;
+
+        int partitions = (n + PARTITION - 1) / PARTITION;
+        if (partitions == 1) {
+            return scanRange(0, n, lat, lng, radiusKm, qLat, qLng, qCos, maxA, categoryBits, serviceBit);
+        }
+
+        Hits[] parts = new Hits[partitions];
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            int from = p * PARTITION;
+            int to = Math.min(n, from + PARTITION);
+            parts[p] = scanRange(from, to, lat, lng, radiusKm, qLat, qLng, qCos, maxA, categoryBits, serviceBit);
+        });
+
+        int total = 0;
+        for (Hits h : parts) total += h.size();
+
+        int[] positions = new int[total];
+        double[] distances = new double[total];
+        int at = 0;
+        for (Hits h : parts) {
+            System.arraycopy(h.positions(), 0, positions, at, h.size());
+            System.arraycopy(h.distancesKm(), 0, distances, at, h.size());
+            at += h.size();
+        }
+        return new Hits(positions, distances, total);
+    }
+
+    // tight primitive loop over the columns, no boxing and no per-provider objects
+    private Hits scanRange(int from, int to, double lat, double lng, double radiusKm,
+                           double qLat, double qLng, double qCos, double maxA,
+                           long categoryBits, long serviceBit) {
+        int[] positions = new int[16];
+        double[] distances = new double[16];
+        int size = 0;
+
+        for (int i = from; i < to; i++) {
+            long mask = capabilityMask[i];
+            if ((mask & serviceBit) == 0 || (mask & categoryBits) == 0) continue;
+
+            double sLat = Math.sin((latRad[i] - qLat) * 0.5);
+            double sLng = Math.sin((lngRad[i] - qLng) * 0.5);
+            double a = sLat * sLat + qCos * cosLat[i] * sLng * sLng;
+            if (a > maxA) continue;
+
+            double d = GeoUtil.haversineKm(lat, lng, latitude[i], longitude[i]);
+            if (d > radiusKm) continue;
+
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            positions[size] = i;
+            distances[size] = d;
+            size++;
+        }
+        return new Hits(positions, distances, size);
+    }
+}
@@ -1,16 +1,20 @@
 package com.fixme.authservice.service;
 
 import com.fixme.authservice.dto.NearbyRequestResponse;
+import com.fixme.authservice.dto.ServiceRequestPage;
 import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
 import com.fixme.authservice.model.*;
 import com.fixme.authservice.repository.ProviderBusinessRepository;
 import com.fixme.authservice.repository.ServiceRequestRepository;
 import com.fixme.authservice.repository.UserRepository;
+import com.fixme.authservice.security.CurrentUser;
+import com.fixme.authservice.util.RequestCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Comparator;
 import java.util.List;
 
 @Service
@@ -21,12 +25,12 @@ public class ProviderRequestService {
     private final UserRepository userRepository;
     private final ProviderBusinessRepository businessRepository;
     private final ServiceRequestRepository requestRepository;
+    private final PendingRequestIndex pendingRequestIndex;
+    private final PendingRequestPublisher pendingRequestPublisher;
+    private final ApplicationEventPublisher events;
 
     public List<NearbyRequestResponse> nearby(Long providerId, double radiusKm) {
-        User provider = userRepository.findById(providerId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        if (provider.getRole() != UserRole.PROVIDER) {
+        if (roleOf(providerId, "User not found") != UserRole.PROVIDER) {
             throw new IllegalStateException("User is not a provider");
         }
 
@@ -37,132 +41,94 @@ public class ProviderRequestService {
         Double pLng = business.getLongitude();
         if (pLat == null || pLng == null) throw new IllegalStateException("Provider location not set");
 
-        return requestRepository.findByStatus(RequestStatus.PENDING)
-                .stream()
-                .map(r -> {
-                    double dist = haversineKm(pLat, pLng, r.getLatitude(), r.getLongitude());
-                    Vehicle v = r.getVehicle();
-                    return new NearbyRequestResponse(
-                            r.getId(),
-                            r.getCustomer().getId(),
-                            v.getId(),
-                            v.getPlateNumber(),
-                            v.getMake(),
-                            v.getModel(),
-                            v.getYear(),
-                            r.getDescription(),
-                            r.getVehicleCategory(),
-                            r.getLatitude(),
-                            r.getLongitude(),
-                            dist,
-                            r.getStatus(),
-                            r.getCreatedAt()
-                    );
-                })
-                .filter(dto -> dto.getDistanceKm() <= radiusKm)
-                .sorted(Comparator.comparingDouble(NearbyRequestResponse::getDistanceKm))
-                .toList();
+        // ✅ only the grid cells around the provider, no pending-table scan and no vehicle/customer loads
+        return pendingRequestIndex.nearby(pLat, pLng, radiusKm);
     }
 
-    private double haversineKm(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371.0;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    // STOMP topics to subscribe to instead of polling nearby(): ADDED / REMOVED pending requests
+    public List<String> nearbyTopics(Long providerId, double radiusKm) {
+        ProviderBusiness business = businessRepository.findByUserId(providerId)
+                .orElseThrow(() -> new IllegalStateException("Business not found for provider"));
+        if (business.getLatitude() == null || business.getLongitude() == null) {
+            throw new IllegalStateException("Provider location not set");
+        }
+        return pendingRequestPublisher.topicsCovering(business.getLatitude(), business.getLongitude(), radiusKm);
     }
 
-    public List<ServiceRequestResponse> inbox(Long providerId, RequestStatus status) {
-        User p = userRepository.findById(providerId)
-                .orElseThrow(() -> new IllegalArgumentException("Provider not found"));
-        if (p.getRole() != UserRole.PROVIDER) throw new IllegalStateException("Not provider");
-
-        List<ServiceRequest> requests = (status == null)
-                ? requestRepository.findByProviderIdOrderByCreatedAtDesc(providerId)
-                : requestRepository.findByProviderIdAndStatusOrderByCreatedAtDesc(providerId, status);
-
-        return requests.stream().map(this::toResponse).toList();
+    // newest first; limit == null → all, before = nextCursor of the previous page
+    public ServiceRequestPage inbox(Long providerId, RequestStatus status, Integer limit, String before) {
+        if (roleOf(providerId, "Provider not found") != UserRole.PROVIDER) throw new IllegalStateException("Not provider");
+
+        RequestCursor cursor = RequestCursor.decode(before);
+        List<ServiceRequestResponse> rows = (status == null)
+                ? requestRepository.findResponsesByProviderId(
+                        providerId, cursor.createdAt(), cursor.id(), RequestPages.rowsFor(limit))
+                : requestRepository.findResponsesByProviderIdAndStatus(
+                        providerId, status, cursor.createdAt(), cursor.id(), RequestPages.rowsFor(limit));
+        return RequestPages.of(rows, limit);
     }
 
+    // WAITING_PROVIDER -> WAITING_CUSTOMER in one conditional UPDATE; its row count is the outcome
     @Transactional
     public ServiceRequestResponse accept(Long providerId, Long requestId) {
-        ServiceRequest r = requestRepository.findById(requestId)
-                .orElseThrow(() -> new IllegalArgumentException("Request not found"));
-
-        if (r.getProvider() == null || !r.getProvider().getId().equals(providerId)) {
-            throw new IllegalStateException("This request is not assigned to this provider");
-        }
-        if (r.getStatus() != RequestStatus.WAITING_PROVIDER) {
-            throw new IllegalStateException("Request is not waiting for provider");
+        int changed = requestRepository.transitionAsProvider(
+                requestId, providerId, RequestStatus.WAITING_PROVIDER, RequestStatus.WAITING_CUSTOMER);
+        if (changed == 0) {
+            // not found, not assigned to this provider, or not waiting for the provider (any more)
+            throw new IllegalStateException("Request is not waiting for this provider");
         }
-
-        r.setStatus(RequestStatus.WAITING_CUSTOMER);
-        return toResponse(requestRepository.save(r));
+        return changed(requestId, RequestStatus.WAITING_PROVIDER);
     }
 
     // ✅ NEW: provider sees only confirmed jobs (ACCEPTED)
-    public List<ServiceRequestResponse> confirmedJobs(Long providerId) {
-        User p = userRepository.findById(providerId)
-                .orElseThrow(() -> new IllegalArgumentException("Provider not found"));
-        if (p.getRole() != UserRole.PROVIDER) throw new IllegalStateException("Not provider");
-
-        return requestRepository.findByProviderIdAndStatusOrderByCreatedAtDesc(providerId, RequestStatus.ACCEPTED)
-                .stream()
-                .map(this::toResponse)
-                .toList();
+    public ServiceRequestPage confirmedJobs(Long providerId, Integer limit, String before) {
+        if (roleOf(providerId, "Provider not found") != UserRole.PROVIDER) throw new IllegalStateException("Not provider");
+
+        RequestCursor cursor = RequestCursor.decode(before);
+        List<ServiceRequestResponse> rows = requestRepository.findResponsesByProviderIdAndStatus(
+                providerId, RequestStatus.ACCEPTED, cursor.createdAt(), cursor.id(), RequestPages.rowsFor(limit));
+        return RequestPages.of(rows, limit);
     }
 
     // ✅ NEW: provider updates progress stage
     @Transactional
     public ServiceRequestResponse updateProgress(Long providerId, Long requestId, ProgressStage stage) {
-        ServiceRequest r = requestRepository.findById(requestId)
-                .orElseThrow(() -> new IllegalArgumentException("Request not found"));
+        // فقط بعد ما الزبون أكد
+        List<RequestStatus> confirmed = List.of(RequestStatus.ACCEPTED, RequestStatus.DONE);
 
-        if (r.getProvider() == null || !r.getProvider().getId().equals(providerId)) {
-            throw new IllegalStateException("Not your request");
+        if (stage == ProgressStage.DONE) {
+            // optional: لو وصل DONE خلّي status DONE (ACCEPTED -> DONE)
+            if (requestRepository.updateProgressAndStatus(
+                    requestId, providerId, stage, List.of(RequestStatus.ACCEPTED), RequestStatus.DONE) == 1) {
+                return changed(requestId, RequestStatus.ACCEPTED);
+            }
+            // already DONE: only the stage, below (a second statement just for this repeat)
         }
 
-        // فقط بعد ما الزبون أكد
-        if (r.getStatus() != RequestStatus.ACCEPTED && r.getStatus() != RequestStatus.DONE) {
+        if (requestRepository.updateProgress(requestId, providerId, stage, confirmed) == 0) {
+            // not found, not this provider's, or not confirmed yet
             throw new IllegalStateException("Request not confirmed yet");
         }
+        // status unchanged: the one read below has it
+        return changed(requestId, null);
+    }
 
-        r.setProgressStage(stage);
-
-        // optional: لو وصل DONE خلّي status DONE
-        if (stage == ProgressStage.DONE) {
-            r.setStatus(RequestStatus.DONE);
-        }
-
-        return toResponse(requestRepository.save(r));
+    // ✅ role from the caller's token when there is one, the user row only for anonymous calls
+    private UserRole roleOf(Long userId, String notFound) {
+        UserRole role = CurrentUser.roleOf(userId);
+        if (role != null) return role;
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException(notFound))
+                .getRole();
     }
 
-    private ServiceRequestResponse toResponse(ServiceRequest r) {
-        Vehicle v = r.getVehicle();
-        Long providerId = (r.getProvider() != null) ? r.getProvider().getId() : null;
-
-        return new ServiceRequestResponse(
-                r.getId(),
-                r.getCustomer().getId(),
-                providerId,
-                v.getId(),
-                v.getPlateNumber(),
-                v.getMake(),
-                v.getModel(),
-                v.getYear(),
-                r.getDescription(),
-                v.getVehicleCategory(),
-                r.getServiceType(),
-                r.getLatitude(),
-                r.getLongitude(),
-                r.getStatus(),
-                r.getProgressStage(),
-                r.getCreatedAt()
-        );
+    // read by the winner only, after its UPDATE (see CustomerRequestService.changed); previousStatus == null →
+    // the status did not change
+    private ServiceRequestResponse changed(Long requestId, RequestStatus previousStatus) {
+        ServiceRequestResponse response = requestRepository.findResponseById(requestId).orElseThrow();
+        // let listeners know (after commit)
+        events.publishEvent(new ServiceRequestEvent(response,
+                previousStatus == null ? response.getStatus() : previousStatus));
+        return response;
     }
 }
@@ -2,12 +2,18 @@ package com.fixme.authservice.service;
 
 import com.fixme.authservice.dto.ProviderBusinessRequest;
 import com.fixme.authservice.dto.ProviderBusinessResponse;
+import com.fixme.authservice.event.IndexChangeEvent;
 import com.fixme.authservice.model.ProviderBusiness;
 import com.fixme.authservice.model.User;
 import com.fixme.authservice.model.UserRole;
 import com.fixme.authservice.repository.ProviderBusinessRepository;
 import com.fixme.authservice.repository.UserRepository;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.OpeningHoursUtil;
+import com.fixme.authservice.util.TransactionUtil;
+import com.fixme.authservice.util.WeeklySchedule;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +25,8 @@ public class ProviderService {
 
     private final UserRepository userRepository;
     private final ProviderBusinessRepository businessRepository;
+    private final ProviderSpatialIndex spatialIndex;
+    private final ApplicationEventPublisher events;
 
     @Transactional
     public ProviderBusinessResponse createOrUpdateBusiness(Long userId, ProviderBusinessRequest request) {
@@ -37,6 +45,9 @@ public class ProviderService {
                     return b;
                 });
 
+        // ✅ parse opening hours once here; malformed input is rejected instead of re-parsed on every search
+        WeeklySchedule schedule = OpeningHoursUtil.compile(request.getOpeningHours());
+
         business.setBusinessName(request.getBusinessName());
         business.setCity(request.getCity());
         business.setAddress(request.getAddress());
@@ -54,6 +65,11 @@ public class ProviderService {
         // ✅ offeredServices (Service types)
         business.setOfferedServices(request.getOfferedServices());
 
+        // ✅ same two sets as bits, so nearby search never loads the collections
+        long capabilityMask = CapabilityMask.of(request.getCategories(), request.getOfferedServices());
+        business.setCapabilityMask(capabilityMask);
+        business.setOpeningMinutes(schedule.toBytes());
+
         // location
         if (request.getLatitude() != null && request.getLongitude() != null) {
             business.setLatitude(request.getLatitude());
@@ -62,6 +78,10 @@ public class ProviderService {
 
         ProviderBusiness saved = businessRepository.save(business);
 
+        // ✅ keep nearby search index in sync (after commit: a rolled back save must not show up in searches)
+        TransactionUtil.afterCommit(() -> spatialIndex.upsert(saved, capabilityMask, schedule));
+        events.publishEvent(new IndexChangeEvent(IndexChangeEvent.Kind.PROVIDER, saved.getId()));
+
         return ProviderBusinessResponse.builder()
                 .id(saved.getId())
                 .userId(user.getId())
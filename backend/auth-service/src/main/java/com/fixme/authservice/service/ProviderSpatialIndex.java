@@ -0,0 +1,464 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ProviderBusiness;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.repository.ProviderBusinessRepository;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoGrid;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.NearbyCursor;
+import com.fixme.authservice.util.OpeningHoursUtil;
+import com.fixme.authservice.util.WeeklySchedule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+// In-memory grid of provider locations + capabilities.
+// Kept in sync by ProviderService (create/update) and AdminService (delete),
+// so nearby search never has to scan the provider_business table.
+// With chat.broker.mode=kafka the other nodes reload changed providers (see ClusterIndexSync).
+//
+// Every provider gets a slot number. Grid cells and (category, serviceType) posting lists
+// are BitSets of slots, so picking candidates is (OR of covered cells) AND (posting list)
+// before any distance is computed.
+//
+// Wide searches can scan a columnar copy instead (ProviderColumnarSnapshot), from nearby.columnar-from-km on.
+// Off by default: NearbySearchBenchmark had it ~2x slower than the grid at 60 km (not yet measured on multi-core).
+// The copy is rebuilt on a background thread after changes; until it has caught up the grid answers.
+@Component
+public class ProviderSpatialIndex {
+
+    // 0.05° ≈ 5.5 km of latitude
+    private static final double CELL_DEG = 0.05;
+
+    private static final VehicleCategory[] CATEGORIES = VehicleCategory.values();
+    private static final ServiceType[] SERVICES = ServiceType.values();
+
+    private final ProviderBusinessRepository businessRepository;
+
+    // 0 = never columnar
+    private final double columnarFromKm;
+    // null when columnar is off; one rebuild queued at a time, changes during a rebuild queue the next one
+    private final ExecutorService snapshotBuilder;
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+    private final GeoGrid grid = new GeoGrid(CELL_DEG);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private Entry[] slots = new Entry[64];
+    private final Map<Long, Integer> slotByBusinessId = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot = 0;
+    private final Map<Long, BitSet> cells = new HashMap<>();
+    private final BitSet[] postings = new BitSet[CATEGORIES.length * SERVICES.length];
+    private volatile long version = 0;
+
+    // wide searches: see ProviderColumnarSnapshot
+    private volatile ProviderColumnarSnapshot snapshot;
+
+    // (old entry, new entry) — either may be null; called after every upsert/remove
+    private final List<BiConsumer<Entry, Entry>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public record Entry(
+            Long businessId,
+            Long userId,
+            double latitude,
+            double longitude,
+            long cell,
+            long capabilityMask,
+            WeeklySchedule schedule
+    ) {
+    }
+
+    public record Match(Entry entry, double distanceKm) {
+    }
+
+    // nearest first, ties broken by business id (stable order for cursors)
+    public static final Comparator<Match> NEAREST_FIRST =
+            Comparator.comparingDouble(Match::distanceKm).thenComparing(m -> m.entry().businessId());
+
+    public ProviderSpatialIndex(ProviderBusinessRepository businessRepository,
+                                @Value("${nearby.columnar-from-km:0}") double columnarFromKm) {
+        this.businessRepository = businessRepository;
+        this.columnarFromKm = columnarFromKm;
+        this.snapshotBuilder = columnarFromKm > 0
+                ? Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "provider-columnar");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (snapshotBuilder != null) snapshotBuilder.shutdownNow();
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        List<ProviderBusiness> all = businessRepository.findWithCapabilitiesByLatitudeNotNullAndLongitudeNotNull();
+
+        lock.writeLock().lock();
+        try {
+            slots = new Entry[Math.max(64, all.size())];
+            slotByBusinessId.clear();
+            freeSlots.clear();
+            nextSlot = 0;
+            cells.clear();
+            Arrays.fill(postings, null);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        for (ProviderBusiness b : all) {
+            load(b);
+        }
+        scheduleSnapshot();
+        System.out.println("Provider spatial index loaded: " + size() + " providers");
+    }
+
+    // the provider was saved or deleted on another node: take what is committed now
+    public void reload(Long businessId) {
+        businessRepository.findWithCapabilitiesById(businessId)
+                .ifPresentOrElse(this::load, () -> remove(businessId));
+    }
+
+    private void load(ProviderBusiness b) {
+        long mask;
+        if (b.getCapabilityMask() != null) {
+            mask = b.getCapabilityMask();
+        } else {
+            // old row saved before capability_mask existed → backfill it once
+            mask = CapabilityMask.of(b.getCategories(), b.getOfferedServices());
+            businessRepository.updateCapabilityMask(b.getId(), mask);
+        }
+        WeeklySchedule schedule;
+        if (b.getOpeningMinutes() != null && b.getOpeningMinutes().length == WeeklySchedule.BYTES) {
+            schedule = WeeklySchedule.fromBytes(b.getOpeningMinutes());
+        } else {
+            // saved before opening_minutes existed → compile + backfill it once (the database backend reads it)
+            schedule = compileLegacy(b);
+            businessRepository.updateOpeningMinutes(b.getId(), schedule.toBytes());
+        }
+        upsert(b, mask, schedule);
+    }
+
+    // capabilityMask / schedule = the already computed mask and compiled openingHours of b
+    public void upsert(ProviderBusiness b, long capabilityMask, WeeklySchedule schedule) {
+        if (b.getId() == null) return;
+
+        if (b.getLatitude() == null || b.getLongitude() == null) {
+            remove(b.getId());
+            return;
+        }
+
+        long cell = grid.cellOf(b.getLatitude(), b.getLongitude());
+        Entry entry = new Entry(
+                b.getId(),
+                b.getUser().getId(),
+                b.getLatitude(),
+                b.getLongitude(),
+                cell,
+                capabilityMask,
+                schedule
+        );
+
+        Entry old = null;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByBusinessId.get(b.getId());
+            if (slot != null) {
+                old = slots[slot];
+                unlink(slot, old);
+            } else {
+                slot = allocateSlot();
+                slotByBusinessId.put(b.getId(), slot);
+            }
+            slots[slot] = entry;
+            link(slot, entry);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleSnapshot();
+        fireChanged(old, entry);
+    }
+
+    public void remove(Long businessId) {
+        Entry old;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByBusinessId.remove(businessId);
+            if (slot == null) return;
+
+            old = slots[slot];
+            unlink(slot, old);
+            slots[slot] = null;
+            freeSlots.push(slot);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleSnapshot();
+        fireChanged(old, null);
+    }
+
+    public void addChangeListener(BiConsumer<Entry, Entry> listener) {
+        changeListeners.add(listener);
+    }
+
+    // every provider within radiusKm that serves the category + service type, in no particular order
+    public List<Entry> withinRadius(double lat, double lng, double radiusKm,
+                                    VehicleCategory category, ServiceType serviceType) {
+        List<Entry> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            BitSet posting = postings[pair(category, serviceType)];
+            if (posting == null || posting.isEmpty()) return result;
+
+            BitSet candidates = new BitSet();
+            grid.forEachCellCovering(lat, lng, radiusKm, cell -> {
+                BitSet inCell = cells.get(cell);
+                if (inCell != null) candidates.or(inCell);
+            });
+            candidates.and(posting);
+
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                Entry e = slots[slot];
+                if (GeoUtil.haversineKm(lat, lng, e.latitude(), e.longitude()) <= radiusKm) {
+                    result.add(e);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // Top-K over an already selected candidate list (e.g. from the nearby cache),
+    // distances computed for the caller's real position
+    public static List<Match> nearest(List<Entry> candidates, double lat, double lng, double radiusKm,
+                                      Predicate<Entry> filter, NearbyCursor after, int limit) {
+        if (limit <= 0) return List.of();
+
+        PriorityQueue<Match> heap = new PriorityQueue<>(Math.min(limit, 256) + 1, NEAREST_FIRST.reversed());
+        for (Entry e : candidates) {
+            double d = GeoUtil.haversineKm(lat, lng, e.latitude(), e.longitude());
+            if (d > radiusKm) continue;
+            offer(heap, limit, e, d, filter, after);
+        }
+        return drainSorted(heap);
+    }
+
+    // Top-K: the `limit` nearest providers within radiusKm that serve the category + service type,
+    // pass `filter`, and come after `after` (null = first page). Only a bounded heap of `limit`
+    // matches is kept, nothing else is sorted.
+    public List<Match> nearest(double lat, double lng, double radiusKm,
+                               VehicleCategory category, ServiceType serviceType,
+                               Predicate<Entry> filter, NearbyCursor after, int limit) {
+        if (limit <= 0) return List.of();
+
+        // max-heap: the head is the worst match we still keep
+        PriorityQueue<Match> heap = new PriorityQueue<>(Math.min(limit, 256) + 1, NEAREST_FIRST.reversed());
+
+        ProviderColumnarSnapshot snapshot = this.snapshot;
+        if (usesColumnar(radiusKm) && snapshot != null && snapshot.version == version) {
+            // ✅ wide radius: one parallel pass over the (up to date) columnar snapshot instead of thousands of cells
+            ProviderColumnarSnapshot.Hits hits = snapshot.scan(
+                    lat, lng, radiusKm,
+                    CapabilityMask.categoryBit(VehicleCategory.ALL) | CapabilityMask.categoryBit(category),
+                    CapabilityMask.serviceBit(serviceType)
+            );
+            for (int i = 0; i < hits.size(); i++) {
+                offer(heap, limit, snapshot.entry(hits.positions()[i]), hits.distancesKm()[i], filter, after);
+            }
+            return drainSorted(heap);
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet posting = postings[pair(category, serviceType)];
+            if (posting == null || posting.isEmpty()) return List.of();
+
+            BitSet candidates = new BitSet();
+            grid.forEachCellCovering(lat, lng, radiusKm, cell -> {
+                BitSet inCell = cells.get(cell);
+                if (inCell != null) candidates.or(inCell);
+            });
+            candidates.and(posting);
+
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                Entry e = slots[slot];
+                double d = GeoUtil.haversineKm(lat, lng, e.latitude(), e.longitude());
+                if (d > radiusKm) continue;
+
+                offer(heap, limit, e, d, filter, after);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return drainSorted(heap);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByBusinessId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // whether nearest() scans the columnar snapshot for this radius (when it is up to date)
+    public boolean usesColumnar(double radiusKm) {
+        return columnarFromKm > 0 && radiusKm >= columnarFromKm;
+    }
+
+    private void scheduleSnapshot() {
+        if (snapshotBuilder == null || !snapshotQueued.compareAndSet(false, true)) return;
+        try {
+            snapshotBuilder.execute(() -> {
+                snapshotQueued.set(false);
+                columnar();
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            snapshotQueued.set(false);
+        }
+    }
+
+    // true once the snapshot has every change (tests wait for the background rebuild with it)
+    boolean columnarCurrent() {
+        ProviderColumnarSnapshot snap = snapshot;
+        return snap != null && snap.version == version;
+    }
+
+    // current columnar snapshot, rebuilt (copy-on-write) if any provider changed since the last one.
+    // Runs on the provider-columnar thread (or a benchmark / test), never on a search
+    ProviderColumnarSnapshot columnar() {
+        ProviderColumnarSnapshot snap = snapshot;
+        if (snap != null && snap.version == version) return snap;
+
+        lock.readLock().lock();
+        try {
+            snap = snapshot;
+            if (snap != null && snap.version == version) return snap;
+
+            Entry[] live = slotByBusinessId.values().stream()
+                    .map(slot -> slots[slot])
+                    .toArray(Entry[]::new);
+            snap = ProviderColumnarSnapshot.of(version, live);
+            snapshot = snap;
+            return snap;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void fireChanged(Entry old, Entry current) {
+        for (BiConsumer<Entry, Entry> l : changeListeners) {
+            l.accept(old, current);
+        }
+    }
+
+    private static void offer(PriorityQueue<Match> heap, int limit, Entry e, double d,
+                              Predicate<Entry> filter, NearbyCursor after) {
+        if (after != null && !after.isBefore(d, e.businessId())) return;
+
+        if (heap.size() == limit) {
+            Match worst = heap.peek();
+            int cmp = Double.compare(d, worst.distanceKm());
+            if (cmp > 0 || (cmp == 0 && e.businessId() > worst.entry().businessId())) return;
+        }
+        if (!filter.test(e)) return;
+
+        heap.add(new Match(e, d));
+        if (heap.size() > limit) heap.poll();
+    }
+
+    private static List<Match> drainSorted(PriorityQueue<Match> heap) {
+        Match[] sorted = new Match[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap.poll();
+        }
+        return Arrays.asList(sorted);
+    }
+
+    // ----- helpers (call with write lock held) -----
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) return freeSlots.pop();
+        if (nextSlot == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        return nextSlot++;
+    }
+
+    private void link(int slot, Entry e) {
+        cells.computeIfAbsent(e.cell(), k -> new BitSet()).set(slot);
+
+        for (VehicleCategory c : CATEGORIES) {
+            for (ServiceType s : SERVICES) {
+                if (CapabilityMask.matches(e.capabilityMask(), c, s)) {
+                    int p = pair(c, s);
+                    if (postings[p] == null) postings[p] = new BitSet();
+                    postings[p].set(slot);
+                }
+            }
+        }
+    }
+
+    private void unlink(int slot, Entry e) {
+        BitSet inCell = cells.get(e.cell());
+        if (inCell != null) {
+            inCell.clear(slot);
+            if (inCell.isEmpty()) cells.remove(e.cell());
+        }
+
+        for (BitSet posting : postings) {
+            if (posting != null) posting.clear(slot);
+        }
+    }
+
+    private static int pair(VehicleCategory c, ServiceType s) {
+        return c.ordinal() * SERVICES.length + s.ordinal();
+    }
+
+    // rows saved before validation existed may hold the old free-text format
+    private static WeeklySchedule compileLegacy(ProviderBusiness b) {
+        try {
+            return OpeningHoursUtil.compile(b.getOpeningHours());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Provider business " + b.getId() + " has unsupported opening hours, treated as closed: "
+                    + b.getOpeningHours());
+            return WeeklySchedule.CLOSED;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.dto.ChatMessagePage;
+import com.fixme.authservice.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// The newest messages of recently used conversations, so opening a chat (latest page) and
+// reconnecting ("since") don't query chat_messages. Older history always comes from the database.
+//
+// One ring buffer per conversation, filled by ChatService.sendMessage and seeded from the database on
+// the first read. Conversations are evicted least recently used first once the estimated size passes maxBytes.
+// Since sendMessage fills it before ChatMessageWriter has inserted, it also serves messages not yet in the table.
+//
+// Off with chat.broker.mode=kafka: messages sent through other nodes never reach this node's rings,
+// so every read goes to the database.
+@Component
+public class RecentMessageCache {
+
+    // rough heap cost of one cached message besides its text (DTO, boxed ids, timestamp, slot)
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private final int perConversation;
+    private final long maxBytes;
+    private final boolean enabled;
+
+    // access-order LinkedHashMap = LRU, guarded by itself (like every Ring in it)
+    private final Map<Long, Ring> rings = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public RecentMessageCache(MeterRegistry registry,
+                              @Value("${chat.recent.messages-per-conversation:50}") int perConversation,
+                              @Value("${chat.recent.max-bytes:33554432}") long maxBytes,
+                              @Value("${chat.broker.mode:local}") String brokerMode) {
+        this.perConversation = perConversation;
+        this.maxBytes = maxBytes;
+        this.enabled = !"kafka".equals(brokerMode);
+
+        this.hits = Counter.builder("chat.recent.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("chat.recent.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("chat.recent.evictions").register(registry);
+        Gauge.builder("chat.recent.hit-ratio", this, c -> {
+            double total = c.hits.count() + c.misses.count();
+            return total == 0 ? 0 : c.hits.count() / total;
+        }).register(registry);
+        Gauge.builder("chat.recent.conversations", rings, m -> {
+            synchronized (m) {
+                return m.size();
+            }
+        }).register(registry);
+        Gauge.builder("chat.recent.bytes", this, c -> {
+            synchronized (c.rings) {
+                return c.bytes;
+            }
+        }).register(registry);
+    }
+
+    public int capacity() {
+        return perConversation;
+    }
+
+    // a message that was just sent (id already assigned)
+    public void append(ChatMessageDto m) {
+        if (!enabled) return;
+        synchronized (rings) {
+            Ring ring = rings.computeIfAbsent(m.getConversationId(), id -> new Ring(perConversation));
+            bytes += ring.add(m);
+            trim();
+        }
+    }
+
+    // newestFirst = the newest (up to capacity + 1) rows of the conversation from the database
+    public void seed(Long conversationId, List<ChatMessageDto> newestFirst) {
+        if (!enabled) return;
+        synchronized (rings) {
+            Ring ring = rings.computeIfAbsent(conversationId, id -> new Ring(perConversation));
+            if (ring.seeded) return;
+
+            // messages appended while the rows were loading are already in the ring; add() skips duplicates
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                bytes += ring.add(newestFirst.get(i));
+            }
+            if (newestFirst.size() > perConversation) ring.hasOlder = true;
+            ring.seeded = true;
+            trim();
+        }
+    }
+
+    // latest `size` messages, oldest first; empty when the ring can't answer (not seeded / size too big)
+    public Optional<ChatMessagePage> latest(Long conversationId, int size) {
+        synchronized (rings) {
+            Ring ring = rings.get(conversationId);
+            if (ring == null || !ring.seeded || size > perConversation) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+
+            int from = Math.max(0, ring.count - size);
+            boolean more = from > 0 || ring.hasOlder;
+            List<ChatMessageDto> items = ring.slice(from, ring.count);
+            return Optional.of(new ChatMessagePage(items, more && !items.isEmpty() ? items.get(0).getId().toString() : null));
+        }
+    }
+
+    // messages after afterId, oldest first; empty when older messages than the ring holds could be missing
+    public Optional<ChatMessagePage> since(Long conversationId, long afterId, int size) {
+        synchronized (rings) {
+            Ring ring = rings.get(conversationId);
+            if (ring == null || !ring.seeded || (ring.hasOlder && (ring.count == 0 || ring.get(0).getId() > afterId))) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+
+            int from = 0;
+            while (from < ring.count && ring.get(from).getId() <= afterId) from++;
+            int to = Math.min(ring.count, from + size);
+            List<ChatMessageDto> items = ring.slice(from, to);
+            return Optional.of(new ChatMessagePage(items, to < ring.count ? items.get(items.size() - 1).getId().toString() : null));
+        }
+    }
+
+    // conversations deleted in the current transaction
+    public void evict(Collection<Long> conversationIds) {
+        List<Long> ids = List.copyOf(conversationIds);
+        TransactionUtil.afterCommit(() -> {
+            synchronized (rings) {
+                for (Long id : ids) {
+                    Ring ring = rings.remove(id);
+                    if (ring != null) bytes -= ring.bytes;
+                }
+            }
+        });
+    }
+
+    // caller holds the rings lock
+    private void trim() {
+        Iterator<Ring> it = rings.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static long sizeOf(ChatMessageDto m) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (m.getMessage() == null ? 0 : m.getMessage().length());
+    }
+
+    // fixed-size circular buffer, kept sorted by id (senders of one conversation can append slightly out of order)
+    private static final class Ring {
+        final ChatMessageDto[] slots;
+        int start = 0;
+        int count = 0;
+        long bytes = 0;
+
+        // loaded from the database once; until then it only holds what was sent since it was created
+        boolean seeded = false;
+        // messages older than the ring exist (in the database)
+        boolean hasOlder = false;
+
+        Ring(int capacity) {
+            slots = new ChatMessageDto[capacity];
+        }
+
+        ChatMessageDto get(int i) {
+            return slots[(start + i) % slots.length];
+        }
+
+        private void set(int i, ChatMessageDto m) {
+            slots[(start + i) % slots.length] = m;
+        }
+
+        // returns the change in bytes
+        long add(ChatMessageDto m) {
+            long before = bytes;
+            for (int i = count - 1; i >= 0 && get(i).getId() >= m.getId(); i--) {
+                if (get(i).getId().equals(m.getId())) return 0;
+            }
+
+            if (count == slots.length) {
+                if (m.getId() < get(0).getId()) {
+                    hasOlder = true;
+                    return 0;
+                }
+                bytes -= sizeOf(get(0));
+                set(0, null);
+                start = (start + 1) % slots.length;
+                count--;
+                hasOlder = true;
+            }
+
+            int i = count++;
+            while (i > 0 && get(i - 1).getId() > m.getId()) {
+                set(i, get(i - 1));
+                i--;
+            }
+            set(i, m);
+            bytes += sizeOf(m);
+            return bytes - before;
+        }
+
+        List<ChatMessageDto> slice(int from, int to) {
+            List<ChatMessageDto> items = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                items.add(get(i));
+            }
+            return items;
+        }
+    }
+}
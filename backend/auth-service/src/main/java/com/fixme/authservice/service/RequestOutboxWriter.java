@@ -0,0 +1,39 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.event.RequestLifecycleMessage;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import com.fixme.authservice.model.OutboxEvent;
+import com.fixme.authservice.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+
+// Writes every service request change into request_outbox inside the same transaction:
+// the change and its event commit (or roll back) together, Kafka is never on the write path.
+// Only with outbox.relay.enabled: without a relay nothing would ever drain the table.
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class RequestOutboxWriter {
+
+    private final OutboxEventRepository outboxRepository;
+    private final JsonMapper jsonMapper;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onRequestChanged(ServiceRequestEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        RequestLifecycleMessage message = RequestLifecycleMessage.of(event, now);
+
+        outboxRepository.save(OutboxEvent.builder()
+                .aggregateId(message.requestId())
+                .eventType(message.type())
+                .payload(jsonMapper.writeValueAsString(message))
+                .createdAt(now)
+                .build());
+    }
+}
@@ -0,0 +1,38 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ServiceRequestPage;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.util.RequestCursor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// keyset paging shared by the customer / provider request lists
+final class RequestPages {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private RequestPages() {
+    }
+
+    // limit == null → everything (old behaviour); otherwise one row more than the page to know if there is a next one
+    static Pageable rowsFor(Integer limit) {
+        if (limit == null) return Pageable.unpaged();
+        return PageRequest.of(0, pageSize(limit) + 1);
+    }
+
+    static ServiceRequestPage of(List<ServiceRequestResponse> rows, Integer limit) {
+        if (limit == null || rows.size() <= pageSize(limit)) {
+            return new ServiceRequestPage(rows, null);
+        }
+
+        List<ServiceRequestResponse> items = rows.subList(0, pageSize(limit));
+        ServiceRequestResponse last = items.get(items.size() - 1);
+        return new ServiceRequestPage(items, new RequestCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+}
@@ -0,0 +1,32 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.RequestStatusDelta;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Status / progress changes of a request, pushed to its customer and provider on /user/queue/requests
+// (only their own sessions, wherever they are connected) instead of a topic everybody could subscribe to.
+@Component
+@RequiredArgsConstructor
+public class RequestStatusNotifier {
+
+    public static final String QUEUE = "/queue/requests";
+
+    private final TopicPublisher topicPublisher;
+
+    // only after commit, so a rolled back change is never announced
+    @TransactionalEventListener
+    public void onRequestChanged(ServiceRequestEvent event) {
+        ServiceRequestResponse r = event.request();
+        RequestStatusDelta delta = new RequestStatusDelta(
+                r.getId(), r.getProviderId(), r.getStatus(), event.previousStatus(), r.getProgressStage());
+
+        topicPublisher.publishToUser(r.getCustomerId(), QUEUE, delta);
+        if (r.getProviderId() != null) {
+            topicPublisher.publishToUser(r.getProviderId(), QUEUE, delta);
+        }
+    }
+}
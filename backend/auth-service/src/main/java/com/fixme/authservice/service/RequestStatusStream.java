@@ -0,0 +1,288 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.RequestStatusDelta;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-Sent Events of status / progress changes of a customer's requests,
+// so the app keeps one connection open instead of re-fetching the request list.
+//
+// Event ids are "<boot>-<seq>". Each customer keeps the last REPLAY_SIZE events, so a reconnect with
+// Last-Event-ID gets what it missed; if that is gone (or the server restarted) it gets a "resync" event
+// and should reload the list once.
+// Every subscriber has its own bounded queue, drained on its own virtual thread: SseEmitter.send blocks
+// while the client does not read, and that must not hold up the committing thread or other subscribers.
+// Only that thread touches the emitter (send/complete share its write lock). A subscriber that falls
+// REPLAY_SIZE events behind, or whose write is stuck for requests.stream.send-timeout-ms, is dropped
+// and catches up on reconnect.
+// With chat.broker.mode=kafka, changes committed on other nodes arrive through ClusterIndexSync.
+@Component
+public class RequestStatusStream {
+
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long HEARTBEAT_SECONDS = 25;
+    private static final int REPLAY_SIZE = 64;
+    private static final Event PING = new Event(0, null, null);
+
+    private final String boot = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<Long, CustomerChannel> channels = new ConcurrentHashMap<>();
+
+    private final long sendTimeoutMs;
+
+    private final ExecutorService dispatcher =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sse-dispatch-", 0).factory());
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // name == null: heartbeat comment
+    private record Event(long seq, String name, Object data) {
+    }
+
+    public RequestStatusStream(@Value("${requests.stream.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.sendTimeoutMs = sendTimeoutMs;
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe(Long customerId, String lastEventId) {
+        return subscribe(customerId, lastEventId, new SseEmitter(TIMEOUT_MS));
+    }
+
+    SseEmitter subscribe(Long customerId, String lastEventId, SseEmitter emitter) {
+        Subscriber sub = new Subscriber(emitter);
+        Long after = parseSeq(lastEventId);
+
+        while (true) {
+            CustomerChannel channel = channel(customerId);
+
+            // replay + register under the channel lock, so nothing published in between is lost or doubled
+            synchronized (channel) {
+                if (channels.get(customerId) != channel) continue; // removed as idle meanwhile
+
+                if (lastEventId != null && !lastEventId.isBlank()) {
+                    if (after == null || after < channel.floorSeq) {
+                        sub.offer(new Event(sequence.get(), "resync", "reload"));
+                    } else {
+                        for (Event e : channel.recent) {
+                            if (e.seq() > after) sub.offer(e);
+                        }
+                    }
+                }
+                channel.subscribers.add(sub);
+                channel.touch();
+            }
+
+            sub.emitter.onCompletion(() -> drop(channel, sub));
+            sub.emitter.onTimeout(() -> drop(channel, sub));
+            sub.emitter.onError(e -> drop(channel, sub));
+            break;
+        }
+        schedule(sub);
+        return sub.emitter;
+    }
+
+    @TransactionalEventListener
+    public void onRequestChanged(ServiceRequestEvent event) {
+        ServiceRequestResponse r = event.request();
+        send(channel(r.getCustomerId()), delta(event));
+    }
+
+    // a change committed on another node (see ClusterIndexSync); customers this node never streamed to are
+    // skipped: a Last-Event-ID from another node is a resync here anyway
+    public void onRemoteChange(Long customerId, RequestStatusDelta delta) {
+        CustomerChannel channel = channels.get(customerId);
+        if (channel != null) send(channel, delta);
+    }
+
+    public static RequestStatusDelta delta(ServiceRequestEvent event) {
+        ServiceRequestResponse r = event.request();
+        return new RequestStatusDelta(
+                r.getId(), r.getProviderId(), r.getStatus(), event.previousStatus(), r.getProgressStage());
+    }
+
+    private void send(CustomerChannel channel, RequestStatusDelta delta) {
+        synchronized (channel) {
+            Event e = new Event(sequence.incrementAndGet(), "status", delta);
+            channel.remember(e);
+            for (Subscriber sub : channel.subscribers) {
+                if (sub.offer(e)) {
+                    schedule(sub);
+                } else {
+                    // too far behind: drop it, the client resumes from Last-Event-ID
+                    drop(channel, sub);
+                }
+            }
+        }
+    }
+
+    // drains finish their current send and complete the emitters; stuck ones are interrupted after 5s
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        heartbeat.shutdownNow();
+        channels.values().forEach(c -> c.subscribers.forEach(s -> drop(c, s)));
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(5, TimeUnit.SECONDS)) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    int subscriberCount(Long customerId) {
+        CustomerChannel channel = channels.get(customerId);
+        return channel == null ? 0 : channel.subscribers.size();
+    }
+
+    private CustomerChannel channel(Long customerId) {
+        return channels.computeIfAbsent(customerId, id -> new CustomerChannel(sequence.get()));
+    }
+
+    // no more events; its drain completes the emitter (after a send in progress returns or fails)
+    private void drop(CustomerChannel channel, Subscriber sub) {
+        channel.subscribers.remove(sub);
+        sub.closed = true;
+        schedule(sub);
+    }
+
+    private void schedule(Subscriber sub) {
+        if (!sub.completed && sub.draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(sub));
+            } catch (RejectedExecutionException e) {
+                sub.draining.set(false); // shutting down
+            }
+        }
+    }
+
+    // one drain per subscriber at a time → events arrive in order
+    private void drain(Subscriber sub) {
+        try {
+            Event e;
+            while (!sub.closed && (e = sub.queue.poll()) != null) {
+                sub.sendingSince = System.currentTimeMillis();
+                sub.emitter.send(e.name() == null
+                        ? SseEmitter.event().comment("ping")
+                        : SseEmitter.event().id(boot + "-" + e.seq()).name(e.name()).data(e.data()));
+                sub.sendingSince = 0;
+            }
+            if (sub.closed) {
+                sub.completed = true;
+                sub.emitter.complete();
+                return;
+            }
+        } catch (IOException | IllegalStateException ex) {
+            sub.closed = true;
+            sub.completed = true;
+            sub.emitter.completeWithError(ex);
+            return;
+        } finally {
+            sub.sendingSince = 0;
+            sub.draining.set(false);
+        }
+        // offered or closed while this drain was finishing
+        if (sub.closed || !sub.queue.isEmpty()) schedule(sub);
+    }
+
+    // pings go through the queues too; a full queue or a write stuck for sendTimeoutMs drops the client
+    void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (CustomerChannel channel : channels.values()) {
+            for (Subscriber sub : channel.subscribers) {
+                long since = sub.sendingSince;
+                if ((since != 0 && now - since > sendTimeoutMs) || !sub.offer(PING)) {
+                    drop(channel, sub);
+                } else {
+                    schedule(sub);
+                }
+            }
+        }
+        for (Long customerId : channels.keySet()) {
+            channels.computeIfPresent(customerId, (id, c) -> {
+                synchronized (c) {
+                    return c.subscribers.isEmpty() && c.isIdle() ? null : c;
+                }
+            });
+        }
+    }
+
+    private Long parseSeq(String lastEventId) {
+        if (lastEventId == null) return null;
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash <= 0 || !lastEventId.substring(0, dash).equals(boot)) return null;
+        try {
+            return Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // guarded by itself (except the subscriber list, which is safe to iterate)
+    private static final class CustomerChannel {
+        private final Deque<Event> recent = new ArrayDeque<>();
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private long lastActivity = System.currentTimeMillis();
+
+        // every event of this customer with seq > floorSeq is still in recent
+        private long floorSeq;
+
+        CustomerChannel(long floorSeq) {
+            this.floorSeq = floorSeq;
+        }
+
+        void remember(Event e) {
+            recent.addLast(e);
+            if (recent.size() > REPLAY_SIZE) floorSeq = recent.removeFirst().seq();
+            touch();
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        boolean isIdle() {
+            return System.currentTimeMillis() - lastActivity > TIMEOUT_MS;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(REPLAY_SIZE);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean completed;
+        // start of the send in progress, 0 when idle
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        boolean offer(Event e) {
+            return queue.offer(e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.fixme.authservice.service;
+
+// Sends to a STOMP /topic destination for every subscriber of the cluster.
+// chat.broker.mode: local (this node's simple broker only) | kafka (relayed to the other nodes, see KafkaTopicPublisher)
+public interface TopicPublisher {
+
+    void publish(String destination, Object payload);
+
+    // to every session of one signed-in user, subscribed to /user{queue} (e.g. /user/queue/chat)
+    void publishToUser(Long userId, String queue, Object payload);
+}
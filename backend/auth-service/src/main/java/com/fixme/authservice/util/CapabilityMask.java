@@ -0,0 +1,117 @@
+package com.fixme.authservice.util;
+
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Provider capabilities packed into one long, stored in provider_business.capability_mask:
+// bits 0..15  → VehicleCategory (categoryPosition)
+// bits 16..47 → ServiceType (servicePosition)
+// Positions are fixed here, not taken from ordinal(): reordering the enums must not change stored masks.
+// A new constant has to get a free position below (the switches don't compile without it).
+public final class CapabilityMask {
+
+    private static final int SERVICE_SHIFT = 16;
+    private static final int CATEGORY_BITS = 16;
+    private static final int SERVICE_BITS = 32;
+
+    // by ordinal, filled (and checked) once at class load
+    private static final long[] CATEGORY_MASKS = new long[VehicleCategory.values().length];
+    private static final long[] SERVICE_MASKS = new long[ServiceType.values().length];
+
+    static {
+        long used = 0;
+        for (VehicleCategory c : VehicleCategory.values()) {
+            used = claim(used, c, categoryPosition(c), CATEGORY_BITS, 0);
+            CATEGORY_MASKS[c.ordinal()] = 1L << categoryPosition(c);
+        }
+        for (ServiceType s : ServiceType.values()) {
+            used = claim(used, s, servicePosition(s), SERVICE_BITS, SERVICE_SHIFT);
+            SERVICE_MASKS[s.ordinal()] = 1L << (SERVICE_SHIFT + servicePosition(s));
+        }
+    }
+
+    private CapabilityMask() {
+    }
+
+    // never change an existing position (stored masks use it)
+    static int categoryPosition(VehicleCategory c) {
+        return switch (c) {
+            case ALL -> 0;
+            case GERMAN -> 1;
+            case JAPANESE -> 2;
+            case KOREAN -> 3;
+            case AMERICAN -> 4;
+            case ELECTRIC -> 5;
+        };
+    }
+
+    // never change an existing position (stored masks use it)
+    static int servicePosition(ServiceType s) {
+        return switch (s) {
+            case GARAGE -> 0;
+            case OIL_CHANGE -> 1;
+            case BRAKES -> 2;
+            case TIRES -> 3;
+            case GLASS -> 4;
+            case FULL_SERVICE -> 5;
+            case TOWING -> 6;
+        };
+    }
+
+    static long claim(long used, Enum<?> constant, int position, int width, int shift) {
+        if (position < 0 || position >= width) {
+            throw new IllegalStateException("CapabilityMask: " + constant + " position " + position
+                    + " is outside 0.." + (width - 1));
+        }
+        long bit = 1L << (shift + position);
+        if ((used & bit) != 0) {
+            throw new IllegalStateException("CapabilityMask: " + constant + " reuses position " + position);
+        }
+        return used | bit;
+    }
+
+    public static long categoryBit(VehicleCategory c) {
+        return CATEGORY_MASKS[c.ordinal()];
+    }
+
+    public static long serviceBit(ServiceType s) {
+        return SERVICE_MASKS[s.ordinal()];
+    }
+
+    public static long of(Collection<VehicleCategory> categories, Collection<ServiceType> services) {
+        long mask = 0;
+        if (categories != null) {
+            for (VehicleCategory c : categories) mask |= categoryBit(c);
+        }
+        if (services != null) {
+            for (ServiceType s : services) mask |= serviceBit(s);
+        }
+        return mask;
+    }
+
+    // same rule as before: provider serves the service, and either all vehicle types or this one
+    public static boolean matches(long mask, VehicleCategory category, ServiceType serviceType) {
+        return (mask & serviceBit(serviceType)) != 0
+                && (mask & (categoryBit(VehicleCategory.ALL) | categoryBit(category))) != 0;
+    }
+
+    public static Set<VehicleCategory> categories(long mask) {
+        EnumSet<VehicleCategory> set = EnumSet.noneOf(VehicleCategory.class);
+        for (VehicleCategory c : VehicleCategory.values()) {
+            if ((mask & categoryBit(c)) != 0) set.add(c);
+        }
+        return set;
+    }
+
+    public static Set<ServiceType> services(long mask) {
+        EnumSet<ServiceType> set = EnumSet.noneOf(ServiceType.class);
+        for (ServiceType s : ServiceType.values()) {
+            if ((mask & serviceBit(s)) != 0) set.add(s);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,91 @@
+package com.fixme.authservice.util;
+
+import java.util.function.LongConsumer;
+
+// Fixed lat/lng grid: every point falls in exactly one cell, identified by a long key.
+// A radius search only has to look at the cells overlapping the bounding box of the circle.
+public final class GeoGrid {
+
+    private final double cellDeg;
+    private final int latCells;
+    private final int lngCells;
+
+    public GeoGrid(double cellDeg) {
+        if (cellDeg <= 0 || cellDeg > 90) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDeg);
+        }
+        this.cellDeg = cellDeg;
+        this.latCells = (int) Math.ceil(180.0 / cellDeg);
+        this.lngCells = (int) Math.ceil(360.0 / cellDeg);
+    }
+
+    public double getCellDeg() {
+        return cellDeg;
+    }
+
+    public long cellOf(double lat, double lng) {
+        return key(latIndex(lat), lngIndex(lng));
+    }
+
+    public double cellCenterLat(long cell) {
+        int latIndex = (int) (cell / lngCells);
+        return Math.min(90.0, -90.0 + (latIndex + 0.5) * cellDeg);
+    }
+
+    public double cellCenterLng(long cell) {
+        int lngIndex = (int) (cell % lngCells);
+        return -180.0 + (lngIndex + 0.5) * cellDeg;
+    }
+
+    // farthest any point of the cell can be from its center
+    public double cellRadiusKm(long cell) {
+        double lat = cellCenterLat(cell);
+        double lng = cellCenterLng(cell);
+        double half = cellDeg / 2;
+        double towardEquator = Math.abs(lat) - half;
+        double cornerLat = (lat >= 0 ? 1 : -1) * Math.max(0, towardEquator);
+        return GeoUtil.haversineKm(lat, lng, cornerLat, lng + half);
+    }
+
+    // calls consumer once for each cell that overlaps the circle's bounding box
+    public void forEachCellCovering(double lat, double lng, double radiusKm, LongConsumer consumer) {
+        double dLat = GeoUtil.latDelta(radiusKm);
+        double dLng = GeoUtil.lngDelta(lat, radiusKm);
+
+        int fromLat = latIndex(lat - dLat);
+        int toLat = latIndex(lat + dLat);
+
+        // whole ring of longitudes
+        if (dLng >= 180.0) {
+            for (int la = fromLat; la <= toLat; la++) {
+                for (int lo = 0; lo < lngCells; lo++) {
+                    consumer.accept(key(la, lo));
+                }
+            }
+            return;
+        }
+
+        int fromLng = (int) Math.floor((lng - dLng + 180.0) / cellDeg);
+        int toLng = (int) Math.floor((lng + dLng + 180.0) / cellDeg);
+
+        for (int la = fromLat; la <= toLat; la++) {
+            for (int lo = fromLng; lo <= toLng; lo++) {
+                // wrap around the anti-meridian
+                consumer.accept(key(la, Math.floorMod(lo, lngCells)));
+            }
+        }
+    }
+
+    private int latIndex(double lat) {
+        int i = (int) Math.floor((lat + 90.0) / cellDeg);
+        return Math.max(0, Math.min(latCells - 1, i));
+    }
+
+    private int lngIndex(double lng) {
+        return Math.floorMod((int) Math.floor((lng + 180.0) / cellDeg), lngCells);
+    }
+
+    private long key(int latIndex, int lngIndex) {
+        return (long) latIndex * lngCells + lngIndex;
+    }
+}
@@ -0,0 +1,40 @@
+package com.fixme.authservice.util;
+
+public final class GeoUtil {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // km per degree of latitude (and of longitude on the equator) on the same sphere as haversineKm, ~111.19
+    public static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+
+    private GeoUtil() {
+    }
+
+    // ✅ Haversine
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    // how many degrees of latitude cover radiusKm
+    public static double latDelta(double radiusKm) {
+        return radiusKm / KM_PER_DEGREE;
+    }
+
+    // how many degrees of longitude cover radiusKm anywhere in the circle around lat (clamped near the poles).
+    // Measured at the circle's latitude furthest from the equator, where a degree of longitude is shortest,
+    // so the box also contains the circle's poleward edge
+    public static double lngDelta(double lat, double radiusKm) {
+        double furthestLat = Math.min(90.0, Math.abs(lat) + latDelta(radiusKm));
+        double cos = Math.cos(Math.toRadians(furthestLat));
+        if (cos < 0.01) return 180.0;
+        return Math.min(180.0, radiusKm / (KM_PER_DEGREE * cos));
+    }
+}
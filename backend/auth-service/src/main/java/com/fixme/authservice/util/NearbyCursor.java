@@ -0,0 +1,39 @@
+package com.fixme.authservice.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// Position in a "nearest first" list: (distanceKm, businessId) of the last item of the previous page.
+// Encoded with the exact double bits so the next page resumes at precisely the same spot.
+public record NearbyCursor(double distanceKm, long businessId) {
+
+    // true if (distanceKm, businessId) comes after this cursor
+    public boolean isBefore(double otherDistanceKm, long otherBusinessId) {
+        int cmp = Double.compare(distanceKm, otherDistanceKm);
+        return cmp < 0 || (cmp == 0 && businessId < otherBusinessId);
+    }
+
+    public String encode() {
+        return Long.toHexString(Double.doubleToLongBits(distanceKm)) + "-" + businessId;
+    }
+
+    // a cursor the client made up or mangled → 400, not 500
+    public static NearbyCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+
+        int dash = cursor.indexOf('-');
+        if (dash <= 0) throw invalid();
+        try {
+            double d = Double.longBitsToDouble(Long.parseUnsignedLong(cursor.substring(0, dash), 16));
+            long id = Long.parseLong(cursor.substring(dash + 1));
+            if (Double.isNaN(d) || d < 0) throw invalid();
+            return new NearbyCursor(d, id);
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
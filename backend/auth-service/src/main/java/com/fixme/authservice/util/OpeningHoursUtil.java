@@ -4,58 +4,79 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.time.*;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 
 public class OpeningHoursUtil {
 
     private static final ObjectMapper mapper = new ObjectMapper();
 
+    // all providers are in Israel
+    public static final ZoneId ZONE = ZoneId.of("Asia/Jerusalem");
 
     // openingHoursJson: {"SUN":{"open":"09:00","close":"18:00"}, ...}
     public static boolean isOpenNow(String openingHoursJson, ZoneId zoneId) {
-        if (openingHoursJson == null || openingHoursJson.trim().isEmpty()) return false;
+        WeeklySchedule schedule;
+        try {
+            schedule = compile(openingHoursJson);
+        } catch (IllegalArgumentException e) {
+            // إذا كان نص قديم مثل "Sun-Thu 09:00-18:00" → اعتبره مش مدعوم
+            return false;
+        }
+        return schedule.isOpenNow(zoneId);
+    }
+
+    // Parses the JSON once into a week bitmap.
+    // Empty → always closed, anything malformed → IllegalArgumentException.
+    public static WeeklySchedule compile(String openingHoursJson) {
+        if (openingHoursJson == null || openingHoursJson.trim().isEmpty()) return WeeklySchedule.CLOSED;
 
         Map<String, Map<String, String>> m;
         try {
             m = mapper.readValue(openingHoursJson, new TypeReference<>() {});
         } catch (Exception e) {
-            // إذا كان نص قديم مثل "Sun-Thu 09:00-18:00" → اعتبره مش مدعوم
-            return false;
+            throw new IllegalArgumentException("Invalid opening hours: expected JSON like {\"SUN\":{\"open\":\"09:00\",\"close\":\"18:00\"}}");
         }
+        if (m == null) return WeeklySchedule.CLOSED;
 
-        ZonedDateTime now = ZonedDateTime.now(zoneId);
-        DayOfWeek dow = now.getDayOfWeek(); // MON..SUN
-        String key = toKey(dow);           // "MON".."SUN"
-
-        Map<String, String> range = m.get(key);
-        if (range == null) return false;
+        WeeklySchedule.Builder builder = WeeklySchedule.builder();
 
-        String openStr = range.get("open");
-        String closeStr = range.get("close");
-        if (openStr == null || closeStr == null) return false;
+        for (Map.Entry<String, Map<String, String>> e : m.entrySet()) {
+            DayOfWeek dow = fromKey(e.getKey());
+            Map<String, String> range = e.getValue();
+            if (range == null) continue;
 
-        LocalTime open = LocalTime.parse(openStr);
-        LocalTime close = LocalTime.parse(closeStr);
-        LocalTime t = now.toLocalTime();
+            String openStr = range.get("open");
+            String closeStr = range.get("close");
+            if (openStr == null || closeStr == null) {
+                throw new IllegalArgumentException("Invalid opening hours for " + e.getKey() + ": open/close required");
+            }
 
-        // حالة عادية: 09:00 - 18:00
-        if (close.isAfter(open) || close.equals(open)) {
-            return !t.isBefore(open) && t.isBefore(close);
+            builder.day(dow, toMinute(e.getKey(), openStr), toMinute(e.getKey(), closeStr));
         }
 
-        // حالة over-night: 22:00 - 02:00
-        return !t.isBefore(open) || t.isBefore(close);
+        return builder.build();
+    }
+
+    private static int toMinute(String day, String time) {
+        try {
+            LocalTime t = LocalTime.parse(time);
+            return t.getHour() * 60 + t.getMinute();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid opening hours for " + day + ": bad time " + time);
+        }
     }
 
-    private static String toKey(DayOfWeek d) {
-        return switch (d) {
-            case MONDAY -> "MON";
-            case TUESDAY -> "TUE";
-            case WEDNESDAY -> "WED";
-            case THURSDAY -> "THU";
-            case FRIDAY -> "FRI";
-            case SATURDAY -> "SAT";
-            case SUNDAY -> "SUN";
+    private static DayOfWeek fromKey(String key) {
+        return switch (key) {
+            case "MON" -> DayOfWeek.MONDAY;
+            case "TUE" -> DayOfWeek.TUESDAY;
+            case "WED" -> DayOfWeek.WEDNESDAY;
+            case "THU" -> DayOfWeek.THURSDAY;
+            case "FRI" -> DayOfWeek.FRIDAY;
+            case "SAT" -> DayOfWeek.SATURDAY;
+            case "SUN" -> DayOfWeek.SUNDAY;
+            default -> throw new IllegalArgumentException("Invalid opening hours: unknown day " + key);
         };
     }
 }
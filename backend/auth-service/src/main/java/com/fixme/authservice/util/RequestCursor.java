@@ -0,0 +1,41 @@
+package com.fixme.authservice.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Position in a "newest first" list of requests: (createdAt, id) of the last item of the previous page.
+// createdAt is only used as a sort key here, so it is encoded as if it were UTC.
+public record RequestCursor(LocalDateTime createdAt, long id) {
+
+    // first page: before everything
+    public static final RequestCursor START = new RequestCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    public String encode() {
+        return createdAt.toEpochSecond(ZoneOffset.UTC) + "." + createdAt.getNano() + "-" + id;
+    }
+
+    // a cursor the client made up or mangled → 400, not 500
+    public static RequestCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return START;
+
+        int dot = cursor.indexOf('.');
+        int dash = cursor.indexOf('-', dot + 1);
+        if (dot <= 0 || dash <= dot) throw invalid();
+        try {
+            long seconds = Long.parseLong(cursor.substring(0, dot));
+            int nanos = Integer.parseInt(cursor.substring(dot + 1, dash));
+            long id = Long.parseLong(cursor.substring(dash + 1));
+            return new RequestCursor(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC), id);
+        } catch (NumberFormatException | DateTimeException e) {
+            throw invalid();
+        }
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
@@ -0,0 +1,104 @@
+package com.fixme.authservice.util;
+
+import java.time.DayOfWeek;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Opening hours compiled into a 10,080-bit week bitmap (one bit per minute, Monday 00:00 = bit 0).
+// Built once when the schedule is saved; "open now?" is then a single bit test.
+public final class WeeklySchedule {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private static final int WORDS = MINUTES_PER_WEEK / 64 + 1;
+
+    // stored form (provider_business.opening_minutes): minute m = bit (m % 8) of byte (m / 8)
+    public static final int BYTES = MINUTES_PER_WEEK / 8;
+
+    public static final WeeklySchedule CLOSED = new WeeklySchedule(new long[WORDS]);
+
+    private final long[] bits;
+
+    private WeeklySchedule(long[] bits) {
+        this.bits = bits;
+    }
+
+    public boolean isOpenAt(int minuteOfWeek) {
+        return (bits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    public boolean isOpenNow(ZoneId zoneId) {
+        return isOpenAt(currentMinuteOfWeek(zoneId));
+    }
+
+    public boolean isAlwaysClosed() {
+        for (long w : bits) {
+            if (w != 0) return false;
+        }
+        return true;
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        for (int i = 0; i < BYTES; i++) {
+            bytes[i] = (byte) (bits[i >>> 3] >>> ((i & 7) * 8));
+        }
+        return bytes;
+    }
+
+    public static WeeklySchedule fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != BYTES) throw new IllegalArgumentException("Invalid schedule bitmap");
+
+        long[] bits = new long[WORDS];
+        for (int i = 0; i < BYTES; i++) {
+            bits[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) * 8);
+        }
+        return new WeeklySchedule(bits);
+    }
+
+    public static int currentMinuteOfWeek(ZoneId zoneId) {
+        return minuteOfWeek(ZonedDateTime.now(zoneId));
+    }
+
+    public static int minuteOfWeek(ZonedDateTime t) {
+        return dayIndex(t.getDayOfWeek()) * MINUTES_PER_DAY + t.getHour() * 60 + t.getMinute();
+    }
+
+    static int dayIndex(DayOfWeek d) {
+        return d.getValue() - 1; // MONDAY = 0 .. SUNDAY = 6
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final long[] bits = new long[WORDS];
+
+        // open/close are minutes of the day; close < open means the range runs past midnight
+        // and (like before) the early-morning part is counted on the same day
+        public Builder day(DayOfWeek day, int openMinute, int closeMinute) {
+            int base = dayIndex(day) * MINUTES_PER_DAY;
+
+            if (closeMinute >= openMinute) {
+                set(base + openMinute, base + closeMinute);
+            } else {
+                set(base + openMinute, base + MINUTES_PER_DAY);
+                set(base, base + closeMinute);
+            }
+            return this;
+        }
+
+        public WeeklySchedule build() {
+            return new WeeklySchedule(bits.clone());
+        }
+
+        private void set(int from, int to) {
+            for (int m = from; m < to; m++) {
+                bits[m >>> 6] |= 1L << m;
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.fixme.authservice.repository;
+
+import com.fixme.authservice.config.ProviderLocationSchemaInitializer;
+import com.fixme.authservice.dto.NearbyProviderPage;
+import com.fixme.authservice.dto.NearbyProviderResponse;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.service.CustomerNearbyProviderService;
+import com.fixme.authservice.service.NearbyResultCache;
+import com.fixme.authservice.service.ProviderSpatialIndex;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.NearbyCursor;
+import com.fixme.authservice.util.WeeklySchedule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.mysql.MySQLContainer;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// nearby.search-backend=database runs MySQL-only SQL (POINT column, SPATIAL INDEX, ST_Distance_Sphere),
+// so it is checked against a real MySQL 8, next to the Java haversine of the index backend.
+// Skipped where there is no Docker.
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "nearby.search-backend=database"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Import({ProviderLocationSchemaInitializer.class, CustomerNearbyProviderService.class,
+        ProviderSpatialIndex.class, NearbyResultCache.class})
+// rows are committed: the schema initializer's generated column is filled on insert
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProviderNearbyMySqlTest {
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer mysql = new MySQLContainer("mysql:8.4");
+
+    private static final double LAT = 32.0;
+    private static final double LNG = 35.0;
+
+    private static final long TIRES = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+
+    // Mondays 09:00-10:00
+    private static final WeeklySchedule MONDAY_MORNING =
+            WeeklySchedule.builder().day(DayOfWeek.MONDAY, 9 * 60, 10 * 60).build();
+    private static final WeeklySchedule ALWAYS = always();
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ProviderBusinessRepository businessRepository;
+
+    @Autowired
+    private CustomerNearbyProviderService nearbyService;
+
+    @Autowired
+    private ProviderSpatialIndex spatialIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<ProviderBusiness> saved = new ArrayList<>();
+    private long nextUser = 0;
+
+    @BeforeEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from provider_business");
+        jdbcTemplate.update("delete from users");
+        saved.clear();
+    }
+
+    // inside / outside by 1 cm around the radius, the same as haversineKm says; distances equal to it
+    // (MySQL's default sphere is 6370986 m, 0.1 m shorter at 50 km)
+    @Test
+    void radiusBoundaryAndDistancesMatchHaversine() {
+        for (double radiusKm : new double[]{1, 10, 50}) {
+            cleanUp();
+            provider(LAT + GeoUtil.latDelta(radiusKm - 1e-5), LNG, TIRES, ALWAYS);
+            provider(LAT - GeoUtil.latDelta(radiusKm - 1e-5), LNG, TIRES, ALWAYS);
+            provider(LAT + GeoUtil.latDelta(radiusKm + 1e-5), LNG, TIRES, ALWAYS);
+            provider(LAT - GeoUtil.latDelta(radiusKm + 1e-5), LNG, TIRES, ALWAYS);
+            Random random = new Random(3);
+            for (int i = 0; i < 100; i++) {
+                double d = radiusKm * 1.5;
+                provider(LAT + (random.nextDouble() * 2 - 1) * GeoUtil.latDelta(d),
+                        LNG + (random.nextDouble() * 2 - 1) * GeoUtil.lngDelta(LAT, d), TIRES, ALWAYS);
+            }
+
+            List<ProviderBusinessRepository.NearbyBusinessRow> rows = businessRepository.findNearby(
+                    LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES, 0, null, 1000);
+
+            assertEquals(expected(radiusKm), rows.stream().map(ProviderBusinessRepository.NearbyBusinessRow::getBusinessId).toList(),
+                    "radius " + radiusKm);
+            for (ProviderBusinessRepository.NearbyBusinessRow row : rows) {
+                ProviderBusiness b = byId(row.getBusinessId());
+                assertEquals(GeoUtil.haversineKm(LAT, LNG, b.getLatitude(), b.getLongitude()), row.getDistanceKm(), 1e-9);
+            }
+        }
+    }
+
+    // capability bits: ALL or the asked category, and the service; open-now reads the right bit of the right byte
+    @Test
+    void capabilityAndOpenNowFilters() {
+        long germanTires = CapabilityMask.of(Set.of(VehicleCategory.GERMAN), Set.of(ServiceType.TIRES));
+        long japaneseTires = CapabilityMask.of(Set.of(VehicleCategory.JAPANESE), Set.of(ServiceType.TIRES));
+        long allTowing = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TOWING));
+
+        ProviderBusiness all = provider(LAT, LNG + 0.001, TIRES, ALWAYS);
+        ProviderBusiness german = provider(LAT, LNG + 0.002, germanTires, ALWAYS);
+        provider(LAT, LNG + 0.003, japaneseTires, ALWAYS);
+        provider(LAT, LNG + 0.004, allTowing, ALWAYS);
+        ProviderBusiness morning = provider(LAT, LNG + 0.005, TIRES, MONDAY_MORNING);
+        provider(LAT, LNG + 0.006, TIRES, WeeklySchedule.CLOSED);
+
+        int opens = firstOpenMinute(MONDAY_MORNING);
+        int closes = opens + 60;
+        // around the opening minute, the last open minute and the closing one
+        assertEquals(List.of(all.getId(), german.getId()), ids(opens - 1));
+        assertEquals(List.of(all.getId(), german.getId(), morning.getId()), ids(opens));
+        assertEquals(List.of(all.getId(), german.getId(), morning.getId()), ids(closes - 1));
+        assertEquals(List.of(all.getId(), german.getId()), ids(closes));
+    }
+
+    // database pages, followed through their cursors, are the index backend's list: same ids, same order,
+    // same distances; no limit pages through the whole radius and returns no cursor
+    @Test
+    void cursorPagesMatchTheIndexBackend() {
+        Random random = new Random(8);
+        for (int i = 0; i < 300; i++) {
+            // a few exact duplicates: equal distances, only the id breaks the tie
+            if (i % 50 == 0) {
+                provider(LAT + 0.01, LNG, TIRES, ALWAYS);
+                continue;
+            }
+            provider(LAT - 0.3 + random.nextDouble() * 0.6, LNG - 0.3 + random.nextDouble() * 0.6, TIRES, ALWAYS);
+        }
+        spatialIndex.rebuild();
+        double radiusKm = 25;
+
+        List<ProviderSpatialIndex.Match> fromIndex = spatialIndex.nearest(LAT, LNG, radiusKm,
+                VehicleCategory.GERMAN, ServiceType.TIRES, e -> true, null, Integer.MAX_VALUE - 1);
+
+        List<NearbyProviderResponse> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            NearbyProviderPage page = nearbyService.nearbyProviders(
+                    LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES, 13, cursor);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(fromIndex.stream().map(m -> m.entry().businessId()).toList(),
+                paged.stream().map(NearbyProviderResponse::getBusinessId).toList());
+        for (int i = 0; i < paged.size(); i++) {
+            assertEquals(fromIndex.get(i).distanceKm(), paged.get(i).getDistanceKm(), 1e-9);
+        }
+
+        NearbyProviderPage unlimited = nearbyService.nearbyProviders(
+                LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES, null, null);
+        assertEquals(paged.size(), unlimited.getItems().size());
+        assertNull(unlimited.getNextCursor());
+
+        // an index cursor continues on the database backend
+        ProviderSpatialIndex.Match tenth = fromIndex.get(9);
+        NearbyProviderPage rest = nearbyService.nearbyProviders(LAT, LNG, radiusKm, VehicleCategory.GERMAN,
+                ServiceType.TIRES, 5, new NearbyCursor(tenth.distanceKm(), tenth.entry().businessId()).encode());
+        assertEquals(fromIndex.subList(10, 15).stream().map(m -> m.entry().businessId()).toList(),
+                rest.getItems().stream().map(NearbyProviderResponse::getBusinessId).toList());
+    }
+
+    private List<Long> ids(int minuteOfWeek) {
+        return businessRepository.findNearby(LAT, LNG, 5, VehicleCategory.GERMAN, ServiceType.TIRES,
+                        minuteOfWeek, null, 100)
+                .stream().map(ProviderBusinessRepository.NearbyBusinessRow::getBusinessId).toList();
+    }
+
+    private List<Long> expected(double radiusKm) {
+        return saved.stream()
+                .filter(b -> GeoUtil.haversineKm(LAT, LNG, b.getLatitude(), b.getLongitude()) <= radiusKm)
+                .sorted(Comparator.<ProviderBusiness>comparingDouble(
+                                b -> GeoUtil.haversineKm(LAT, LNG, b.getLatitude(), b.getLongitude()))
+                        .thenComparing(ProviderBusiness::getId))
+                .map(ProviderBusiness::getId)
+                .toList();
+    }
+
+    private ProviderBusiness byId(Long id) {
+        return saved.stream().filter(b -> b.getId().equals(id)).findFirst().orElseThrow();
+    }
+
+    private ProviderBusiness provider(double lat, double lng, long mask, WeeklySchedule schedule) {
+        ProviderBusiness b = new TransactionTemplate(transactionManager).execute(status -> {
+            long n = nextUser++;
+            User u = User.builder()
+                    .firstName("p")
+                    .lastName("p")
+                    .email("nearby-" + n + "@test.local")
+                    .phone("nearby-" + n)
+                    .passwordHash("x")
+                    .role(UserRole.PROVIDER)
+                    .verified(true)
+                    .providerApprovalStatus(ProviderApprovalStatus.APPROVED)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            entityManager.persist(u);
+
+            return businessRepository.save(ProviderBusiness.builder()
+                    .user(u)
+                    .businessName("b" + n)
+                    .city("c")
+                    .address("a")
+                    .latitude(lat)
+                    .longitude(lng)
+                    .capabilityMask(mask)
+                    .openingMinutes(schedule.toBytes())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        });
+        saved.add(b);
+        return b;
+    }
+
+    private static int firstOpenMinute(WeeklySchedule schedule) {
+        for (int m = 0; m < WeeklySchedule.MINUTES_PER_WEEK; m++) {
+            if (schedule.isOpenAt(m)) return m;
+        }
+        throw new IllegalStateException("never open");
+    }
+
+    private static WeeklySchedule always() {
+        WeeklySchedule.Builder b = WeeklySchedule.builder();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            b.day(day, 0, WeeklySchedule.MINUTES_PER_DAY);
+        }
+        return b.build();
+    }
+}
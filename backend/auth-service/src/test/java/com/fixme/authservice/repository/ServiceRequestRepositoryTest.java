@@ -0,0 +1,281 @@
+package com.fixme.authservice.repository;
+
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.service.CustomerRequestService;
+import com.fixme.authservice.service.PendingRequestIndex;
+import com.fixme.authservice.util.RequestCursor;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.fixme.authservice.util.RequestCursor.START;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// in-memory H2 in MySQL mode instead of the real database (vehicles.year is a keyword in H2)
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:requests;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CustomerRequestService.class, PendingRequestIndex.class})
+class ServiceRequestRepositoryTest {
+
+    // seedAdmin in AuthServiceApplication needs one; the JPA slice does not load SecurityConfig
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Autowired
+    private ServiceRequestRepository requestRepository;
+
+    @Autowired
+    private CustomerRequestService customerRequestService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // request lists must cost one statement, however many rows come back
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 25})
+    void listsAreOneStatementRegardlessOfSize(int rows) {
+        User customer = user("customer", UserRole.CUSTOMER);
+        User provider = user("provider", UserRole.PROVIDER);
+        for (int i = 0; i < rows; i++) {
+            request(customer, vehicle(customer, i), i % 2 == 0 ? provider : null);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        List<ServiceRequestResponse> mine = requestRepository.findResponsesByCustomerId(
+                customer.getId(), START.createdAt(), START.id(), Pageable.unpaged());
+        assertEquals(rows, mine.size());
+        assertEquals(1, stats.getPrepareStatementCount());
+
+        stats.clear();
+        List<ServiceRequestResponse> inbox = requestRepository.findResponsesByProviderId(
+                provider.getId(), START.createdAt(), START.id(), Pageable.unpaged());
+        assertEquals((rows + 1) / 2, inbox.size());
+        assertEquals(1, stats.getPrepareStatementCount());
+
+        stats.clear();
+        requestRepository.findResponsesByProviderIdAndStatus(
+                provider.getId(), RequestStatus.PENDING, START.createdAt(), START.id(), Pageable.unpaged());
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    // walking the pages with the cursor returns every request once, newest first
+    @Test
+    void keysetPagesCoverTheWholeList() {
+        User customer = user("pager", UserRole.CUSTOMER);
+        Vehicle vehicle = vehicle(customer, 0);
+        for (int i = 0; i < 23; i++) {
+            request(customer, vehicle, null);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ServiceRequestResponse> all = requestRepository.findResponsesByCustomerId(
+                customer.getId(), START.createdAt(), START.id(), Pageable.unpaged());
+
+        List<ServiceRequestResponse> paged = new ArrayList<>();
+        RequestCursor cursor = START;
+        while (true) {
+            List<ServiceRequestResponse> page = requestRepository.findResponsesByCustomerId(
+                    customer.getId(), cursor.createdAt(), cursor.id(), PageRequest.of(0, 5));
+            paged.addAll(page);
+            if (page.size() < 5) break;
+
+            ServiceRequestResponse last = page.get(page.size() - 1);
+            cursor = RequestCursor.decode(new RequestCursor(last.getCreatedAt(), last.getId()).encode());
+        }
+
+        assertEquals(23, all.size());
+        assertEquals(all.stream().map(ServiceRequestResponse::getId).toList(),
+                paged.stream().map(ServiceRequestResponse::getId).toList());
+    }
+
+    // customers racing to assign the same PENDING request (a double submit, several tabs): the conditional UPDATE
+    // lets exactly one through, and each loser has run that one statement only
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentAssignHasExactlyOneWinner() throws Exception {
+        int racers = 8;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        long[] ids = tx.execute(status -> {
+            User customer = user("race-customer", UserRole.CUSTOMER);
+            ServiceRequest r = request(customer, vehicle(customer, 0), null);
+            long[] result = new long[racers + 2];
+            result[0] = r.getId();
+            result[1] = customer.getId();
+            for (int i = 0; i < racers; i++) {
+                result[i + 2] = user("race-provider-" + i, UserRole.PROVIDER).getId();
+            }
+            return result;
+        });
+
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        ExecutorService pool = Executors.newFixedThreadPool(racers);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<Long>> outcomes = new ArrayList<>();
+            for (int i = 0; i < racers; i++) {
+                long providerId = ids[i + 2];
+                outcomes.add(pool.submit(() -> {
+                    go.await();
+                    try {
+                        return customerRequestService.assignProvider(ids[1], ids[0], providerId).getProviderId();
+                    } catch (IllegalStateException lost) {
+                        return null;
+                    }
+                }));
+            }
+            stats.clear();
+            go.countDown();
+
+            List<Long> winners = new ArrayList<>();
+            for (Future<Long> f : outcomes) {
+                Long winner = f.get(30, TimeUnit.SECONDS);
+                if (winner != null) winners.add(winner);
+            }
+
+            assertEquals(1, winners.size());
+            // one UPDATE per racer + the winner's read of its response
+            assertEquals(racers + 1, stats.getPrepareStatementCount());
+            ServiceRequestResponse stored = requestRepository.findResponseById(ids[0]).orElseThrow();
+            assertEquals(RequestStatus.WAITING_PROVIDER, stored.getStatus());
+            assertEquals(winners.get(0), stored.getProviderId());
+        } finally {
+            pool.shutdownNow();
+            // committed for real: leave the shared database as the other tests expect it
+            tx.executeWithoutResult(status -> {
+                List<Long> users = new ArrayList<>();
+                for (int i = 1; i < ids.length; i++) users.add(ids[i]);
+                entityManager.createQuery("delete from ServiceRequest r where r.id = :id")
+                        .setParameter("id", ids[0]).executeUpdate();
+                entityManager.createQuery("delete from Vehicle v where v.owner.id = :owner")
+                        .setParameter("owner", ids[1]).executeUpdate();
+                entityManager.createQuery("delete from User u where u.id in :ids")
+                        .setParameter("ids", users).executeUpdate();
+            });
+        }
+    }
+
+    // a transition is one conditional UPDATE; only the winner then reads its response, and a caller whose
+    // UPDATE changed nothing fails on that one statement
+    @Test
+    void transitionIsOneUpdate() {
+        User customer = user("cas-customer", UserRole.CUSTOMER);
+        User provider = user("cas-provider", UserRole.PROVIDER);
+        User customer2 = user("cas-other", UserRole.CUSTOMER);
+        ServiceRequest r = request(customer, vehicle(customer, 0), null);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        ServiceRequestResponse response = customerRequestService.assignProvider(customer.getId(), r.getId(), provider.getId());
+        assertEquals(2, stats.getPrepareStatementCount());
+        assertEquals(RequestStatus.WAITING_PROVIDER, response.getStatus());
+        assertEquals(provider.getId(), response.getProviderId());
+        assertEquals("P-0", response.getPlateNumber());
+
+        // already assigned, not PENDING any more
+        stats.clear();
+        assertThrows(IllegalStateException.class,
+                () -> customerRequestService.assignProvider(customer.getId(), r.getId(), provider.getId()));
+        assertEquals(1, stats.getPrepareStatementCount());
+
+        // someone else's request, and a "provider" that is a customer: the same UPDATE finds no row
+        ServiceRequest other = request(customer2, vehicle(customer2, 1), null);
+        entityManager.flush();
+        stats.clear();
+        assertThrows(IllegalStateException.class,
+                () -> customerRequestService.assignProvider(customer.getId(), other.getId(), provider.getId()));
+        assertThrows(IllegalStateException.class,
+                () -> customerRequestService.assignProvider(customer2.getId(), other.getId(), customer.getId()));
+        assertEquals(2, stats.getPrepareStatementCount());
+        assertEquals(RequestStatus.PENDING, requestRepository.findResponseById(other.getId()).orElseThrow().getStatus());
+    }
+
+    private User user(String name, UserRole role) {
+        User u = User.builder()
+                .firstName(name)
+                .lastName(name)
+                .email(name + "@test.local")
+                .phone(name)
+                .passwordHash("x")
+                .role(role)
+                .verified(true)
+                .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(u);
+        return u;
+    }
+
+    private Vehicle vehicle(User owner, int i) {
+        Vehicle v = new Vehicle();
+        v.setOwner(owner);
+        v.setPlateNumber("P-" + i);
+        v.setMake("Make");
+        v.setModel("Model");
+        v.setYear(2000 + i);
+        entityManager.persist(v);
+        return v;
+    }
+
+    private ServiceRequest request(User customer, Vehicle vehicle, User provider) {
+        ServiceRequest r = new ServiceRequest();
+        r.setCustomer(customer);
+        r.setVehicle(vehicle);
+        r.setProvider(provider);
+        r.setDescription("test");
+        r.setServiceType(ServiceType.values()[0]);
+        r.setLatitude(32.0);
+        r.setLongitude(35.0);
+        entityManager.persist(r);
+        return r;
+    }
+}
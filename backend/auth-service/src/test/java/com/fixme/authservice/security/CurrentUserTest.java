@@ -0,0 +1,55 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CurrentUserTest {
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // a token only acts for its own user id; admins for anyone
+    @Test
+    void pathIdMustMatchTheToken() {
+        signIn(7L, UserRole.CUSTOMER);
+        assertDoesNotThrow(() -> CurrentUser.requireSelf(7L));
+        assertThrows(AccessDeniedException.class, () -> CurrentUser.requireSelf(8L));
+        assertEquals(UserRole.CUSTOMER, CurrentUser.roleOf(7L));
+        assertThrows(AccessDeniedException.class, () -> CurrentUser.roleOf(8L));
+
+        assertDoesNotThrow(() -> CurrentUser.requireOneOf(3L, 7L));
+        assertThrows(AccessDeniedException.class, () -> CurrentUser.requireOneOf(3L, null));
+
+        signIn(1L, UserRole.ADMIN);
+        assertDoesNotThrow(() -> CurrentUser.requireSelf(8L));
+        assertDoesNotThrow(() -> CurrentUser.requireOneOf(3L, 4L));
+        // an admin acting for someone else: the role has to be looked up
+        assertNull(CurrentUser.roleOf(8L));
+    }
+
+    // without a token (auth.jwt.required=false) the old behaviour stays
+    @Test
+    void anonymousRequestsPass() {
+        assertDoesNotThrow(() -> CurrentUser.requireSelf(8L));
+        assertDoesNotThrow(() -> CurrentUser.requireOneOf(3L, 4L));
+        assertNull(CurrentUser.roleOf(8L));
+    }
+
+    private static void signIn(Long userId, UserRole role) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new AuthUser(userId, role), null, List.of()));
+    }
+}
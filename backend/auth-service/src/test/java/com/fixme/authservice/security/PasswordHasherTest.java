@@ -0,0 +1,81 @@
+package com.fixme.authservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        if (hasher != null) hasher.stop();
+    }
+
+    // one thread + one queue slot busy → the next caller is turned away with 503 instead of waiting
+    @Test
+    void rejectsWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+        };
+        hasher = new PasswordHasher(slow, registry, 4, 1, 1, 10_000);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("b"));
+        while (registry.get("auth.hash.queue.depth").gauge().value() < 1) Thread.sleep(5);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> hasher.encode("c"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1.0, registry.counter("auth.hash.rejected").count());
+
+        release.countDown();
+        assertTrue(slow.matches("a", running.get(5, TimeUnit.SECONDS)));
+        assertTrue(slow.matches("b", queued.get(5, TimeUnit.SECONDS)));
+        assertEquals(2, registry.get("auth.hash.latency").tag("stage", "run").timer().count());
+    }
+
+    // hashes of another cost than the configured one are flagged for rehash on login
+    @Test
+    void flagsHashesOfAnotherCost() {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(5), registry, 5, 1, 8, 10_000);
+
+        assertFalse(hasher.needsRehash(hasher.encode("secret")));
+        assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(6).encode("secret")));
+        assertTrue(hasher.matches("secret", new BCryptPasswordEncoder(4).encode("secret")));
+    }
+}
@@ -0,0 +1,165 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.service.ConversationParticipantCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stomp-auth;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ConversationParticipantCache.class)
+class StompAuthInterceptorTest {
+
+    private static final String SECRET = "THIS_IS_A_TEST_SECRET_OF_AT_LEAST_32_CHARACTERS";
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ConversationParticipantCache participants;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 3_600_000);
+
+    // CONNECT with a Bearer token puts the user on the session
+    @Test
+    void connectWithTokenSetsTheUser() {
+        StompAuthInterceptor interceptor = interceptor(false);
+
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.addNativeHeader("Authorization", "Bearer " + jwtUtil.generateToken(5L, UserRole.CUSTOMER));
+        Message<?> message = interceptor.preSend(message(connect), null);
+
+        assertEquals(new AuthUser(5L, UserRole.CUSTOMER), StompHeaderAccessor.wrap(message).getUser());
+        assertThrows(MessageDeliveryException.class, () ->
+                interceptor.preSend(message(StompHeaderAccessor.create(StompCommand.CONNECT)), null));
+    }
+
+    // a conversation topic is only for its customer, its provider and admins
+    @Test
+    void conversationTopicsNeedAParticipant() {
+        Conversation c = conversation("topic");
+        StompAuthInterceptor interceptor = interceptor(true);
+        String topic = "/topic/requests/" + c.getId();
+
+        AuthUser customer = new AuthUser(c.getCustomer().getId(), UserRole.CUSTOMER);
+        AuthUser provider = new AuthUser(c.getProvider().getId(), UserRole.PROVIDER);
+        AuthUser stranger = new AuthUser(c.getProvider().getId() + 1000, UserRole.PROVIDER);
+
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(topic, customer), null));
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(topic + "/persisted", provider), null));
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(topic, new AuthUser(1L, UserRole.ADMIN)), null));
+
+        assertThrows(MessageDeliveryException.class, () -> interceptor.preSend(subscribe(topic, stranger), null));
+        assertThrows(MessageDeliveryException.class, () -> interceptor.preSend(subscribe(topic, null), null));
+        assertThrows(MessageDeliveryException.class, () ->
+                interceptor.preSend(subscribe("/topic/requests/" + (c.getId() + 1000), customer), null));
+
+        // other topics stay open
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe("/topic/pending-requests/1", null), null));
+    }
+
+    private StompAuthInterceptor interceptor(boolean allowAnonymous) {
+        return new StompAuthInterceptor(new TokenAuthenticator(jwtUtil, new SimpleMeterRegistry(), 100),
+                participants, allowAnonymous);
+    }
+
+    private static Message<byte[]> subscribe(String destination, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        return message(accessor);
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Conversation conversation(String name) {
+        User customer = user(name + "-customer", UserRole.CUSTOMER);
+        User provider = user(name + "-provider", UserRole.PROVIDER);
+
+        Vehicle v = new Vehicle();
+        v.setOwner(customer);
+        v.setPlateNumber(name);
+        v.setMake("Make");
+        v.setModel("Model");
+        v.setYear(2000);
+        entityManager.persist(v);
+
+        ServiceRequest r = new ServiceRequest();
+        r.setCustomer(customer);
+        r.setVehicle(v);
+        r.setProvider(provider);
+        r.setDescription("test");
+        r.setServiceType(ServiceType.values()[0]);
+        r.setLatitude(32.0);
+        r.setLongitude(35.0);
+        entityManager.persist(r);
+
+        Conversation c = Conversation.builder()
+                .serviceRequest(r)
+                .customer(customer)
+                .provider(provider)
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(c);
+        entityManager.flush();
+        return c;
+    }
+
+    private User user(String name, UserRole role) {
+        User u = User.builder()
+                .firstName(name)
+                .lastName(name)
+                .email(name + "@test.local")
+                .phone(name)
+                .passwordHash("x")
+                .role(role)
+                .verified(true)
+                .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(u);
+        return u;
+    }
+}
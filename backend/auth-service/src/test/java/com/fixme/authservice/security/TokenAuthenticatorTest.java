@@ -0,0 +1,109 @@
+package com.fixme.authservice.security;
+
+import com.fixme.authservice.model.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenAuthenticatorTest {
+
+    private static final String SECRET = "THIS_IS_A_TEST_SECRET_OF_AT_LEAST_32_CHARACTERS";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 3_600_000);
+    private final TokenAuthenticator authenticator = new TokenAuthenticator(jwtUtil, registry, 100);
+
+    @Test
+    void verifiesOnceThenServesFromCache() {
+        String token = jwtUtil.generateToken(7L, UserRole.PROVIDER);
+
+        assertEquals(new AuthUser(7L, UserRole.PROVIDER), authenticator.authenticate(token));
+        assertEquals(new AuthUser(7L, UserRole.PROVIDER), authenticator.authenticate(token));
+
+        assertEquals(1.0, registry.get("auth.jwt.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(1.0, registry.get("auth.jwt.cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void rejectsForgedAndExpiredTokens() throws InterruptedException {
+        String forged = new JwtUtil("ANOTHER_SECRET_ALSO_AT_LEAST_32_CHARACTERS_LONG", 3_600_000)
+                .generateToken(1L, UserRole.ADMIN);
+        assertNull(authenticator.authenticate(forged));
+        assertNull(authenticator.authenticate("not-a-jwt"));
+
+        // cached while valid, not served from the cache after it expired
+        // (exp is whole seconds, rounded down: a 3 s token is valid for 2 to 3 s)
+        String shortLived = new JwtUtil(SECRET, 3_000).generateToken(2L, UserRole.CUSTOMER);
+        assertNotNull(authenticator.authenticate(shortLived));
+        Thread.sleep(3_100);
+        assertNull(authenticator.authenticate(shortLived));
+    }
+
+    // the same tokens verified by several threads at once: the cached path must beat parsing every time
+    @Test
+    void cachedVerificationIsFasterUnderConcurrency() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int tokens = 1_000;
+        int rounds = 20;
+        String[] issued = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            issued[i] = jwtUtil.generateToken((long) i, UserRole.CUSTOMER);
+        }
+        TokenAuthenticator cached = new TokenAuthenticator(jwtUtil, new SimpleMeterRegistry(), tokens);
+
+        // warm up both paths
+        for (String t : issued) {
+            jwtUtil.parseClaims(t);
+            cached.authenticate(t);
+        }
+
+        long parserNs = timed(threads, rounds, issued, jwtUtil::parseClaims);
+        long cachedNs = timed(threads, rounds, issued, cached::authenticate);
+
+        long total = (long) threads * tokens * rounds;
+        System.out.println("JWT verification, " + threads + " threads: parser " + (total * 1_000_000_000L / parserNs)
+                + " tokens/s, with cache " + (total * 1_000_000_000L / cachedNs) + " tokens/s");
+        assertTrue(cachedNs < parserNs, "cache " + cachedNs + " ns vs parser " + parserNs + " ns");
+    }
+
+    // every thread verifies every token `rounds` times; returns the wall time until all are done
+    private static long timed(int threads, int rounds, String[] tokens, Consumer<String> verify) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int offset = i * tokens.length / threads;
+            workers.add(pool.submit(() -> {
+                go.await();
+                for (int r = 0; r < rounds; r++) {
+                    for (int j = 0; j < tokens.length; j++) {
+                        verify.accept(tokens[(offset + j) % tokens.length]);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : workers) {
+            f.get(120, TimeUnit.SECONDS);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        pool.shutdown();
+        return elapsed;
+    }
+}
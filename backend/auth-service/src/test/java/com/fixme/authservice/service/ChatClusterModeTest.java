@@ -0,0 +1,180 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.model.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// chat.broker.mode=kafka: several nodes insert into the same chat_messages table
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chat-cluster;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "chat.broker.mode=kafka",
+        "chat.write-behind.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ChatService.class, ChatMessageWriter.class, RecentMessageCache.class, ConversationParticipantCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChatClusterModeTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // two nodes sending into one conversation at the same time never hand out the same id
+    @Test
+    void nodesSharingTheTableGetDistinctIds() throws Exception {
+        Conversation c = conversation("two-nodes");
+        ChatMessageWriter otherNode = writer(false);
+        otherNode.start();
+
+        int perNode = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<List<Long>> here = pool.submit(() -> send(perNode, m ->
+                chatService.sendMessage(c.getId(), c.getCustomer().getId(), UserRole.CUSTOMER, m).getId()));
+        Future<List<Long>> there = pool.submit(() -> send(perNode, m -> {
+            ChatMessageDto dto = ChatMessageDto.builder()
+                    .conversationId(c.getId())
+                    .senderId(c.getProvider().getId())
+                    .senderRole(UserRole.PROVIDER)
+                    .message(m)
+                    .sentAt(LocalDateTime.now())
+                    .build();
+            otherNode.submit(dto);
+            return dto.getId();
+        }));
+
+        Set<Long> ids = new HashSet<>(here.get(60, TimeUnit.SECONDS));
+        ids.addAll(there.get(60, TimeUnit.SECONDS));
+        pool.shutdown();
+        otherNode.stop();
+
+        // inserted before sendMessage returned: no flush, every id is already a row
+        assertEquals(2 * perNode, ids.size());
+        assertEquals(2 * perNode, chatService.getMessages(c.getId()).size());
+
+        // no per-node cache: the latest page includes what the other node sent
+        List<ChatMessageDto> latest = chatService.getMessages(c.getId(), 10, null, null).getItems();
+        assertEquals(chatService.getMessages(c.getId()).getLast().getId(), latest.getLast().getId());
+    }
+
+    // in-memory ids are only unique on one node
+    @Test
+    void writeBehindIsRefusedInClusterMode() {
+        assertThrows(IllegalStateException.class, () -> writer(true).start());
+    }
+
+    interface Send {
+        Long send(String message);
+    }
+
+    private static List<Long> send(int count, Send send) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(send.send("message " + i));
+        }
+        return ids;
+    }
+
+    private ChatMessageWriter writer(boolean writeBehind) {
+        return new ChatMessageWriter(jdbcTemplate, transactionManager, events,
+                writeBehind, "kafka", 200, 10, 1000, 2000, 10);
+    }
+
+    private Conversation conversation(String name) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            User customer = user(name + "-customer", UserRole.CUSTOMER);
+            User provider = user(name + "-provider", UserRole.PROVIDER);
+
+            Vehicle v = new Vehicle();
+            v.setOwner(customer);
+            v.setPlateNumber(name);
+            v.setMake("Make");
+            v.setModel("Model");
+            v.setYear(2000);
+            entityManager.persist(v);
+
+            ServiceRequest r = new ServiceRequest();
+            r.setCustomer(customer);
+            r.setVehicle(v);
+            r.setProvider(provider);
+            r.setDescription("test");
+            r.setServiceType(ServiceType.values()[0]);
+            r.setLatitude(32.0);
+            r.setLongitude(35.0);
+            entityManager.persist(r);
+
+            return chatService.getOrCreateConversation(r.getId());
+        });
+    }
+
+    private User user(String name, UserRole role) {
+        User u = User.builder()
+                .firstName(name)
+                .lastName(name)
+                .email(name + "@test.local")
+                .phone(name)
+                .passwordHash("x")
+                .role(role)
+                .verified(true)
+                .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(u);
+        return u;
+    }
+}
@@ -0,0 +1,204 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.repository.ChatMessageRepository;
+import com.fixme.authservice.repository.ConversationRepository;
+import com.fixme.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// own database: the old path below inserts with IDENTITY, which must not meet the writer's ids in ChatServiceTest
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chatload;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ChatService.class, ChatMessageWriter.class, RecentMessageCache.class, ConversationParticipantCache.class})
+// messages are inserted by the writer thread in its own transactions, so the test does not wrap one around it
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChatMessageWriterLoadTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatMessageWriter chatMessageWriter;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // messages/s of the old send path (transaction + two lookups + IDENTITY insert per message)
+    // against the write-behind path; printed, not asserted: it depends on the machine
+    @Test
+    void sendThroughput() throws Exception {
+        int senders = 8;
+        int perSender = 500;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<Conversation> after = conversations("after", senders);
+        long writeBehind = send(after, perSender, (c, i) ->
+                chatService.sendMessage(c.getId(), c.getCustomer().getId(), UserRole.CUSTOMER, "load"));
+
+        // before: what sendMessage did until now. Runs second: its IDENTITY inserts continue after the
+        // writer's ids, the other way round the writer (seeded at startup) would run into them
+        List<Conversation> before = conversations("before", senders);
+        long perMessageTx = send(before, perSender, (c, i) ->
+                tx.executeWithoutResult(status -> chatMessageRepository.save(ChatMessage.builder()
+                        .conversation(conversationRepository.findById(c.getId()).orElseThrow())
+                        .sender(userRepository.findById(c.getCustomer().getId()).orElseThrow())
+                        .senderRole(UserRole.CUSTOMER)
+                        .message("load")
+                        .sentAt(LocalDateTime.now())
+                        .build())));
+
+        for (Conversation c : after) {
+            assertEquals(perSender, chatService.getMessages(c.getId()).size());
+        }
+
+        System.out.println("Chat send, " + senders * perSender + " messages from " + senders + " senders: "
+                + "transaction per message = " + perMessageTx + " msg/s, write-behind = " + writeBehind + " msg/s");
+    }
+
+    interface Send {
+        void send(Conversation c, int i);
+    }
+
+    // one thread per conversation sending perConversation messages; returns messages/s until all are committed
+    private long send(List<Conversation> cs, int perConversation, Send send) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(cs.size());
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> senders = new ArrayList<>();
+        for (Conversation c : cs) {
+            senders.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < perConversation; i++) {
+                    send.send(c, i);
+                }
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : senders) {
+            f.get(120, TimeUnit.SECONDS);
+        }
+        chatMessageWriter.flush();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        pool.shutdown();
+
+        return cs.size() * perConversation * 1000L / elapsedMs;
+    }
+
+    private List<Conversation> conversations(String prefix, int count) {
+        List<Conversation> cs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cs.add(conversation(prefix + "-" + i, 0));
+        }
+        return cs;
+    }
+
+    private Conversation conversation(String name, int messages) {
+        Conversation c = new TransactionTemplate(transactionManager).execute(status -> {
+            User customer = user(name + "-customer", UserRole.CUSTOMER);
+            User provider = user(name + "-provider", UserRole.PROVIDER);
+
+            Vehicle v = new Vehicle();
+            v.setOwner(customer);
+            v.setPlateNumber(name);
+            v.setMake("Make");
+            v.setModel("Model");
+            v.setYear(2000);
+            entityManager.persist(v);
+
+            ServiceRequest r = new ServiceRequest();
+            r.setCustomer(customer);
+            r.setVehicle(v);
+            r.setProvider(provider);
+            r.setDescription("test");
+            r.setServiceType(ServiceType.values()[0]);
+            r.setLatitude(32.0);
+            r.setLongitude(35.0);
+            entityManager.persist(r);
+
+            return chatService.getOrCreateConversation(r.getId());
+        });
+
+        for (int i = 0; i < messages; i++) {
+            boolean fromCustomer = i % 2 == 0;
+            chatService.sendMessage(c.getId(),
+                    fromCustomer ? c.getCustomer().getId() : c.getProvider().getId(),
+                    fromCustomer ? UserRole.CUSTOMER : UserRole.PROVIDER,
+                    "message " + i);
+        }
+        chatMessageWriter.flush();
+        return c;
+    }
+
+    private User user(String name, UserRole role) {
+        User u = User.builder()
+                .firstName(name)
+                .lastName(name)
+                .email(name + "@test.local")
+                .phone(name)
+                .passwordHash("x")
+                .role(role)
+                .verified(true)
+                .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(u);
+        return u;
+    }
+}
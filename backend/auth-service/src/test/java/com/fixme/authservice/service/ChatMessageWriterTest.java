@@ -0,0 +1,145 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.model.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the writer under test is built by hand on a JdbcTemplate whose chat_messages inserts always fail
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chatwriter;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChatMessageWriterTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    private ChatMessageWriter writer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) writer.stop();
+        new JdbcTemplate(dataSource).update("delete from chat_dead_letters");
+    }
+
+    // the database refusing a batch max-attempts times dead-letters it, and later messages still get through
+    // the writer instead of waiting behind it
+    @Test
+    void failingBatchIsDeadLetteredAfterMaxAttempts() throws Exception {
+        writer = writer(1000, 1000, 3);
+        writer.start();
+
+        ChatMessageDto first = message("first");
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> writer.submit(first).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TransientDataAccessResourceException.class, e.getCause());
+
+        ChatMessageDto second = message("second");
+        assertThrows(ExecutionException.class, () -> writer.submit(second).get(10, TimeUnit.SECONDS));
+
+        List<String> deadLetters = new JdbcTemplate(dataSource).queryForList(
+                "select concat(message_id, ':', message, ':', attempts) from chat_dead_letters order by message_id",
+                String.class);
+        assertEquals(List.of(first.getId() + ":first:3", second.getId() + ":second:3"), deadLetters);
+    }
+
+    // senders waiting for room wait side by side: one waiting offer-timeout-ms does not hold the others
+    @Test
+    void sendersWaitForRoomWithoutTheLock() throws Exception {
+        writer = writer(1, 1000, 1000);
+        writer.start();
+        // the writer keeps retrying this one, its slot stays taken
+        writer.submit(message("stuck"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        long start = System.nanoTime();
+        Future<?> a = pool.submit(() -> writer.submit(message("a")));
+        Future<?> b = pool.submit(() -> writer.submit(message("b")));
+        for (Future<?> f : List.of(a, b)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(10, TimeUnit.SECONDS));
+            assertEquals("Chat is busy, try again", e.getCause().getMessage());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+
+        assertTrue(elapsedMs < 1800, "both gave up after one timeout, not one after the other: " + elapsedMs + " ms");
+    }
+
+    private ChatMessageWriter writer(int queueCapacity, long offerTimeoutMs, int maxAttempts) {
+        return new ChatMessageWriter(new DownTemplate(dataSource), transactionManager, events,
+                true, "local", 200, 10, queueCapacity, offerTimeoutMs, maxAttempts);
+    }
+
+    private static ChatMessageDto message(String text) {
+        return ChatMessageDto.builder()
+                .conversationId(1L)
+                .senderId(1L)
+                .senderRole(UserRole.CUSTOMER)
+                .message(text)
+                .sentAt(LocalDateTime.now())
+                .build();
+    }
+
+    // chat_messages is unreachable, everything else (dead letters included) works
+    private static final class DownTemplate extends JdbcTemplate {
+        DownTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (sql.contains("into chat_messages")) {
+                throw new TransientDataAccessResourceException("database down");
+            }
+            return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ChatMessageDto;
+import com.fixme.authservice.dto.ChatMessagePage;
+import com.fixme.authservice.dto.ConversationSummaryDto;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.security.AuthUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chat;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ChatService.class, ChatMessageWriter.class, RecentMessageCache.class, ConversationParticipantCache.class})
+// messages are inserted by the writer thread in its own transactions, so the test does not wrap one around it
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChatServiceTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatMessageWriter chatMessageWriter;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // scrolling back page by page returns the same messages as loading the whole conversation
+    @Test
+    void beforePagesCoverTheWholeConversation() {
+        Conversation c = conversation("pages", 37);
+
+        List<Long> all = ids(chatService.getMessages(c.getId()));
+
+        List<Long> paged = new ArrayList<>();
+        ChatMessagePage page = chatService.getMessages(c.getId(), 10, null, null);
+        paged.addAll(0, ids(page.getItems()));
+        while (page.getNextCursor() != null) {
+            page = chatService.getMessages(c.getId(), 10, Long.parseLong(page.getNextCursor()), null);
+            paged.addAll(0, ids(page.getItems()));
+        }
+
+        assertEquals(37, all.size());
+        assertEquals(all, paged);
+    }
+
+    // a reconnecting client gets only what came after its last id, and opening costs the same for any length
+    @Test
+    void sinceReturnsOnlyMissedMessages() {
+        Conversation c = conversation("since", 300);
+        List<Long> all = ids(chatService.getMessages(c.getId()));
+        long lastSeen = all.get(294);
+
+        ChatMessagePage missed = chatService.getMessagesSince(c.getId(), lastSeen, null);
+        assertEquals(all.subList(295, 300), ids(missed.getItems()));
+        assertNull(missed.getNextCursor());
+
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        ChatMessagePage latest = chatService.getMessages(c.getId(), 20, null, null);
+        assertEquals(all.subList(280, 300), ids(latest.getItems()));
+        assertEquals(all.get(280).toString(), latest.getNextCursor());
+        // participants are cached since the sends: the page itself is the only query
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    // once seeded, the latest page and "since" come from memory, including messages sent afterwards
+    @Test
+    void recentMessagesAreServedFromMemory() {
+        Conversation c = conversation("recent", 120);
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        ChatMessagePage first = chatService.getMessages(c.getId(), 30, null, null);
+
+        stats.clear();
+        ChatMessagePage again = chatService.getMessages(c.getId(), 30, null, null);
+        assertEquals(0, stats.getPrepareStatementCount());
+        assertEquals(ids(first.getItems()), ids(again.getItems()));
+        assertEquals(first.getNextCursor(), again.getNextCursor());
+
+        // not flushed: the writer may not have inserted it yet, the cache already has it
+        ChatMessageDto sent = chatService.sendMessage(c.getId(), c.getCustomer().getId(), UserRole.CUSTOMER, "new");
+        long lastSeen = first.getItems().get(first.getItems().size() - 1).getId();
+
+        stats.clear();
+        ChatMessagePage missed = chatService.getMessagesSince(c.getId(), lastSeen, null);
+        ChatMessagePage latest = chatService.getMessages(c.getId(), 30, null, null);
+        assertEquals(0, stats.getPrepareStatementCount());
+        assertEquals(List.of(sent.getId()), ids(missed.getItems()));
+        assertEquals(sent.getId(), latest.getItems().get(29).getId());
+
+        // older history continues from the cached page's cursor in the database
+        chatMessageWriter.flush();
+        List<Long> all = ids(chatService.getMessages(c.getId()));
+        ChatMessagePage older = chatService.getMessages(c.getId(), 30, Long.parseLong(latest.getNextCursor()), null);
+        assertEquals(all.subList(61, 91), ids(older.getItems()));
+    }
+
+    // sending checks the sender against the cached participants: no query on the send path
+    @Test
+    void sendValidatesParticipantsWithoutQueries() {
+        Conversation c = conversation("participants", 1);
+        Conversation other = conversation("outsider", 0);
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        ChatMessageDto sent = chatService.sendMessage(c.getId(), c.getProvider().getId(), null, "hi");
+        assertEquals(0, stats.getPrepareStatementCount());
+        assertEquals(UserRole.PROVIDER, sent.getSenderRole());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                chatService.sendMessage(c.getId(), other.getCustomer().getId(), UserRole.CUSTOMER, "hi"));
+        assertThrows(IllegalArgumentException.class, () ->
+                chatService.sendMessage(c.getId(), c.getCustomer().getId(), UserRole.PROVIDER, "hi"));
+        assertThrows(IllegalArgumentException.class, () ->
+                chatService.sendMessage(-1L, c.getCustomer().getId(), UserRole.CUSTOMER, "hi"));
+    }
+
+    // conversation list: one statement, most recent first, unread counted after each user's read cursor
+    @Test
+    void inboxListsLastMessageAndUnreadCounts() {
+        Conversation first = conversation("inbox", 0);
+        Long customerId = first.getCustomer().getId();
+        Long providerId = first.getProvider().getId();
+        Conversation second = secondConversation(first.getCustomer(), "inbox-other");
+
+        chatService.sendMessage(first.getId(), customerId, UserRole.CUSTOMER, "hi");
+        ChatMessageDto p1 = chatService.sendMessage(first.getId(), providerId, UserRole.PROVIDER, "on my way");
+        chatService.sendMessage(first.getId(), providerId, UserRole.PROVIDER, "5 minutes");
+        chatService.sendMessage(second.getId(), second.getProvider().getId(), UserRole.PROVIDER, "quote: 200");
+        chatMessageWriter.flush();
+
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        List<ConversationSummaryDto> inbox = chatService.getConversations(customerId, UserRole.CUSTOMER, null);
+        assertEquals(1, stats.getPrepareStatementCount());
+
+        assertEquals(List.of(second.getId(), first.getId()), inbox.stream().map(ConversationSummaryDto::getId).toList());
+        assertEquals("quote: 200", inbox.get(0).getLastMessagePreview());
+        assertEquals(1L, inbox.get(0).getUnreadCount());
+        assertEquals("5 minutes", inbox.get(1).getLastMessagePreview());
+        assertEquals(2L, inbox.get(1).getUnreadCount());
+
+        chatService.markRead(first.getId(), customerId, p1.getId());
+        chatService.markRead(first.getId(), customerId, p1.getId() - 1); // never moves back
+        assertEquals(1L, chatService.getConversations(customerId, UserRole.CUSTOMER, null).get(1).getUnreadCount());
+
+        List<ConversationSummaryDto> providerInbox = chatService.getConversations(providerId, UserRole.PROVIDER, null);
+        assertEquals(1, providerInbox.size());
+        assertEquals(1L, providerInbox.get(0).getUnreadCount());
+    }
+
+    // the counter on the cursor (+1 per message, recount on markRead) always equals counting the messages,
+    // also with reads of messages the writer has not inserted yet
+    @Test
+    void unreadCounterMatchesACount() {
+        Conversation c = conversation("counter", 0);
+        Long customerId = c.getCustomer().getId();
+        Long providerId = c.getProvider().getId();
+        Random random = new Random(4);
+
+        for (int i = 0; i < 200; i++) {
+            boolean fromCustomer = random.nextBoolean();
+            ChatMessageDto m = chatService.sendMessage(c.getId(), fromCustomer ? customerId : providerId, null, "m" + i);
+            if (random.nextInt(10) == 0) {
+                chatService.markRead(c.getId(), fromCustomer ? providerId : customerId, m.getId());
+            }
+            if (random.nextInt(25) == 0) chatMessageWriter.flush();
+        }
+        chatMessageWriter.flush();
+
+        assertEquals(countUnread(c.getId(), customerId),
+                chatService.getConversations(customerId, UserRole.CUSTOMER, null).get(0).getUnreadCount());
+        assertEquals(countUnread(c.getId(), providerId),
+                chatService.getConversations(providerId, UserRole.PROVIDER, null).get(0).getUnreadCount());
+    }
+
+    // first reads at the same time (cursor not there yet) upsert one row, which keeps the furthest read
+    @Test
+    void concurrentFirstReadsUpsertOneCursor() throws Exception {
+        Conversation c = conversation("first-read", 6);
+        Long customerId = c.getCustomer().getId();
+        List<Long> ids = ids(chatService.getMessages(c.getId()));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        for (int round = 0; round < 20; round++) {
+            jdbcTemplate.update("delete from conversation_read_cursors where conversation_id = ?", c.getId());
+            CountDownLatch go = new CountDownLatch(1);
+            Future<?> a = pool.submit(() -> {
+                go.await();
+                chatService.markRead(c.getId(), customerId, ids.get(2));
+                return null;
+            });
+            Future<?> b = pool.submit(() -> {
+                go.await();
+                chatService.markRead(c.getId(), customerId, ids.get(4));
+                return null;
+            });
+            go.countDown();
+            a.get(10, TimeUnit.SECONDS);
+            b.get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of(ids.get(4)), jdbcTemplate.queryForList(
+                    "select last_read_message_id from conversation_read_cursors where conversation_id = ? and user_id = ?",
+                    Long.class, c.getId(), customerId));
+        }
+        pool.shutdown();
+        // message 5 is from the provider
+        assertEquals(1L, chatService.getConversations(customerId, UserRole.CUSTOMER, null).get(0).getUnreadCount());
+    }
+
+    // conversations from before the counter: cursors created and counted at startup
+    @Test
+    void backfillCountsConversationsFromBefore() {
+        Conversation c = conversation("legacy", 7);
+        jdbcTemplate.update("delete from conversation_read_cursors where conversation_id = ?", c.getId());
+
+        chatMessageWriter.backfill();
+
+        assertEquals(3L, chatService.getConversations(c.getCustomer().getId(), UserRole.CUSTOMER, null)
+                .get(0).getUnreadCount());
+        assertEquals(4L, chatService.getConversations(c.getProvider().getId(), UserRole.PROVIDER, null)
+                .get(0).getUnreadCount());
+    }
+
+    // a conversation opened before a provider was assigned opens again for its customer, others get a 403
+    @Test
+    void conversationWithoutProviderOpensAgain() {
+        Conversation c = new TransactionTemplate(transactionManager).execute(status -> {
+            User customer = user("no-provider-customer", UserRole.CUSTOMER);
+            ServiceRequest r = request(customer, vehicle(customer, "no-provider"), null);
+            return chatService.getOrCreateConversation(r.getId());
+        });
+        Long requestId = c.getServiceRequest().getId();
+        Long customerId = c.getCustomer().getId();
+
+        try {
+            signIn(customerId, UserRole.CUSTOMER);
+            assertEquals(c.getId(), chatService.getOrCreateConversation(requestId).getId());
+            List<ConversationSummaryDto> inbox = chatService.getConversations(customerId, UserRole.CUSTOMER, null);
+            assertEquals(List.of(c.getId()), inbox.stream().map(ConversationSummaryDto::getId).toList());
+            assertNull(inbox.get(0).getProviderId());
+
+            signIn(customerId + 1000, UserRole.PROVIDER);
+            assertThrows(AccessDeniedException.class, () -> chatService.getOrCreateConversation(requestId));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // messages of one conversation are stored in the order they were sent, whatever the interleaving
+    @Test
+    void writerKeepsPerConversationOrder() throws Exception {
+        int perConversation = 250;
+        List<Conversation> cs = conversations("order", 8);
+
+        send(cs, perConversation, (c, i) ->
+                chatService.sendMessage(c.getId(), c.getCustomer().getId(), UserRole.CUSTOMER, Integer.toString(i)));
+
+        List<String> expected = IntStream.range(0, perConversation).mapToObj(Integer::toString).toList();
+        for (Conversation c : cs) {
+            assertEquals(expected, chatService.getMessages(c.getId()).stream().map(ChatMessageDto::getMessage).toList());
+        }
+    }
+
+    interface Send {
+        void send(Conversation c, int i);
+    }
+
+    // one thread per conversation sending perConversation messages; returns messages/s until all are committed
+    private long send(List<Conversation> cs, int perConversation, Send send) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(cs.size());
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> senders = new ArrayList<>();
+        for (Conversation c : cs) {
+            senders.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < perConversation; i++) {
+                    send.send(c, i);
+                }
+                return null;
+            }));
+        }
+
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : senders) {
+            f.get(120, TimeUnit.SECONDS);
+        }
+        chatMessageWriter.flush();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        pool.shutdown();
+
+        return cs.size() * perConversation * 1000L / elapsedMs;
+    }
+
+    private List<Conversation> conversations(String prefix, int count) {
+        List<Conversation> cs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cs.add(conversation(prefix + "-" + i, 0));
+        }
+        return cs;
+    }
+
+    private Conversation conversation(String name, int messages) {
+        Conversation c = new TransactionTemplate(transactionManager).execute(status -> {
+            User customer = user(name + "-customer", UserRole.CUSTOMER);
+            User provider = user(name + "-provider", UserRole.PROVIDER);
+            ServiceRequest r = request(customer, vehicle(customer, name), provider);
+            return chatService.getOrCreateConversation(r.getId());
+        });
+
+        for (int i = 0; i < messages; i++) {
+            boolean fromCustomer = i % 2 == 0;
+            chatService.sendMessage(c.getId(),
+                    fromCustomer ? c.getCustomer().getId() : c.getProvider().getId(),
+                    fromCustomer ? UserRole.CUSTOMER : UserRole.PROVIDER,
+                    "message " + i);
+        }
+        chatMessageWriter.flush();
+        return c;
+    }
+
+    // caller runs inside a transaction
+    private Vehicle vehicle(User owner, String plate) {
+        Vehicle v = new Vehicle();
+        v.setOwner(owner);
+        v.setPlateNumber(plate);
+        v.setMake("Make");
+        v.setModel("Model");
+        v.setYear(2000);
+        entityManager.persist(v);
+        return v;
+    }
+
+    // caller runs inside a transaction; provider may be null (not assigned yet)
+    private ServiceRequest request(User customer, Vehicle v, User provider) {
+        ServiceRequest r = new ServiceRequest();
+        r.setCustomer(customer);
+        r.setVehicle(v);
+        r.setProvider(provider);
+        r.setDescription("test");
+        r.setServiceType(ServiceType.values()[0]);
+        r.setLatitude(32.0);
+        r.setLongitude(35.0);
+        entityManager.persist(r);
+        return r;
+    }
+
+    // another request of the same customer, with a new provider
+    private Conversation secondConversation(User customer, String name) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            User provider = user(name + "-provider", UserRole.PROVIDER);
+
+            ServiceRequest r = new ServiceRequest();
+            r.setCustomer(entityManager.getReference(User.class, customer.getId()));
+            r.setVehicle(entityManager.createQuery("select v from Vehicle v where v.owner.id = :id", Vehicle.class)
+                    .setParameter("id", customer.getId()).getSingleResult());
+            r.setProvider(provider);
+            r.setDescription("test");
+            r.setServiceType(ServiceType.values()[0]);
+            r.setLatitude(32.0);
+            r.setLongitude(35.0);
+            entityManager.persist(r);
+
+            return chatService.getOrCreateConversation(r.getId());
+        });
+    }
+
+    private User user(String name, UserRole role) {
+        User u = User.builder()
+                .firstName(name)
+                .lastName(name)
+                .email(name + "@test.local")
+                .phone(name)
+                .passwordHash("x")
+                .role(role)
+                .verified(true)
+                .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                .createdAt(LocalDateTime.now())
+                .build();
+        entityManager.persist(u);
+        return u;
+    }
+
+    private static void signIn(Long userId, UserRole role) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new AuthUser(userId, role), null, List.of()));
+    }
+
+    private long countUnread(Long conversationId, Long userId) {
+        return jdbcTemplate.queryForObject("""
+                select count(*) from chat_messages m
+                where m.conversation_id = ? and m.sender_id <> ?
+                  and m.id > coalesce((select rc.last_read_message_id from conversation_read_cursors rc
+                                       where rc.conversation_id = m.conversation_id and rc.user_id = ?), 0)
+                """, Long.class, conversationId, userId, userId);
+    }
+
+    private static List<Long> ids(List<ChatMessageDto> messages) {
+        return messages.stream().map(ChatMessageDto::getId).toList();
+    }
+}
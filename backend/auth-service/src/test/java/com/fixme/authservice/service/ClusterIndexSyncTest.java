@@ -0,0 +1,301 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.NearbyRequestResponse;
+import com.fixme.authservice.dto.ProviderBusinessRequest;
+import com.fixme.authservice.dto.RequestStatusDelta;
+import com.fixme.authservice.dto.ServiceRequestCreateRequest;
+import com.fixme.authservice.dto.VehicleRequest;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.repository.ProviderBusinessRepository;
+import com.fixme.authservice.repository.ServiceRequestRepository;
+import com.fixme.authservice.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.kafka.autoconfigure.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// chat.broker.mode=kafka: node A is this context, node B has its own indexes and SSE stream on the same
+// database, both relaying through an embedded Kafka broker. What A commits must show up on B.
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster-sync;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "chat.broker.mode=kafka",
+        "chat.broker.kafka.sync-topic=" + ClusterIndexSyncTest.TOPIC
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration({KafkaAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({ClusterIndexSync.class, ProviderService.class, ProviderSpatialIndex.class, PendingRequestIndex.class,
+        RequestStatusStream.class, CustomerRequestService.class, CustomerService.class})
+@EmbeddedKafka(partitions = 1)
+// the services commit on their own, like a real request
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClusterIndexSyncTest {
+
+    static final String TOPIC = "cluster-sync-test";
+
+    private static final double LAT = 32.0;
+    private static final double LNG = 35.0;
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private CustomerRequestService customerRequestService;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ProviderBusinessRepository businessRepository;
+
+    @Autowired
+    private ServiceRequestRepository requestRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private ConsumerFactory<?, ?> consumerFactory;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ProviderSpatialIndex indexB;
+    private NearbyResultCache cacheB;
+    private PendingRequestIndex pendingB;
+    private RequestStatusStream streamB;
+    private ClusterIndexSync nodeB;
+
+    private static int users = 0;
+
+    @BeforeEach
+    void startNodeB() {
+        indexB = new ProviderSpatialIndex(businessRepository, 0);
+        cacheB = new NearbyResultCache(indexB, new SimpleMeterRegistry(), 2048, 60_000);
+        pendingB = new PendingRequestIndex(requestRepository);
+        streamB = new RequestStatusStream(10_000);
+        nodeB = new ClusterIndexSync(kafkaTemplate, consumerFactory, kafkaAdmin, jsonMapper,
+                indexB, pendingB, streamB, requestRepository, vehicleRepository, TOPIC);
+        nodeB.start();
+    }
+
+    @AfterEach
+    void stopNodeB() throws InterruptedException {
+        nodeB.stop();
+        streamB.shutdown();
+        indexB.stop();
+    }
+
+    // a provider saved on A is found on B, and moving it evicts B's cached candidates around the old place
+    @Test
+    void providerChangesReachTheOtherNode() {
+        Long userId = user(UserRole.PROVIDER);
+        Long businessId = providerService.createOrUpdateBusiness(userId, business(LAT, LNG)).getId();
+
+        await(() -> ids(indexB.withinRadius(LAT, LNG, 5, VehicleCategory.GERMAN, ServiceType.TIRES)).contains(businessId));
+        assertEquals(List.of(businessId), ids(cacheB.candidates(LAT, LNG, 5, VehicleCategory.GERMAN, ServiceType.TIRES)));
+
+        providerService.createOrUpdateBusiness(userId, business(LAT + 1, LNG));
+
+        await(() -> cacheB.candidates(LAT, LNG, 5, VehicleCategory.GERMAN, ServiceType.TIRES).isEmpty());
+        assertEquals(List.of(businessId),
+                ids(indexB.withinRadius(LAT + 1, LNG, 5, VehicleCategory.GERMAN, ServiceType.TIRES)));
+    }
+
+    // a request created on A is nearby on B, follows vehicle edits, and leaves B when a provider is assigned
+    @Test
+    void pendingRequestsReachTheOtherNode() {
+        Long customerId = user(UserRole.CUSTOMER);
+        Long providerId = user(UserRole.PROVIDER);
+        Long vehicleId = vehicle(customerId);
+        Long requestId = customerRequestService.createRequest(customerId, request(vehicleId)).getId();
+
+        await(() -> pendingB.nearby(LAT, LNG, 10).stream().anyMatch(r -> r.getId().equals(requestId)));
+
+        VehicleRequest edit = new VehicleRequest();
+        edit.setPlateNumber("EDITED-" + vehicleId);
+        edit.setMake("Make");
+        edit.setModel("Model");
+        edit.setYear(2020);
+        customerService.updateVehicle(customerId, vehicleId, edit);
+        await(() -> pendingB.nearby(LAT, LNG, 10).stream()
+                .filter(r -> r.getId().equals(requestId))
+                .map(NearbyRequestResponse::getPlateNumber)
+                .anyMatch(("EDITED-" + vehicleId)::equals));
+
+        customerRequestService.assignProvider(customerId, requestId, providerId);
+        await(() -> pendingB.nearby(LAT, LNG, 10).stream().noneMatch(r -> r.getId().equals(requestId)));
+    }
+
+    // a customer streaming from B sees the status changes committed on A, in order
+    @Test
+    void statusChangesReachSseOnTheOtherNode() throws InterruptedException {
+        Long customerId = user(UserRole.CUSTOMER);
+        Long providerId = user(UserRole.PROVIDER);
+        Long vehicleId = vehicle(customerId);
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        streamB.subscribe(customerId, null, emitter);
+
+        Long requestId = customerRequestService.createRequest(customerId, request(vehicleId)).getId();
+        customerRequestService.assignProvider(customerId, requestId, providerId);
+
+        RequestStatusDelta created = emitter.next();
+        assertEquals(requestId, created.getRequestId());
+        assertEquals(RequestStatus.PENDING, created.getStatus());
+
+        RequestStatusDelta assigned = emitter.next();
+        assertEquals(RequestStatus.WAITING_PROVIDER, assigned.getStatus());
+        assertEquals(RequestStatus.PENDING, assigned.getPreviousStatus());
+        assertEquals(providerId, assigned.getProviderId());
+    }
+
+    private static List<Long> ids(List<ProviderSpatialIndex.Entry> entries) {
+        return entries.stream().map(ProviderSpatialIndex.Entry::businessId).toList();
+    }
+
+    private static ProviderBusinessRequest business(double lat, double lng) {
+        ProviderBusinessRequest request = new ProviderBusinessRequest();
+        request.setBusinessName("Garage");
+        request.setCity("Haifa");
+        request.setAddress("Main 1");
+        request.setLatitude(lat);
+        request.setLongitude(lng);
+        // mutable, like the ones Jackson builds: the second save merges into them
+        request.setCategories(new HashSet<>(Set.of(VehicleCategory.ALL)));
+        request.setOfferedServices(new HashSet<>(Set.of(ServiceType.TIRES)));
+        return request;
+    }
+
+    private static ServiceRequestCreateRequest request(Long vehicleId) {
+        ServiceRequestCreateRequest request = new ServiceRequestCreateRequest();
+        request.setVehicleId(vehicleId);
+        request.setDescription("flat tire");
+        request.setLatitude(LAT);
+        request.setLongitude(LNG + 0.01);
+        request.setServiceType(ServiceType.TIRES);
+        return request;
+    }
+
+    private Long user(UserRole role) {
+        int n = users++;
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            User u = User.builder()
+                    .firstName("u")
+                    .lastName("u")
+                    .email("cluster-" + n + "@test.local")
+                    .phone("cluster-" + n)
+                    .passwordHash("x")
+                    .role(role)
+                    .verified(true)
+                    .providerApprovalStatus(role == UserRole.PROVIDER
+                            ? ProviderApprovalStatus.APPROVED : ProviderApprovalStatus.NOT_PROVIDER)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            entityManager.persist(u);
+            return u.getId();
+        });
+    }
+
+    private Long vehicle(Long ownerId) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Vehicle v = new Vehicle();
+            v.setOwner(entityManager.getReference(User.class, ownerId));
+            v.setPlateNumber("P-" + ownerId);
+            v.setMake("Make");
+            v.setModel("Model");
+            v.setYear(2020);
+            entityManager.persist(v);
+            return v.getId();
+        });
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // keeps the status deltas instead of writing to a response
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<RequestStatusDelta> deltas = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof RequestStatusDelta d) deltas.add(d);
+            }
+        }
+
+        RequestStatusDelta next() throws InterruptedException {
+            RequestStatusDelta d = deltas.poll(15, TimeUnit.SECONDS);
+            assertNotNull(d, "no status event");
+            return d;
+        }
+    }
+}
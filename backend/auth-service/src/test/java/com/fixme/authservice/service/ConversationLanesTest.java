@@ -0,0 +1,90 @@
+package com.fixme.authservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationLanesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConversationLanes lanes = new ConversationLanes(registry, 4, 10_000);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        lanes.stop();
+    }
+
+    // tasks of one conversation run in dispatch order, even when many conversations are dispatched at once
+    @Test
+    void keepsOrderPerConversation() throws Exception {
+        int conversations = 32;
+        int perConversation = 200;
+        Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(conversations * perConversation);
+
+        // one dispatching thread per conversation, like one STOMP session per chat
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        for (long c = 1; c <= conversations; c++) {
+            long conversationId = c;
+            seen.put(conversationId, Collections.synchronizedList(new ArrayList<>()));
+            senders.submit(() -> {
+                for (int i = 0; i < perConversation; i++) {
+                    int seq = i;
+                    lanes.dispatch(conversationId, () -> {
+                        seen.get(conversationId).add(seq);
+                        done.countDown();
+                    });
+                }
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        senders.shutdown();
+
+        List<Integer> expected = IntStream.range(0, perConversation).boxed().toList();
+        seen.values().forEach(seqs -> assertEquals(expected, seqs));
+        // the run time is recorded after the task returns: let the lanes finish first
+        lanes.stop();
+        assertEquals(conversations * perConversation,
+                registry.get("chat.lanes.latency").tag("stage", "run").timer().count());
+    }
+
+    // a stuck conversation holds only its own lane
+    @Test
+    void busyConversationDoesNotBlockOthers() throws Exception {
+        long busy = 1;
+        long other = 2;
+        while (lanes.laneOf(other) == lanes.laneOf(busy)) other++;
+        assertNotEquals(lanes.laneOf(busy), lanes.laneOf(other));
+
+        CountDownLatch release = new CountDownLatch(1);
+        lanes.dispatch(busy, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        CountDownLatch ran = new CountDownLatch(1);
+        lanes.dispatch(other, ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+    }
+}
@@ -0,0 +1,194 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.config.LocalSubscriptions;
+import com.fixme.authservice.model.UserRole;
+import com.fixme.authservice.security.AuthUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.kafka.autoconfigure.KafkaAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// two application contexts = two auth-service nodes, each with its own "simple broker" (a recording channel),
+// talking through an embedded Kafka broker
+@EmbeddedKafka(partitions = 1)
+class KafkaTopicPublisherTest {
+
+    private static final String CHAT_1 = "/topic/requests/1";
+    private static final String CHAT_2 = "/topic/requests/2";
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({KafkaAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import({KafkaTopicPublisher.class, LocalSubscriptions.class})
+    static class Node {
+        @Bean
+        RecordingChannel brokerChannel() {
+            return new RecordingChannel();
+        }
+
+        @Bean
+        SimpMessagingTemplate messagingTemplate(RecordingChannel brokerChannel) {
+            return new SimpMessagingTemplate(brokerChannel);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    // what this node's broker would have sent to its subscribers
+    static class RecordingChannel implements MessageChannel {
+        final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean send(Message<?> message, long timeout) {
+            sent.add(message);
+            return true;
+        }
+
+        List<String> bodiesFor(String destination) {
+            return sent.stream()
+                    .filter(m -> destination.equals(SimpMessageHeaderAccessor.getDestination(m.getHeaders())))
+                    // relayed messages arrive as JSON bytes, local ones as the object itself (no converter here)
+                    .map(m -> m.getPayload() instanceof byte[] bytes
+                            ? new String(bytes, StandardCharsets.UTF_8)
+                            : m.getPayload().toString())
+                    .toList();
+        }
+    }
+
+    private ConfigurableApplicationContext a;
+    private ConfigurableApplicationContext b;
+
+    @BeforeEach
+    void startNodes(EmbeddedKafkaBroker broker) {
+        a = node(broker);
+        b = node(broker);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        a.close();
+        b.close();
+    }
+
+    // a publication on A reaches B's subscriber; destinations nobody on B listens to never leave A
+    @Test
+    void relaysOnlyToNodesWithSubscribers() {
+        KafkaTopicPublisher publisherA = a.getBean(KafkaTopicPublisher.class);
+
+        subscribe(b, "session-1", CHAT_1);
+        await(() -> publisherA.remoteSubscribers(CHAT_1) == 1);
+
+        publisherA.publish(CHAT_1, Map.of("message", "hello from A"));
+        publisherA.publish(CHAT_2, Map.of("message", "nobody on B"));
+
+        RecordingChannel channelB = b.getBean(RecordingChannel.class);
+        await(() -> !channelB.bodiesFor(CHAT_1).isEmpty());
+        assertEquals(List.of("{\"message\":\"hello from A\"}"), channelB.bodiesFor(CHAT_1));
+        assertEquals(List.of(), channelB.bodiesFor(CHAT_2));
+
+        // A's own subscribers got both, only one went through Kafka
+        assertEquals(1, a.getBean(RecordingChannel.class).bodiesFor(CHAT_2).size());
+        assertEquals(1.0, a.getBean(MeterRegistry.class).counter("ws.fanout.forwarded").count());
+
+        // B's last subscriber leaves → A stops forwarding
+        disconnect(b, "session-1");
+        await(() -> publisherA.remoteSubscribers(CHAT_1) == 0);
+        publisherA.publish(CHAT_1, Map.of("message", "after disconnect"));
+        assertEquals(1.0, a.getBean(MeterRegistry.class).counter("ws.fanout.forwarded").count());
+    }
+
+    // /user/queue/chat of user 42 connected to B: A's publishToUser(42) reaches B as /user/42/queue/chat
+    @Test
+    void relaysUserQueuesToTheNodeOfThatUser() {
+        KafkaTopicPublisher publisherA = a.getBean(KafkaTopicPublisher.class);
+        String userQueue = LocalSubscriptions.userDestination("42", "/queue/chat");
+
+        subscribe(b, "session-42", "/user/queue/chat", new AuthUser(42L, UserRole.CUSTOMER));
+        await(() -> publisherA.remoteSubscribers(userQueue) == 1);
+
+        publisherA.publishToUser(42L, "/queue/chat", Map.of("message", "for 42"));
+        publisherA.publishToUser(43L, "/queue/chat", Map.of("message", "for 43"));
+
+        RecordingChannel channelB = b.getBean(RecordingChannel.class);
+        await(() -> !channelB.bodiesFor(userQueue).isEmpty());
+        assertEquals(List.of("{\"message\":\"for 42\"}"), channelB.bodiesFor(userQueue));
+        assertEquals(1.0, a.getBean(MeterRegistry.class).counter("ws.fanout.forwarded").count());
+    }
+
+    private static ConfigurableApplicationContext node(EmbeddedKafkaBroker broker) {
+        return new SpringApplicationBuilder(Node.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--chat.broker.mode=kafka",
+                        "--chat.broker.kafka.announce-ms=50");
+    }
+
+    private static void subscribe(ConfigurableApplicationContext node, String session, String destination) {
+        subscribe(node, session, destination, null);
+    }
+
+    private static void subscribe(ConfigurableApplicationContext node, String session, String destination,
+                                  AuthUser user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setUser(user);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        inbound(node, accessor);
+    }
+
+    private static void disconnect(ConfigurableApplicationContext node, String session) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(session);
+        inbound(node, accessor);
+    }
+
+    // what WebSocketConfig's inbound channel would do with the frame
+    private static void inbound(ConfigurableApplicationContext node, StompHeaderAccessor accessor) {
+        node.getBean(LocalSubscriptions.class)
+                .preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.config.ProviderLocationSchemaInitializer;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.repository.ProviderBusinessRepository;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.WeeklySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.mysql.MySQLContainer;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// nearby.search-backend=database (ProviderBusinessRepository.NEARBY_SQL on the spatial index) against
+// what the old code did: load every located provider and filter / sort with haversine in a Java stream.
+// Needs Docker (MySQL 8 in a container). Not a unit test: run main() against the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearbyDatabaseBenchmark {
+
+    private static final double LAT = 32.08;
+    private static final double LNG = 34.78;
+    private static final int PAGE = 20;
+
+    @Param({"10000", "100000"})
+    public int providers;
+
+    @Param({"10", "60"})
+    public double radiusKm;
+
+    private MySQLContainer mysql;
+    private JdbcTemplate jdbcTemplate;
+    private NamedParameterJdbcTemplate namedJdbc;
+    private int minuteOfWeek;
+
+    private record Row(long id, double latitude, double longitude, long capabilityMask, byte[] openingMinutes) {
+    }
+
+    private record Hit(long id, double distanceKm) {
+    }
+
+    @Setup(Level.Trial)
+    public void fill() {
+        mysql = new MySQLContainer("mysql:8.4");
+        mysql.start();
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword()));
+        namedJdbc = new NamedParameterJdbcTemplate(jdbcTemplate);
+
+        // only the columns the search reads
+        jdbcTemplate.execute("""
+                CREATE TABLE provider_business (
+                    id BIGINT PRIMARY KEY,
+                    latitude DOUBLE,
+                    longitude DOUBLE,
+                    capability_mask BIGINT,
+                    opening_minutes VARBINARY(1260)
+                )
+                """);
+        new ProviderLocationSchemaInitializer(jdbcTemplate, null).init();
+
+        WeeklySchedule.Builder open = WeeklySchedule.builder();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            open.day(day, 8 * 60, 18 * 60);
+        }
+        byte[] schedule = open.build().toBytes();
+        minuteOfWeek = 12 * 60;
+
+        Random random = new Random(1);
+        VehicleCategory[] categories = VehicleCategory.values();
+        ServiceType[] services = ServiceType.values();
+        List<Object[]> batch = new ArrayList<>();
+        // roughly Israel: 29.5..33.3 N, 34.3..35.9 E (same spread as NearbySearchBenchmark)
+        for (int i = 0; i < providers; i++) {
+            long mask = CapabilityMask.of(
+                    EnumSet.of(categories[random.nextInt(categories.length)]),
+                    EnumSet.of(services[random.nextInt(services.length)], services[random.nextInt(services.length)]));
+            batch.add(new Object[]{(long) i + 1, 29.5 + random.nextDouble() * 3.8, 34.3 + random.nextDouble() * 1.6,
+                    mask, schedule});
+            if (batch.size() == 1000 || i == providers - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO provider_business "
+                        + "(id, latitude, longitude, capability_mask, opening_minutes) VALUES (?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.execute("ANALYZE TABLE provider_business");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        mysql.stop();
+    }
+
+    // first page through the spatial index, the way the database backend runs it
+    @Benchmark
+    public List<Hit> database() {
+        double dLat = GeoUtil.latDelta(radiusKm);
+        double dLng = GeoUtil.lngDelta(LAT, radiusKm);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("lat", LAT)
+                .addValue("lng", LNG)
+                .addValue("minLat", LAT - dLat)
+                .addValue("minLng", LNG - dLng)
+                .addValue("maxLat", LAT + dLat)
+                .addValue("maxLng", LNG + dLng)
+                .addValue("radiusKm", radiusKm)
+                .addValue("earthRadiusM", GeoUtil.EARTH_RADIUS_KM * 1000)
+                .addValue("categoryBits", CapabilityMask.categoryBit(VehicleCategory.ALL)
+                        | CapabilityMask.categoryBit(VehicleCategory.GERMAN))
+                .addValue("serviceBit", CapabilityMask.serviceBit(ServiceType.TIRES))
+                .addValue("openByte", minuteOfWeek / 8 + 1)
+                .addValue("openBit", 1 << (minuteOfWeek % 8))
+                .addValue("afterKm", -1)
+                .addValue("afterId", 0)
+                .addValue("maxResults", PAGE);
+        return namedJdbc.query(ProviderBusinessRepository.NEARBY_SQL, params,
+                (rs, i) -> new Hit(rs.getLong("businessId"), rs.getDouble("distanceKm")));
+    }
+
+    // the old path: every located row to the JVM, then capability / open-now / haversine / sort in a stream
+    @Benchmark
+    public List<Hit> javaStream() {
+        List<Row> rows = jdbcTemplate.query("""
+                        SELECT id, latitude, longitude, capability_mask, opening_minutes
+                        FROM provider_business
+                        WHERE latitude IS NOT NULL AND longitude IS NOT NULL
+                        """,
+                (rs, i) -> new Row(rs.getLong(1), rs.getDouble(2), rs.getDouble(3), rs.getLong(4), rs.getBytes(5)));
+        return rows.stream()
+                .filter(r -> CapabilityMask.matches(r.capabilityMask(), VehicleCategory.GERMAN, ServiceType.TIRES))
+                .filter(r -> WeeklySchedule.fromBytes(r.openingMinutes()).isOpenAt(minuteOfWeek))
+                .map(r -> new Hit(r.id(), GeoUtil.haversineKm(LAT, LNG, r.latitude(), r.longitude())))
+                .filter(h -> h.distanceKm() <= radiusKm)
+                .sorted(Comparator.comparingDouble(Hit::distanceKm).thenComparingLong(Hit::id))
+                .limit(PAGE)
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NearbyDatabaseBenchmark.class.getSimpleName()).build()).run();
+    }
+}
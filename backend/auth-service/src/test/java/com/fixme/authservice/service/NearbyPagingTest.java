@@ -0,0 +1,174 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ProviderBusiness;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.NearbyCursor;
+import com.fixme.authservice.util.WeeklySchedule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Top-K heap + cursor paging of ProviderSpatialIndex.nearest, checked against a full sort
+class NearbyPagingTest {
+
+    private static final double LAT = 32.0;
+    private static final double LNG = 35.0;
+
+    // open on Mondays only
+    private static final WeeklySchedule MONDAYS = WeeklySchedule.builder().day(DayOfWeek.MONDAY, 0, 24 * 60).build();
+
+    private final List<ProviderSpatialIndex.Entry> all = new ArrayList<>();
+    private ProviderSpatialIndex index;
+
+    @BeforeEach
+    void fill() throws InterruptedException {
+        // no repository: rebuild() is never called, entries go in through upsert.
+        // Columnar from 50 km, so the 80 km cases below scan the snapshot and the others walk the grid
+        index = new ProviderSpatialIndex(null, 50);
+        Random random = new Random(11);
+        long mask = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+
+        for (long id = 1; id <= 3_000; id++) {
+            double lat = LAT - 1 + random.nextDouble() * 2;
+            double lng = LNG - 1 + random.nextDouble() * 2;
+            // a few exact duplicates: equal distances, only the id breaks the tie
+            if (id % 100 == 0) {
+                lat = LAT + 0.01;
+                lng = LNG;
+            }
+            WeeklySchedule schedule = id % 3 == 0 ? WeeklySchedule.CLOSED : MONDAYS;
+            ProviderBusiness b = ProviderBusiness.builder()
+                    .id(id)
+                    .user(User.builder().id(10_000 + id).build())
+                    .latitude(lat)
+                    .longitude(lng)
+                    .build();
+            index.upsert(b, mask, schedule);
+            all.add(new ProviderSpatialIndex.Entry(id, 10_000 + id, lat, lng, 0, mask, schedule));
+        }
+        awaitSnapshot();
+    }
+
+    @AfterEach
+    void stop() {
+        index.stop();
+    }
+
+    // a change is searchable right away: the grid answers until the background rebuild has the snapshot current
+    @Test
+    void staleSnapshotFallsBackToTheGrid() throws InterruptedException {
+        long mask = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+        for (long id = 5_000; id < 5_050; id++) {
+            ProviderBusiness b = ProviderBusiness.builder()
+                    .id(id)
+                    .user(User.builder().id(10_000 + id).build())
+                    .latitude(LAT)
+                    .longitude(LNG + (id - 5_000) * 1e-6)
+                    .build();
+            index.upsert(b, mask, MONDAYS);
+            all.add(new ProviderSpatialIndex.Entry(id, 10_000 + id, LAT, b.getLongitude(), 0, mask, MONDAYS));
+
+            assertEquals(sorted(80, e -> true).stream().limit(20).toList(),
+                    ids(index.nearest(LAT, LNG, 80, VehicleCategory.GERMAN, ServiceType.TIRES, e -> true, null, 20)));
+        }
+        awaitSnapshot();
+        assertEquals(sorted(80, e -> true).stream().limit(20).toList(),
+                ids(index.nearest(LAT, LNG, 80, VehicleCategory.GERMAN, ServiceType.TIRES, e -> true, null, 20)));
+    }
+
+    // the heap keeps exactly the K best, in order, both on the grid and on the columnar snapshot
+    @ParameterizedTest
+    @ValueSource(doubles = {5, 30, 80})
+    void topKMatchesAFullSort(double radiusKm) {
+        Predicate<ProviderSpatialIndex.Entry> openMonday = e -> e.schedule().isOpenAt(600);
+
+        for (int k : new int[]{1, 7, 50, 10_000}) {
+            List<Long> expected = sorted(radiusKm, openMonday).stream().limit(k).toList();
+            List<Long> found = ids(index.nearest(LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES,
+                    openMonday, null, k));
+            assertEquals(expected, found, "k=" + k);
+
+            List<Long> fromList = ids(ProviderSpatialIndex.nearest(all, LAT, LNG, radiusKm, openMonday, null, k));
+            assertEquals(expected, fromList, "k=" + k);
+        }
+    }
+
+    // following the cursors visits every match once, in order, with no gaps at equal distances
+    @ParameterizedTest
+    @ValueSource(doubles = {5, 30, 80})
+    void cursorPagesCoverEverythingOnce(double radiusKm) {
+        Predicate<ProviderSpatialIndex.Entry> any = e -> true;
+        List<Long> expected = sorted(radiusKm, any);
+
+        List<Long> paged = new ArrayList<>();
+        NearbyCursor after = null;
+        while (true) {
+            List<ProviderSpatialIndex.Match> page = index.nearest(LAT, LNG, radiusKm,
+                    VehicleCategory.JAPANESE, ServiceType.TIRES, any, after, 13);
+            page.forEach(m -> paged.add(m.entry().businessId()));
+            if (page.size() < 13) break;
+
+            ProviderSpatialIndex.Match last = page.get(page.size() - 1);
+            // the cursor goes through the client as text
+            after = NearbyCursor.decode(new NearbyCursor(last.distanceKm(), last.entry().businessId()).encode());
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void cursorRoundTripsExactly() {
+        NearbyCursor c = new NearbyCursor(GeoUtil.haversineKm(LAT, LNG, 32.123456789, 35.987654321), 42);
+        assertEquals(c, NearbyCursor.decode(c.encode()));
+        assertNull(NearbyCursor.decode(null));
+        assertNull(NearbyCursor.decode(" "));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"abc", "-5", "zz-1", "3ff0000000000000-", "3ff0000000000000-x", "7ff8000000000000-1",
+            "bff0000000000000-1", "10000000000000000-1"})
+    void malformedCursorIsABadRequest(String cursor) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> NearbyCursor.decode(cursor));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    private void awaitSnapshot() throws InterruptedException {
+        for (int i = 0; i < 500 && !index.columnarCurrent(); i++) Thread.sleep(10);
+        assertTrue(index.columnarCurrent(), "snapshot rebuilt in the background");
+    }
+
+    private List<Long> sorted(double radiusKm, Predicate<ProviderSpatialIndex.Entry> filter) {
+        List<ProviderSpatialIndex.Match> matches = new ArrayList<>();
+        for (ProviderSpatialIndex.Entry e : all) {
+            double d = GeoUtil.haversineKm(LAT, LNG, e.latitude(), e.longitude());
+            if (d <= radiusKm && filter.test(e)) {
+                matches.add(new ProviderSpatialIndex.Match(e, d));
+            }
+        }
+        matches.sort(ProviderSpatialIndex.NEAREST_FIRST);
+        return ids(matches);
+    }
+
+    private static List<Long> ids(List<ProviderSpatialIndex.Match> matches) {
+        return matches.stream().map(m -> m.entry().businessId()).toList();
+    }
+}
@@ -0,0 +1,123 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ProviderBusiness;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.WeeklySchedule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearbyResultCacheTest {
+
+    private static final long TIRES = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+    private static final long TOWING = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TOWING));
+
+    private ProviderSpatialIndex index;
+    private SimpleMeterRegistry registry;
+    private NearbyResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProviderSpatialIndex(null, 0);
+        registry = new SimpleMeterRegistry();
+        cache = new NearbyResultCache(index, registry, 2048, 30_000);
+        upsert(1, 32.081, 34.781, TIRES);
+        upsert(2, 32.300, 34.900, TIRES);
+    }
+
+    @Test
+    void secondSearchFromTheSameCellIsAHit() {
+        List<ProviderSpatialIndex.Entry> first = search(32.0805, 34.7805);
+        List<ProviderSpatialIndex.Entry> second = search(32.0801, 34.7809);
+
+        assertSame(first, second);
+        assertEquals(List.of(1L), ids(first));
+        assertEquals(1.0, count("nearby.cache.requests", "result", "hit"));
+        assertEquals(1.0, count("nearby.cache.requests", "result", "miss"));
+    }
+
+    // a new provider inside a cached area evicts it, so the next search sees the provider right away
+    @Test
+    void providerInsideTheAreaEvicts() {
+        List<ProviderSpatialIndex.Entry> before = search(32.0805, 34.7805);
+
+        upsert(3, 32.09, 34.79, TIRES);
+        List<ProviderSpatialIndex.Entry> after = search(32.0805, 34.7805);
+
+        assertNotSame(before, after);
+        assertTrue(ids(after).contains(3L));
+        assertEquals(1.0, count("nearby.cache.evictions", "cause", "provider-change"));
+    }
+
+    // changes far away or for another service keep the entry
+    @Test
+    void unrelatedChangesKeepTheEntry() {
+        List<ProviderSpatialIndex.Entry> before = search(32.0805, 34.7805);
+
+        upsert(2, 32.310, 34.910, TIRES);
+        upsert(4, 32.082, 34.782, TOWING);
+
+        assertSame(before, search(32.0805, 34.7805));
+        assertEquals(0.0, count("nearby.cache.evictions", "cause", "provider-change"));
+    }
+
+    // moving out of the area (old location) or being deleted also evicts
+    @Test
+    void movedAndRemovedProvidersEvict() {
+        search(32.0805, 34.7805);
+        upsert(1, 33.0, 35.5, TIRES);
+        assertFalse(ids(search(32.0805, 34.7805)).contains(1L));
+
+        upsert(1, 32.081, 34.781, TIRES);
+        assertTrue(ids(search(32.0805, 34.7805)).contains(1L));
+        index.remove(1L);
+        assertFalse(ids(search(32.0805, 34.7805)).contains(1L));
+
+        assertEquals(3.0, count("nearby.cache.evictions", "cause", "provider-change"));
+    }
+
+    // max-entries and ttl-ms come from the properties
+    @Test
+    void sizeAndTtlAreConfigured() {
+        cache = new NearbyResultCache(index, new SimpleMeterRegistry(), 1, 30_000);
+        List<ProviderSpatialIndex.Entry> first = search(32.0805, 34.7805);
+        cache.candidates(32.3, 34.9, 5, VehicleCategory.GERMAN, ServiceType.TIRES);
+        assertNotSame(first, search(32.0805, 34.7805), "evicted by the second entry");
+
+        cache = new NearbyResultCache(index, new SimpleMeterRegistry(), 2048, 0);
+        assertNotSame(search(32.0805, 34.7805), search(32.0805, 34.7805), "expired right away");
+    }
+
+    private List<ProviderSpatialIndex.Entry> search(double lat, double lng) {
+        return cache.candidates(lat, lng, 5, VehicleCategory.GERMAN, ServiceType.TIRES);
+    }
+
+    private void upsert(long id, double lat, double lng, long mask) {
+        index.upsert(ProviderBusiness.builder()
+                .id(id)
+                .user(User.builder().id(100 + id).build())
+                .latitude(lat)
+                .longitude(lng)
+                .build(), mask, WeeklySchedule.CLOSED);
+    }
+
+    private double count(String name, String tag, String value) {
+        return registry.get(name).tag(tag, value).counter().count();
+    }
+
+    private static List<Long> ids(List<ProviderSpatialIndex.Entry> entries) {
+        return entries.stream().map(ProviderSpatialIndex.Entry::businessId).sorted().toList();
+    }
+}
@@ -0,0 +1,125 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ProviderBusiness;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import com.fixme.authservice.util.WeeklySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Nearby search over the in-memory index: full scan with haversine (what the old code did),
+// the grid walk (withinRadius / nearest) and the columnar snapshot (nearby.columnar-from-km).
+// Not a unit test: run main() (or the JMH IDE plugin) against the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearbySearchBenchmark {
+
+    private static final double LAT = 32.08;
+    private static final double LNG = 34.78;
+
+    @Param({"10000", "100000"})
+    public int providers;
+
+    @Param({"10", "60"})
+    public double radiusKm;
+
+    // nearby.columnar-from-km: 0 = grid only (the default), 50 = nearestPage scans the snapshot from 50 km
+    @Param({"0", "50"})
+    public double columnarFromKm;
+
+    private ProviderSpatialIndex index;
+    private ProviderSpatialIndex.Entry[] entries;
+    private ProviderColumnarSnapshot snapshot;
+    private long categoryBits;
+    private long serviceBit;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        index = new ProviderSpatialIndex(null, columnarFromKm);
+        entries = new ProviderSpatialIndex.Entry[providers];
+        Random random = new Random(1);
+        VehicleCategory[] categories = VehicleCategory.values();
+        ServiceType[] services = ServiceType.values();
+
+        // roughly Israel: 29.5..33.3 N, 34.3..35.9 E
+        for (int i = 0; i < providers; i++) {
+            long mask = CapabilityMask.of(
+                    EnumSet.of(categories[random.nextInt(categories.length)]),
+                    EnumSet.of(services[random.nextInt(services.length)], services[random.nextInt(services.length)]));
+            ProviderBusiness b = ProviderBusiness.builder()
+                    .id((long) i + 1)
+                    .user(User.builder().id((long) i + 1).build())
+                    .latitude(29.5 + random.nextDouble() * 3.8)
+                    .longitude(34.3 + random.nextDouble() * 1.6)
+                    .build();
+            index.upsert(b, mask, WeeklySchedule.CLOSED);
+            entries[i] = new ProviderSpatialIndex.Entry(b.getId(), b.getId(), b.getLatitude(), b.getLongitude(),
+                    0, mask, WeeklySchedule.CLOSED);
+        }
+        snapshot = index.columnar();
+        categoryBits = CapabilityMask.categoryBit(VehicleCategory.ALL) | CapabilityMask.categoryBit(VehicleCategory.GERMAN);
+        serviceBit = CapabilityMask.serviceBit(ServiceType.TIRES);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        index.stop();
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole bh) {
+        int hits = 0;
+        for (ProviderSpatialIndex.Entry e : entries) {
+            if (!CapabilityMask.matches(e.capabilityMask(), VehicleCategory.GERMAN, ServiceType.TIRES)) continue;
+            if (GeoUtil.haversineKm(LAT, LNG, e.latitude(), e.longitude()) <= radiusKm) hits++;
+        }
+        bh.consume(hits);
+    }
+
+    @Benchmark
+    public void gridWithinRadius(Blackhole bh) {
+        bh.consume(index.withinRadius(LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES));
+    }
+
+    @Benchmark
+    public void columnarScan(Blackhole bh) {
+        bh.consume(snapshot.scan(LAT, LNG, radiusKm, categoryBits, serviceBit));
+    }
+
+    // what a nearby page costs: top 20 (grid below columnarFromKm, columnar from it on)
+    @Benchmark
+    public List<ProviderSpatialIndex.Match> nearestPage() {
+        return index.nearest(LAT, LNG, radiusKm, VehicleCategory.GERMAN, ServiceType.TIRES, e -> true, null, 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NearbySearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
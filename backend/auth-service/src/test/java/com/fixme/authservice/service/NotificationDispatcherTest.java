@@ -0,0 +1,328 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.NotificationDeadLetter;
+import com.fixme.authservice.model.User;
+import com.fixme.authservice.model.VerificationToken;
+import com.fixme.authservice.model.VerificationType;
+import com.fixme.authservice.repository.NotificationDeadLetterRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// real JavaMailSenderImpl against a local fake SMTP server, and an SMS stand-in instead of Twilio
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:notifications;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "notifications.workers=1",
+        "notifications.max-attempts=3",
+        "notifications.backoff-ms=10"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({NotificationDispatcher.class, EmailService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationDispatcherTest {
+
+    private static final FakeSmtpServer SMTP = FakeSmtpServer.start();
+    private static final AtomicLong TOKEN_IDS = new AtomicLong();
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        JavaMailSender mailSender() {
+            JavaMailSenderImpl sender = new JavaMailSenderImpl();
+            sender.setHost("localhost");
+            sender.setPort(SMTP.port());
+            Properties props = new Properties();
+            props.put("mail.from", "noreply@fixme.local");
+            sender.setJavaMailProperties(props);
+            return sender;
+        }
+
+        @Bean
+        FakeSms smsService() {
+            return new FakeSms();
+        }
+    }
+
+    // phones starting with "down" always fail, "flaky" ones fail once
+    static class FakeSms extends SmsService {
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        final Map<String, Integer> calls = new ConcurrentHashMap<>();
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void sendVerificationCode(String toPhone, String code) {
+            int call = calls.merge(toPhone, 1, Integer::sum);
+            if (toPhone.startsWith("down") || (toPhone.startsWith("flaky") && call == 1)) {
+                throw new IllegalStateException("SMS gateway unavailable");
+            }
+            delivered.add(toPhone);
+        }
+    }
+
+    @Autowired
+    private NotificationDispatcher dispatcher;
+
+    @Autowired
+    private NotificationDeadLetterRepository deadLetters;
+
+    @Autowired
+    private FakeSms sms;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterAll
+    static void stopSmtp() throws IOException {
+        SMTP.close();
+    }
+
+    // nothing leaves before commit; then the batch goes out over far fewer SMTP connections than mails
+    @Test
+    void emailsGoOutAfterCommitSharingConnections() {
+        int mails = 30;
+        int connectionsBefore = SMTP.connections.get();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < mails; i++) {
+                dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("batch" + i), "123456"));
+            }
+            sleep(100);
+            assertEquals(0, SMTP.deliveredTo("batch").size());
+        });
+
+        await(() -> SMTP.deliveredTo("batch").size() == mails);
+        assertTrue(SMTP.connections.get() - connectionsBefore < mails);
+    }
+
+    @Test
+    void rolledBackSignupSendsNothing() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("rolledback"), "123456"));
+            status.setRollbackOnly();
+        });
+
+        sleep(300);
+        assertEquals(0, SMTP.deliveredTo("rolledback").size());
+    }
+
+    // retried with backoff; what still fails after max-attempts ends up in notification_dead_letters
+    @Test
+    void failuresAreRetriedThenDeadLettered() {
+        VerificationToken down = token(VerificationType.PHONE, user("down"), "222222");
+        dispatcher.sendVerificationCode(token(VerificationType.PHONE, user("flaky"), "111111"));
+        dispatcher.sendVerificationCode(down);
+        dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("reject"), "333333"));
+
+        await(() -> deadLetters.count() == 2);
+        assertEquals(List.of("flaky-phone"), sms.delivered);
+        assertEquals(3, sms.calls.get("down-phone"));
+
+        List<NotificationDeadLetter> dead = deadLetters.findAll();
+        assertTrue(dead.stream().allMatch(d -> d.getAttempts() == 3));
+        // the token id for support, never the code itself
+        assertTrue(dead.stream().anyMatch(d -> d.getRecipient().equals("down-phone") && d.getTokenId().equals(down.getId())));
+        assertTrue(dead.stream().anyMatch(d -> d.getRecipient().equals("reject@test.local")));
+    }
+
+    // the worker keeps its SMTP connection between batches, and opens a new one when the server dropped it
+    @Test
+    void smtpConnectionIsReusedAndReopened() throws IOException {
+        dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("reuse-a"), "123456"));
+        await(() -> SMTP.deliveredTo("reuse-a").size() == 1);
+        int connections = SMTP.connections.get();
+
+        dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("reuse-b"), "123456"));
+        await(() -> SMTP.deliveredTo("reuse-b").size() == 1);
+        assertEquals(connections, SMTP.connections.get());
+
+        SMTP.dropSessions();
+        dispatcher.sendVerificationCode(token(VerificationType.EMAIL, user("reuse-c"), "123456"));
+        await(() -> SMTP.deliveredTo("reuse-c").size() == 1);
+        assertEquals(connections + 1, SMTP.connections.get());
+    }
+
+    private static VerificationToken token(VerificationType type, User user, String code) {
+        return VerificationToken.builder()
+                .id(TOKEN_IDS.incrementAndGet())
+                .user(user)
+                .type(type)
+                .tokenCode(code)
+                .build();
+    }
+
+    private static User user(String name) {
+        return User.builder()
+                .email(name + "@test.local")
+                .phone(name + "-phone")
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            sleep(20);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // just enough SMTP for JavaMail: recipients starting with "reject" get a 550
+    static class FakeSmtpServer implements AutoCloseable {
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        private final List<Socket> sessions = new CopyOnWriteArrayList<>();
+        private final ServerSocket server;
+
+        private FakeSmtpServer(ServerSocket server) {
+            this.server = server;
+        }
+
+        static FakeSmtpServer start() {
+            try {
+                FakeSmtpServer smtp = new FakeSmtpServer(new ServerSocket(0));
+                Thread acceptor = new Thread(smtp::accept, "fake-smtp");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                return smtp;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        List<String> deliveredTo(String prefix) {
+            return delivered.stream().filter(r -> r.startsWith(prefix)).toList();
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    Thread t = new Thread(() -> serve(socket), "fake-smtp-session");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        // like a server closing idle connections
+        void dropSessions() throws IOException {
+            for (Socket s : sessions) {
+                s.close();
+            }
+        }
+
+        private void serve(Socket socket) {
+            sessions.add(socket);
+            try (socket) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+                reply(out, "220 fake ESMTP");
+
+                String recipient = null;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("RCPT")) {
+                        String address = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                        if (address.startsWith("reject")) {
+                            reply(out, "550 no such user");
+                        } else {
+                            recipient = address;
+                            reply(out, "250 OK");
+                        }
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 go ahead");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // message body is not checked
+                        }
+                        delivered.add(recipient);
+                        reply(out, "250 OK");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    } else {
+                        // EHLO / HELO / MAIL / RSET / NOOP
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // client went away
+            } finally {
+                sessions.remove(socket);
+            }
+        }
+
+        private static void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.OutboxEvent;
+import com.fixme.authservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.kafka.autoconfigure.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// the relay runs its own transactions, so the test does not wrap one around it
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "outbox.topic=" + OutboxRelayTest.TOPIC,
+        "outbox.relay.enabled=true",
+        // drain() is called by the tests, not on a timer
+        "outbox.relay.interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(KafkaAutoConfiguration.class)
+@Import(OutboxRelay.class)
+@EmbeddedKafka(partitions = 3, topics = OutboxRelayTest.TOPIC)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+
+    static final String TOPIC = "outbox-test";
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        // runs on the producer thread when an ack arrives, i.e. while the relay is still waiting for the batch
+        @Bean
+        ProducerListener<Object, Object> lockProbe(JdbcTemplate jdbcTemplate) {
+            return new ProducerListener<>() {
+                @Override
+                public void onSuccess(ProducerRecord<Object, Object> record, RecordMetadata metadata) {
+                    if (!PROBE.compareAndSet(true, false)) return;
+                    try {
+                        PROBE_RESULT.set(jdbcTemplate.queryForObject(
+                                "select count(*) from (select id from request_outbox for update nowait) t",
+                                Integer.class) + " rows, claimed: " + jdbcTemplate.queryForObject(
+                                "select count(*) from request_outbox where claimed_by is not null", Integer.class));
+                    } catch (RuntimeException e) {
+                        PROBE_RESULT.set("locked: " + e.getMessage());
+                    }
+                }
+            };
+        }
+    }
+
+    private static final AtomicBoolean PROBE = new AtomicBoolean();
+    private static final AtomicReference<String> PROBE_RESULT = new AtomicReference<>();
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    // every row reaches Kafka keyed by request id, in outbox order per request, and leaves the table
+    @Test
+    void relaysEveryRowInOrderPerRequest() {
+        int requests = 10;
+        int perRequest = 50;
+        insert(1, requests, perRequest);
+
+        relay.drain();
+        assertEquals(0, outboxRepository.count());
+
+        Map<String, List<Integer>> seqByKey = new HashMap<>();
+        try (Consumer<String, String> consumer = consumer("order")) {
+            int received = 0;
+            while (received < requests * perRequest) {
+                ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10));
+                for (ConsumerRecord<String, String> r : records) {
+                    // the topic is shared with the other tests, which use request ids from 1000 on
+                    if (Long.parseLong(r.key()) > requests) continue;
+                    seqByKey.computeIfAbsent(r.key(), k -> new ArrayList<>()).add(Integer.parseInt(r.value()));
+                    received++;
+                }
+            }
+            assertEquals(requests * perRequest, received);
+        }
+
+        assertEquals(requests, seqByKey.size());
+        for (List<Integer> seq : seqByKey.values()) {
+            for (int i = 1; i < seq.size(); i++) {
+                assertEquals(seq.get(i - 1) + 1, seq.get(i));
+            }
+        }
+    }
+
+    // the rows are claimed and committed before the send: nothing is locked while the relay waits for Kafka
+    @Test
+    void noRowLocksWhileWaitingForAcks() {
+        insert(1001, 2, 5);
+        PROBE.set(true);
+        relay.drain();
+
+        assertEquals("10 rows, claimed: 10", PROBE_RESULT.get());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    // rows leased to another relay are left alone until the lease runs out, then shipped
+    @Test
+    void leasedRowsWaitForTheLeaseToExpire() {
+        insert(2001, 2, 5);
+        List<Long> otherRelays = outboxRepository.findAll().stream()
+                .filter(e -> e.getAggregateId() == 2001L)
+                .map(OutboxEvent::getId)
+                .toList();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status ->
+                outboxRepository.claim(otherRelays, "other-relay", LocalDateTime.now().plusHours(1)));
+
+        relay.drain();
+        assertEquals(otherRelays, outboxRepository.findAll().stream().map(OutboxEvent::getId).sorted().toList());
+
+        tx.executeWithoutResult(status ->
+                outboxRepository.claim(otherRelays, "other-relay", LocalDateTime.now().minusSeconds(1)));
+        relay.drain();
+        assertEquals(0, outboxRepository.count());
+    }
+
+    // throughput of the relay against the embedded broker (printed, not asserted: it depends on the machine)
+    @Test
+    void relayThroughput() {
+        int rows = 20_000;
+        insert(3001, 100, rows / 100);
+
+        long start = System.nanoTime();
+        relay.drain();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        assertEquals(0, outboxRepository.count());
+        System.out.println("Outbox relay: " + rows + " events in " + elapsedMs + " ms = "
+                + (rows * 1000L / elapsedMs) + " events/s");
+    }
+
+    // payload = sequence number within its request, to check ordering on the consumer side
+    private void insert(long firstRequestId, int requests, int perRequest) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<OutboxEvent> rows = new ArrayList<>();
+            for (int seq = 0; seq < perRequest; seq++) {
+                for (long requestId = firstRequestId; requestId < firstRequestId + requests; requestId++) {
+                    rows.add(OutboxEvent.builder()
+                            .aggregateId(requestId)
+                            .eventType("REQUEST_CHANGED")
+                            .payload(Integer.toString(seq))
+                            .createdAt(LocalDateTime.now())
+                            .build());
+                }
+            }
+            outboxRepository.saveAll(rows);
+        });
+    }
+
+    private Consumer<String, String> consumer(String group) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(broker, group, false);
+        props.put("auto.offset.reset", "earliest");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(
+                props, new StringDeserializer(), new StringDeserializer()).createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+        return consumer;
+    }
+}
@@ -0,0 +1,227 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.NearbyRequestResponse;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.util.GeoUtil;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pending;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PendingRequestIndex.class)
+// the index changes after commit, so the test commits for real
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PendingRequestIndexTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Autowired
+    private PendingRequestIndex index;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate tx;
+    private User customer;
+    private Vehicle vehicle;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            customer = User.builder()
+                    .firstName("c")
+                    .lastName("c")
+                    .email("pending-customer@test.local")
+                    .phone("pending-customer")
+                    .passwordHash("x")
+                    .role(UserRole.CUSTOMER)
+                    .verified(true)
+                    .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            entityManager.persist(customer);
+
+            vehicle = new Vehicle();
+            vehicle.setOwner(customer);
+            vehicle.setPlateNumber("P-1");
+            vehicle.setMake("Make");
+            vehicle.setModel("Model");
+            vehicle.setYear(2020);
+            entityManager.persist(vehicle);
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from service_requests");
+        jdbcTemplate.update("delete from vehicles");
+        jdbcTemplate.update("delete from users");
+        index.rebuild();
+    }
+
+    // grid lookup = every pending request within the radius, nearest first, like a full scan
+    @Test
+    void nearbyMatchesAFullScan() {
+        Random random = new Random(5);
+        List<ServiceRequest> all = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            all.add(create(31.8 + random.nextDouble() * 0.6, 34.7 + random.nextDouble() * 0.6));
+        }
+
+        for (double radiusKm : new double[]{1, 7.5, 25}) {
+            List<Long> expected = all.stream()
+                    .filter(r -> distance(r) <= radiusKm)
+                    .sorted(Comparator.comparingDouble(this::distance).thenComparing(ServiceRequest::getId))
+                    .map(ServiceRequest::getId)
+                    .toList();
+            List<NearbyRequestResponse> found = index.nearby(32.1, 35.0, radiusKm);
+
+            assertEquals(expected, found.stream().map(NearbyRequestResponse::getId).toList());
+            found.forEach(r -> assertEquals(RequestStatus.PENDING, r.getStatus()));
+        }
+    }
+
+    // nothing reaches the index before commit, and nothing at all on rollback
+    @Test
+    void onlyCommittedChangesAreIndexed() {
+        tx.executeWithoutResult(status -> {
+            ServiceRequest r = request(32.1, 35.0);
+            index.sync(r);
+            assertEquals(0, index.size());
+            status.setRollbackOnly();
+        });
+        assertEquals(0, index.size());
+
+        ServiceRequest kept = create(32.1, 35.0);
+        assertEquals(1, index.size());
+
+        tx.executeWithoutResult(status -> {
+            index.remove(kept.getId());
+            status.setRollbackOnly();
+        });
+        assertEquals(List.of(kept.getId()), ids(index.nearby(32.1, 35.0, 1)));
+    }
+
+    // leaving PENDING (accepted, cancelled) removes it; a moved request changes cell
+    @Test
+    void statusAndLocationChanges() {
+        ServiceRequest r = create(32.1, 35.0);
+
+        tx.executeWithoutResult(status -> {
+            ServiceRequest loaded = entityManager.find(ServiceRequest.class, r.getId());
+            loaded.setLatitude(32.5);
+            index.sync(loaded);
+        });
+        assertTrue(index.nearby(32.1, 35.0, 5).isEmpty());
+        assertEquals(List.of(r.getId()), ids(index.nearby(32.5, 35.0, 5)));
+
+        tx.executeWithoutResult(status -> {
+            ServiceRequest loaded = entityManager.find(ServiceRequest.class, r.getId());
+            loaded.setStatus(RequestStatus.ACCEPTED);
+            index.sync(loaded);
+        });
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void vehicleEditsReachTheEntries() {
+        ServiceRequest r = create(32.1, 35.0);
+
+        tx.executeWithoutResult(status -> {
+            Vehicle v = entityManager.find(Vehicle.class, vehicle.getId());
+            v.setPlateNumber("NEW-1");
+            v.setMake("Kia");
+            index.vehicleChanged(v);
+        });
+
+        NearbyRequestResponse found = index.nearby(32.1, 35.0, 1).get(0);
+        assertEquals(r.getId(), found.getId());
+        assertEquals("NEW-1", found.getPlateNumber());
+        assertEquals("Kia", found.getMake());
+    }
+
+    // startup load: only PENDING rows with a location
+    @Test
+    void rebuildLoadsPendingRequests() {
+        ServiceRequest pending = create(32.1, 35.0);
+        tx.executeWithoutResult(status -> {
+            ServiceRequest done = request(32.1, 35.0);
+            done.setStatus(RequestStatus.ACCEPTED);
+        });
+
+        index.rebuild();
+        assertEquals(List.of(pending.getId()), ids(index.nearby(32.1, 35.0, 1)));
+    }
+
+    // saved + synced in its own transaction, like CustomerRequestService.createRequest
+    private ServiceRequest create(double lat, double lng) {
+        return tx.execute(status -> {
+            ServiceRequest r = request(lat, lng);
+            index.sync(r);
+            return r;
+        });
+    }
+
+    // caller runs inside tx
+    private ServiceRequest request(double lat, double lng) {
+        ServiceRequest r = new ServiceRequest();
+        r.setCustomer(entityManager.getReference(User.class, customer.getId()));
+        r.setVehicle(entityManager.find(Vehicle.class, vehicle.getId()));
+        r.setDescription("flat tire");
+        r.setVehicleCategory(VehicleCategory.ALL);
+        r.setServiceType(ServiceType.TIRES);
+        r.setLatitude(lat);
+        r.setLongitude(lng);
+        entityManager.persist(r);
+        return r;
+    }
+
+    private double distance(ServiceRequest r) {
+        return GeoUtil.haversineKm(32.1, 35.0, r.getLatitude(), r.getLongitude());
+    }
+
+    private static List<Long> ids(List<NearbyRequestResponse> list) {
+        return list.stream().map(NearbyRequestResponse::getId).toList();
+    }
+}
@@ -0,0 +1,115 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.PendingRequestUpdate;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.GeoUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingRequestPublisherTest {
+
+    private record Sent(String destination, Object payload) {
+    }
+
+    private final List<Sent> sent = new ArrayList<>();
+    private PendingRequestPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new PendingRequestPublisher(new TopicPublisher() {
+            @Override
+            public void publish(String destination, Object payload) {
+                sent.add(new Sent(destination, payload));
+            }
+
+            @Override
+            public void publishToUser(Long userId, String queue, Object payload) {
+                throw new AssertionError("not a user message");
+            }
+        });
+    }
+
+    // every provider within radiusKm of a request is subscribed to the topic the request goes to
+    @Test
+    void providersInRangeAreSubscribedToTheRequestTopic() {
+        Random random = new Random(12);
+        for (int i = 0; i < 2_000; i++) {
+            double lat = 29.5 + random.nextDouble() * 4;
+            double lng = 34.2 + random.nextDouble() * 2;
+            ServiceRequestResponse r = request(i, lat, lng, RequestStatus.PENDING);
+            sent.clear();
+            publisher.onRequestChanged(new ServiceRequestEvent(r, null));
+            String topic = sent.get(0).destination();
+
+            double radiusKm = 1 + random.nextDouble() * 30;
+            // a provider somewhere within ~1.5 radius of the request
+            double providerLat = lat + (random.nextDouble() * 2 - 1) * GeoUtil.latDelta(radiusKm * 1.5);
+            double providerLng = lng + (random.nextDouble() * 2 - 1) * GeoUtil.lngDelta(lat, radiusKm * 1.5);
+            if (GeoUtil.haversineKm(providerLat, providerLng, lat, lng) > radiusKm) continue;
+
+            assertTrue(publisher.topicsCovering(providerLat, providerLng, radiusKm).contains(topic),
+                    "provider at " + providerLat + "," + providerLng + " r=" + radiusKm + " misses " + topic);
+        }
+    }
+
+    @Test
+    void topicsAreDistinctAndCappedAtFiftyKm() {
+        List<String> ten = publisher.topicsCovering(32.08, 34.78, 10);
+        assertEquals(ten.size(), ten.stream().distinct().count());
+        ten.forEach(t -> assertTrue(t.startsWith(PendingRequestPublisher.TOPIC_PREFIX)));
+
+        assertEquals(publisher.topicsCovering(32.08, 34.78, 50), publisher.topicsCovering(32.08, 34.78, 500));
+    }
+
+    // ADDED on entering PENDING (created, or back after a decline), REMOVED on leaving it, nothing otherwise
+    @Test
+    void addedAndRemovedFollowThePendingStatus() {
+        ServiceRequestResponse r = request(7, 32.08, 34.78, RequestStatus.PENDING);
+        publisher.onRequestChanged(new ServiceRequestEvent(r, null));
+
+        r.setStatus(RequestStatus.WAITING_PROVIDER);
+        publisher.onRequestChanged(new ServiceRequestEvent(r, RequestStatus.PENDING));
+
+        r.setStatus(RequestStatus.ACCEPTED);
+        publisher.onRequestChanged(new ServiceRequestEvent(r, RequestStatus.WAITING_PROVIDER));
+
+        r.setStatus(RequestStatus.PENDING);
+        publisher.onRequestChanged(new ServiceRequestEvent(r, RequestStatus.WAITING_PROVIDER));
+
+        assertEquals(3, sent.size());
+        String topic = sent.get(0).destination();
+        sent.forEach(s -> assertEquals(topic, s.destination()));
+
+        PendingRequestUpdate added = (PendingRequestUpdate) sent.get(0).payload();
+        assertEquals(PendingRequestUpdate.Type.ADDED, added.getType());
+        assertEquals(7L, added.getRequestId());
+        assertEquals("P-7", added.getRequest().getPlateNumber());
+        assertEquals(32.08, added.getRequest().getLatitude());
+        assertNull(added.getRequest().getDistanceKm());
+
+        PendingRequestUpdate removed = (PendingRequestUpdate) sent.get(1).payload();
+        assertEquals(PendingRequestUpdate.Type.REMOVED, removed.getType());
+        assertEquals(7L, removed.getRequestId());
+        assertNull(removed.getRequest());
+
+        assertEquals(PendingRequestUpdate.Type.ADDED, ((PendingRequestUpdate) sent.get(2).payload()).getType());
+    }
+
+    private static ServiceRequestResponse request(long id, double lat, double lng, RequestStatus status) {
+        return new ServiceRequestResponse(id, 1L, null, 2L, "P-" + id, "Make", "Model", 2020,
+                "flat tire", VehicleCategory.ALL, ServiceType.TIRES, lat, lng, status, null, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,115 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderColumnarSnapshotTest {
+
+    private static final long TIRES_ALL = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+    private static final long TIRES_GERMAN = CapabilityMask.of(Set.of(VehicleCategory.GERMAN), Set.of(ServiceType.TIRES));
+    private static final long TOWING_ALL = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TOWING));
+
+    // same providers, same distances (to the bit) as haversineKm on the grid path; also across partitions
+    @Test
+    void scanMatchesHaversine() {
+        Random random = new Random(3);
+        long[] masks = {TIRES_ALL, TIRES_GERMAN, TOWING_ALL};
+        // > 2 partitions, so the parallel merge is used
+        ProviderSpatialIndex.Entry[] entries = new ProviderSpatialIndex.Entry[10_000];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = entry(i, 29 + random.nextDouble() * 4, 34 + random.nextDouble() * 2, masks[i % 3]);
+        }
+        ProviderColumnarSnapshot snapshot = ProviderColumnarSnapshot.of(1, entries);
+
+        for (double radiusKm : new double[]{50, 120, 400}) {
+            ProviderColumnarSnapshot.Hits hits = snapshot.scan(31.5, 35.0, radiusKm, categoryBits(VehicleCategory.JAPANESE),
+                    CapabilityMask.serviceBit(ServiceType.TIRES));
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < entries.length; i++) {
+                ProviderSpatialIndex.Entry e = entries[i];
+                if (CapabilityMask.matches(e.capabilityMask(), VehicleCategory.JAPANESE, ServiceType.TIRES)
+                        && GeoUtil.haversineKm(31.5, 35.0, e.latitude(), e.longitude()) <= radiusKm) {
+                    expected.add(i);
+                }
+            }
+
+            assertEquals(expected.size(), hits.size());
+            for (int h = 0; h < hits.size(); h++) {
+                int position = hits.positions()[h];
+                assertEquals(expected.get(h), position);
+                ProviderSpatialIndex.Entry e = snapshot.entry(position);
+                assertEquals(GeoUtil.haversineKm(31.5, 35.0, e.latitude(), e.longitude()), hits.distancesKm()[h]);
+            }
+        }
+    }
+
+    // a provider exactly on the circle is in, like withinRadius; just outside is out
+    @Test
+    void boundaryFollowsHaversine() {
+        ProviderSpatialIndex.Entry[] entries = {
+                entry(0, 32.4, 35.3, TIRES_ALL),
+                entry(1, 32.9, 34.1, TIRES_ALL),
+                entry(2, 31.1, 35.6, TIRES_ALL)
+        };
+        ProviderColumnarSnapshot snapshot = ProviderColumnarSnapshot.of(1, entries);
+
+        for (ProviderSpatialIndex.Entry e : entries) {
+            double radiusKm = GeoUtil.haversineKm(32.0, 35.0, e.latitude(), e.longitude());
+            List<Integer> in = positions(snapshot.scan(32.0, 35.0, radiusKm,
+                    categoryBits(VehicleCategory.GERMAN), CapabilityMask.serviceBit(ServiceType.TIRES)));
+            assertTrue(in.contains(e.businessId().intValue()), "on the circle: " + e);
+
+            List<Integer> out = positions(snapshot.scan(32.0, 35.0, Math.nextDown(radiusKm),
+                    categoryBits(VehicleCategory.GERMAN), CapabilityMask.serviceBit(ServiceType.TIRES)));
+            assertFalse(out.contains(e.businessId().intValue()), "just outside: " + e);
+        }
+    }
+
+    @Test
+    void capabilitiesAndEmptySnapshot() {
+        ProviderColumnarSnapshot snapshot = ProviderColumnarSnapshot.of(1, new ProviderSpatialIndex.Entry[]{
+                entry(0, 32.0, 35.0, TIRES_GERMAN),
+                entry(1, 32.0, 35.0, TIRES_ALL),
+                entry(2, 32.0, 35.0, TOWING_ALL)
+        });
+
+        assertEquals(List.of(0, 1), positions(snapshot.scan(32, 35, 60,
+                categoryBits(VehicleCategory.GERMAN), CapabilityMask.serviceBit(ServiceType.TIRES))));
+        assertEquals(List.of(1), positions(snapshot.scan(32, 35, 60,
+                categoryBits(VehicleCategory.KOREAN), CapabilityMask.serviceBit(ServiceType.TIRES))));
+        assertEquals(List.of(2), positions(snapshot.scan(32, 35, 60,
+                categoryBits(VehicleCategory.KOREAN), CapabilityMask.serviceBit(ServiceType.TOWING))));
+
+        ProviderColumnarSnapshot empty = ProviderColumnarSnapshot.of(1, new ProviderSpatialIndex.Entry[0]);
+        assertEquals(0, empty.scan(32, 35, 60, categoryBits(VehicleCategory.GERMAN),
+                CapabilityMask.serviceBit(ServiceType.TIRES)).size());
+    }
+
+    private static ProviderSpatialIndex.Entry entry(long id, double lat, double lng, long mask) {
+        return new ProviderSpatialIndex.Entry(id, 1000 + id, lat, lng, 0, mask, null);
+    }
+
+    // what CustomerNearbyProviderService / ProviderSpatialIndex pass for a category
+    private static long categoryBits(VehicleCategory category) {
+        return CapabilityMask.categoryBit(VehicleCategory.ALL) | CapabilityMask.categoryBit(category);
+    }
+
+    private static List<Integer> positions(ProviderColumnarSnapshot.Hits hits) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) list.add(hits.positions()[i]);
+        return list;
+    }
+}
@@ -0,0 +1,151 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.ProviderBusinessRequest;
+import com.fixme.authservice.model.*;
+import com.fixme.authservice.util.CapabilityMask;
+import com.fixme.authservice.util.GeoUtil;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:spatial;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProviderService.class, ProviderSpatialIndex.class})
+// ProviderService commits on its own, so the index sees (or not) what a real request would
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProviderSpatialIndexTest {
+
+    @TestConfiguration
+    static class Beans {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Autowired
+    private ProviderSpatialIndex index;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // grid + posting lists return exactly what a full scan with haversine would
+    @Test
+    void withinRadiusMatchesAFullScan() {
+        Random random = new Random(7);
+        List<ProviderSpatialIndex.Entry> all = new ArrayList<>();
+        VehicleCategory[] categories = VehicleCategory.values();
+        ServiceType[] services = ServiceType.values();
+
+        for (long id = 1; id <= 2_000; id++) {
+            ProviderBusiness b = ProviderBusiness.builder()
+                    .id(100_000 + id)
+                    .user(User.builder().id(200_000 + id).build())
+                    .latitude(31.5 + random.nextDouble())
+                    .longitude(34.5 + random.nextDouble())
+                    .build();
+            long mask = CapabilityMask.of(
+                    Set.of(categories[random.nextInt(categories.length)]),
+                    EnumSet.of(services[random.nextInt(services.length)], services[random.nextInt(services.length)]));
+            index.upsert(b, mask, null);
+            all.add(new ProviderSpatialIndex.Entry(b.getId(), b.getUser().getId(), b.getLatitude(), b.getLongitude(),
+                    0, mask, null));
+        }
+        // moved and removed providers must not come back from their old cells
+        index.upsert(ProviderBusiness.builder().id(100_001L).user(User.builder().id(200_001L).build())
+                .latitude(10.0).longitude(10.0).build(), all.get(0).capabilityMask(), null);
+        index.remove(100_002L);
+        all.remove(1);
+        all.remove(0);
+
+        for (int q = 0; q < 50; q++) {
+            double lat = 31.5 + random.nextDouble();
+            double lng = 34.5 + random.nextDouble();
+            double radiusKm = 1 + random.nextDouble() * 30;
+            VehicleCategory category = categories[random.nextInt(categories.length)];
+            ServiceType service = services[random.nextInt(services.length)];
+
+            List<Long> expected = all.stream()
+                    .filter(e -> CapabilityMask.matches(e.capabilityMask(), category, service))
+                    .filter(e -> GeoUtil.haversineKm(lat, lng, e.latitude(), e.longitude()) <= radiusKm)
+                    .map(ProviderSpatialIndex.Entry::businessId)
+                    .sorted()
+                    .toList();
+            List<Long> found = index.withinRadius(lat, lng, radiusKm, category, service).stream()
+                    .map(ProviderSpatialIndex.Entry::businessId)
+                    .sorted()
+                    .toList();
+            assertEquals(expected, found);
+        }
+    }
+
+    // the index is only updated once the business row is committed
+    @Test
+    void rolledBackSaveIsNotIndexed() {
+        Long providerId = new TransactionTemplate(transactionManager).execute(status -> {
+            User u = User.builder()
+                    .firstName("p")
+                    .lastName("p")
+                    .email("spatial-provider@test.local")
+                    .phone("spatial-provider")
+                    .passwordHash("x")
+                    .role(UserRole.PROVIDER)
+                    .verified(true)
+                    .providerApprovalStatus(ProviderApprovalStatus.values()[0])
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            entityManager.persist(u);
+            return u.getId();
+        });
+
+        ProviderBusinessRequest request = new ProviderBusinessRequest();
+        request.setBusinessName("Garage");
+        request.setCity("Haifa");
+        request.setAddress("Main 1");
+        request.setLatitude(-45.0);
+        request.setLongitude(-120.0);
+        request.setCategories(Set.of(VehicleCategory.ALL));
+        request.setOfferedServices(Set.of(ServiceType.TIRES));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            providerService.createOrUpdateBusiness(providerId, request);
+            assertTrue(index.withinRadius(-45.0, -120.0, 1, VehicleCategory.GERMAN, ServiceType.TIRES).isEmpty());
+            status.setRollbackOnly();
+        });
+        assertTrue(index.withinRadius(-45.0, -120.0, 1, VehicleCategory.GERMAN, ServiceType.TIRES).isEmpty());
+
+        providerService.createOrUpdateBusiness(providerId, request);
+        assertEquals(1, index.withinRadius(-45.0, -120.0, 1, VehicleCategory.GERMAN, ServiceType.TIRES).size());
+    }
+}
@@ -0,0 +1,207 @@
+package com.fixme.authservice.service;
+
+import com.fixme.authservice.dto.RequestStatusDelta;
+import com.fixme.authservice.dto.ServiceRequestResponse;
+import com.fixme.authservice.event.ServiceRequestEvent;
+import com.fixme.authservice.model.RequestStatus;
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestStatusStreamTest {
+
+    private static final Pattern ID = Pattern.compile("id:(\\S+)");
+
+    // REPLAY_SIZE in RequestStatusStream
+    private static final int REPLAY_SIZE = 64;
+
+    private RequestStatusStream stream = new RequestStatusStream(10_000);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        stream.shutdown();
+    }
+
+    // a reconnect with Last-Event-ID gets exactly what came after it, then the live events
+    @Test
+    void reconnectReplaysWhatWasMissed() throws Exception {
+        RecordingEmitter first = new RecordingEmitter();
+        stream.subscribe(1L, null, first);
+        for (long id = 1; id <= 3; id++) publish(1L, id);
+        publish(2L, 99);
+
+        first.next();
+        String secondId = id(first.next());
+        first.next();
+        assertNull(first.frames.poll(100, TimeUnit.MILLISECONDS), "other customers' events are not sent");
+
+        RecordingEmitter second = new RecordingEmitter();
+        stream.subscribe(1L, secondId, second);
+        assertTrue(second.next().contains("requestId=3"));
+        publish(1L, 4);
+        assertTrue(second.next().contains("requestId=4"));
+        assertNull(second.frames.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    // an id from another boot, or older than the replay buffer, asks the client to reload the list
+    @Test
+    void unknownOrEvictedIdIsAResync() throws Exception {
+        RecordingEmitter foreign = new RecordingEmitter();
+        stream.subscribe(1L, "oldboot-5", foreign);
+        assertTrue(foreign.next().contains("event:resync"));
+
+        RecordingEmitter first = new RecordingEmitter();
+        stream.subscribe(1L, null, first);
+        publish(1L, 1);
+        String firstId = id(first.next());
+        for (long id = 2; id <= REPLAY_SIZE + 2; id++) publish(1L, id);
+
+        RecordingEmitter late = new RecordingEmitter();
+        stream.subscribe(1L, firstId, late);
+        assertTrue(late.next().contains("event:resync"));
+        assertNull(late.frames.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    // a client that does not read fills its queue and is dropped; the publishing thread never waits for it
+    // and never touches its emitter, which is completed once the stuck send returns
+    @Test
+    void overflowingSubscriberIsDropped() throws Exception {
+        RecordingEmitter slow = new RecordingEmitter();
+        slow.block();
+        stream.subscribe(1L, null, slow);
+
+        publish(1L, 1);
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        for (long id = 2; id <= REPLAY_SIZE + 2; id++) publish(1L, id);
+
+        assertEquals(0, stream.subscriberCount(1L));
+        assertFalse(slow.completed.await(100, TimeUnit.MILLISECONDS));
+
+        slow.release();
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        String deliveredId = id(slow.next());
+        assertNull(slow.frames.poll(100, TimeUnit.MILLISECONDS), "nothing after the drop");
+
+        // the rest is no longer in the replay buffer
+        RecordingEmitter again = new RecordingEmitter();
+        stream.subscribe(1L, deliveredId, again);
+        assertTrue(again.next().contains("event:resync"));
+    }
+
+    // a write stuck longer than send-timeout-ms is noticed by the heartbeat
+    @Test
+    void stuckSendIsDroppedOnHeartbeat() throws Exception {
+        stream.shutdown();
+        stream = new RequestStatusStream(50);
+
+        RecordingEmitter stuck = new RecordingEmitter();
+        stuck.block();
+        stream.subscribe(1L, null, stuck);
+        RecordingEmitter healthy = new RecordingEmitter();
+        stream.subscribe(1L, null, healthy);
+
+        publish(1L, 1);
+        assertTrue(stuck.sending.await(5, TimeUnit.SECONDS));
+        healthy.next();
+        Thread.sleep(100);
+
+        stream.sendHeartbeats();
+        assertEquals(1, stream.subscriberCount(1L));
+        assertTrue(healthy.next().contains(":ping"));
+
+        stuck.release();
+        assertTrue(stuck.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shutdownCompletesSubscribers() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(1L, null, emitter);
+
+        stream.shutdown();
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    private void publish(long customerId, long requestId) {
+        ServiceRequestResponse r = new ServiceRequestResponse(requestId, customerId, 5L, 2L, "P-1", "Make", "Model",
+                2020, "flat tire", VehicleCategory.ALL, ServiceType.TIRES, 32.0, 35.0,
+                RequestStatus.WAITING_PROVIDER, null, LocalDateTime.now());
+        stream.onRequestChanged(new ServiceRequestEvent(r, RequestStatus.PENDING));
+    }
+
+    private static String id(String frame) {
+        Matcher m = ID.matcher(frame);
+        assertTrue(m.find(), frame);
+        return m.group(1);
+    }
+
+    // records the rendered frames instead of writing to a response; block() makes sends hang like a client
+    // that stopped reading
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            StringBuilder frame = new StringBuilder();
+            for (DataWithMediaType part : builder.build()) {
+                Object data = part.getData();
+                frame.append(data instanceof RequestStatusDelta d ? "requestId=" + d.getRequestId() : data);
+            }
+            frames.add(frame.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completed.countDown();
+        }
+
+        String next() throws InterruptedException {
+            String frame = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame, "no frame");
+            return frame;
+        }
+    }
+}
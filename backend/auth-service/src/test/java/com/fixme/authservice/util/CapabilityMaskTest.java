@@ -0,0 +1,81 @@
+package com.fixme.authservice.util;
+
+import com.fixme.authservice.model.ServiceType;
+import com.fixme.authservice.model.VehicleCategory;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapabilityMaskTest {
+
+    // capability_mask values already in the database: these must never move
+    @Test
+    void bitsArePinned() {
+        assertEquals(1L, CapabilityMask.categoryBit(VehicleCategory.ALL));
+        assertEquals(1L << 1, CapabilityMask.categoryBit(VehicleCategory.GERMAN));
+        assertEquals(1L << 5, CapabilityMask.categoryBit(VehicleCategory.ELECTRIC));
+        assertEquals(1L << 16, CapabilityMask.serviceBit(ServiceType.GARAGE));
+        assertEquals(1L << 19, CapabilityMask.serviceBit(ServiceType.TIRES));
+        assertEquals(1L << 22, CapabilityMask.serviceBit(ServiceType.TOWING));
+    }
+
+    @Test
+    void everyConstantHasItsOwnBitInItsRange() {
+        long seen = 0;
+        for (VehicleCategory c : VehicleCategory.values()) {
+            long bit = CapabilityMask.categoryBit(c);
+            assertEquals(1, Long.bitCount(bit));
+            assertTrue(bit < 1L << 16, c + " is outside the category bits");
+            assertEquals(0, seen & bit, c + " shares a bit");
+            seen |= bit;
+        }
+        for (ServiceType s : ServiceType.values()) {
+            long bit = CapabilityMask.serviceBit(s);
+            assertEquals(1, Long.bitCount(bit));
+            assertTrue(bit >= 1L << 16 && bit < 1L << 48, s + " is outside the service bits");
+            assertEquals(0, seen & bit, s + " shares a bit");
+            seen |= bit;
+        }
+    }
+
+    // the class-load check refuses positions that don't fit or collide
+    @Test
+    void invalidPositionsAreRefused() {
+        assertThrows(IllegalStateException.class, () -> CapabilityMask.claim(0, VehicleCategory.ALL, 16, 16, 0));
+        assertThrows(IllegalStateException.class, () -> CapabilityMask.claim(0, ServiceType.GARAGE, 32, 32, 16));
+        assertThrows(IllegalStateException.class, () -> CapabilityMask.claim(0, ServiceType.GARAGE, -1, 32, 16));
+        assertThrows(IllegalStateException.class, () -> CapabilityMask.claim(1L << 3, VehicleCategory.KOREAN, 3, 16, 0));
+        assertEquals(1L << 20, CapabilityMask.claim(0, ServiceType.GLASS, 4, 32, 16));
+    }
+
+    @Test
+    void setsRoundTrip() {
+        Set<VehicleCategory> categories = EnumSet.of(VehicleCategory.JAPANESE, VehicleCategory.ELECTRIC);
+        Set<ServiceType> services = EnumSet.of(ServiceType.BRAKES, ServiceType.TOWING);
+        long mask = CapabilityMask.of(categories, services);
+
+        assertEquals(categories, CapabilityMask.categories(mask));
+        assertEquals(services, CapabilityMask.services(mask));
+        assertEquals(0, CapabilityMask.of(null, null));
+        assertTrue(CapabilityMask.categories(0).isEmpty());
+    }
+
+    // provider serves the service, and either ALL vehicle types or the requested one
+    @Test
+    void matchesNeedsTheServiceAndTheCategoryOrAll() {
+        long japanese = CapabilityMask.of(Set.of(VehicleCategory.JAPANESE), Set.of(ServiceType.TIRES));
+        long all = CapabilityMask.of(Set.of(VehicleCategory.ALL), Set.of(ServiceType.TIRES));
+
+        assertTrue(CapabilityMask.matches(japanese, VehicleCategory.JAPANESE, ServiceType.TIRES));
+        assertFalse(CapabilityMask.matches(japanese, VehicleCategory.GERMAN, ServiceType.TIRES));
+        assertFalse(CapabilityMask.matches(japanese, VehicleCategory.JAPANESE, ServiceType.GLASS));
+        assertTrue(CapabilityMask.matches(all, VehicleCategory.GERMAN, ServiceType.TIRES));
+        assertFalse(CapabilityMask.matches(all, VehicleCategory.GERMAN, ServiceType.TOWING));
+    }
+}
@@ -0,0 +1,78 @@
+package com.fixme.authservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoGridTest {
+
+    // the bounding box constants and haversineKm describe the same sphere
+    @Test
+    void degreesMatchHaversine() {
+        assertEquals(GeoUtil.KM_PER_DEGREE, GeoUtil.haversineKm(0, 0, 1, 0), 1e-9);
+        assertEquals(GeoUtil.KM_PER_DEGREE, GeoUtil.haversineKm(0, 0, 0, 1), 1e-9);
+        assertEquals(25.0, GeoUtil.haversineKm(32, 35, 32 + GeoUtil.latDelta(25), 35), 1e-9);
+    }
+
+    // every point of the circle lies in one of the covered cells, also at high latitudes
+    // (where the circle's poleward edge needs the widest longitude span) and across the anti-meridian
+    @ParameterizedTest
+    @CsvSource({
+            "32.08, 34.78, 10",
+            "0, 0, 50",
+            "69.65, 18.96, 40",
+            "-77.85, 166.67, 60",
+            "84.0, 0, 100",
+            "-16.5, 179.98, 30",
+            "51.5, -179.99, 5"
+    })
+    void coveringCellsContainTheWholeCircle(double lat, double lng, double radiusKm) {
+        GeoGrid grid = new GeoGrid(0.05);
+        Set<Long> covered = new HashSet<>();
+        grid.forEachCellCovering(lat, lng, radiusKm, covered::add);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            // the edge itself most of the time: that is where a too narrow box misses
+            double distance = i % 4 == 0 ? random.nextDouble() * radiusKm : radiusKm * 0.999;
+            double[] p = destination(lat, lng, random.nextDouble() * 360, distance);
+            assertTrue(covered.contains(grid.cellOf(p[0], p[1])),
+                    "(" + p[0] + ", " + p[1] + ") at " + distance + " km is not covered");
+        }
+    }
+
+    @Test
+    void cellsAreStableAndWrapAroundTheAntiMeridian() {
+        GeoGrid grid = new GeoGrid(0.1);
+
+        assertEquals(grid.cellOf(32.01, 34.71), grid.cellOf(32.09, 34.79));
+        assertEquals(grid.cellOf(10, 180), grid.cellOf(10, -180));
+
+        long cell = grid.cellOf(32.05, 34.75);
+        assertEquals(32.05, grid.cellCenterLat(cell), 1e-9);
+        assertEquals(34.75, grid.cellCenterLng(cell), 1e-9);
+        // a corner of the cell is within cellRadiusKm of its center
+        assertTrue(GeoUtil.haversineKm(32.05, 34.75, 32.0, 34.8) <= grid.cellRadiusKm(cell) + 1e-9);
+    }
+
+    // point reached from (lat, lng) going distanceKm on the initial bearing (great circle)
+    private static double[] destination(double lat, double lng, double bearingDeg, double distanceKm) {
+        double d = distanceKm / GeoUtil.EARTH_RADIUS_KM;
+        double b = Math.toRadians(bearingDeg);
+        double lat1 = Math.toRadians(lat);
+        double lng1 = Math.toRadians(lng);
+
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(d) + Math.cos(lat1) * Math.sin(d) * Math.cos(b));
+        double lng2 = lng1 + Math.atan2(Math.sin(b) * Math.sin(d) * Math.cos(lat1),
+                Math.cos(d) - Math.sin(lat1) * Math.sin(lat2));
+        double lngDeg = Math.toDegrees(lng2);
+        return new double[]{Math.toDegrees(lat2), ((lngDeg + 540) % 360) - 180};
+    }
+}
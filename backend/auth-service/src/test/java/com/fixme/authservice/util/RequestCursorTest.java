@@ -0,0 +1,31 @@
+package com.fixme.authservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestCursorTest {
+
+    @Test
+    void roundTripsExactly() {
+        RequestCursor c = new RequestCursor(LocalDateTime.of(2026, 3, 14, 15, 9, 26, 535_897_000), 42);
+        assertEquals(c, RequestCursor.decode(c.encode()));
+        assertEquals(RequestCursor.START, RequestCursor.decode(null));
+        assertEquals(RequestCursor.START, RequestCursor.decode(""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"abc", ".5-1", "12-1", "12.5", "12.x-1", "12.5-x", "12.2000000000-1",
+            "99999999999999999999.0-1", "12.-1-1"})
+    void malformedCursorIsABadRequest(String cursor) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> RequestCursor.decode(cursor));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+}
@@ -0,0 +1,139 @@
+package com.fixme.authservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeeklyScheduleTest {
+
+    private static final String[] KEYS = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    // the bitmap answers exactly like the old per-request parsing, for every minute of the week:
+    // normal days, an overnight range, equal open/close (closed) and missing days
+    @Test
+    void bitmapMatchesThePreviousRules() {
+        String[][] hours = {
+                {"09:00", "18:00"},
+                {"22:00", "02:00"},
+                {"10:00", "10:00"},
+                null,
+                {"00:00", "23:59"},
+                {"08:30", "13:15"},
+                {"23:00", "00:00"}
+        };
+        StringBuilder json = new StringBuilder("{");
+        for (int d = 0; d < 7; d++) {
+            if (hours[d] == null) continue;
+            if (json.length() > 1) json.append(',');
+            json.append('"').append(KEYS[d]).append("\":{\"open\":\"").append(hours[d][0])
+                    .append("\",\"close\":\"").append(hours[d][1]).append("\"}");
+        }
+        WeeklySchedule schedule = OpeningHoursUtil.compile(json.append('}').toString());
+
+        for (int m = 0; m < WeeklySchedule.MINUTES_PER_WEEK; m++) {
+            String[] day = hours[m / WeeklySchedule.MINUTES_PER_DAY];
+            LocalTime t = LocalTime.ofSecondOfDay((m % WeeklySchedule.MINUTES_PER_DAY) * 60L);
+            assertEquals(day != null && previouslyOpen(day[0], day[1], t), schedule.isOpenAt(m), "minute " + m);
+        }
+    }
+
+    // 22:00-02:00 on Tuesday: open late Tuesday and early Tuesday morning (same day, like before), not Wednesday
+    @Test
+    void overnightRangeStaysOnTheSameDay() {
+        WeeklySchedule schedule = WeeklySchedule.builder().day(DayOfWeek.TUESDAY, 22 * 60, 2 * 60).build();
+
+        assertTrue(schedule.isOpenAt(at(DayOfWeek.TUESDAY, 23, 30)));
+        assertTrue(schedule.isOpenAt(at(DayOfWeek.TUESDAY, 1, 59)));
+        assertFalse(schedule.isOpenAt(at(DayOfWeek.TUESDAY, 2, 0)));
+        assertFalse(schedule.isOpenAt(at(DayOfWeek.TUESDAY, 21, 59)));
+        assertFalse(schedule.isOpenAt(at(DayOfWeek.WEDNESDAY, 1, 0)));
+        assertFalse(schedule.isAlwaysClosed());
+    }
+
+    @Test
+    void equalOpenAndCloseIsClosed() {
+        WeeklySchedule schedule = OpeningHoursUtil.compile("{\"SUN\":{\"open\":\"09:00\",\"close\":\"09:00\"}}");
+        assertTrue(schedule.isAlwaysClosed());
+    }
+
+    // the last minute of Sunday is the last bit of the bitmap
+    @Test
+    void weekBoundaries() {
+        WeeklySchedule schedule = WeeklySchedule.builder()
+                .day(DayOfWeek.MONDAY, 0, 1)
+                .day(DayOfWeek.SUNDAY, 23 * 60 + 59, 24 * 60)
+                .build();
+
+        assertTrue(schedule.isOpenAt(0));
+        assertFalse(schedule.isOpenAt(1));
+        assertTrue(schedule.isOpenAt(WeeklySchedule.MINUTES_PER_WEEK - 1));
+        assertFalse(schedule.isOpenAt(WeeklySchedule.MINUTES_PER_WEEK - 2));
+
+        ZoneId zone = OpeningHoursUtil.ZONE;
+        assertEquals(0, WeeklySchedule.minuteOfWeek(ZonedDateTime.of(2026, 10, 19, 0, 0, 0, 0, zone)));
+        assertEquals(WeeklySchedule.MINUTES_PER_WEEK - 1,
+                WeeklySchedule.minuteOfWeek(ZonedDateTime.of(2026, 10, 25, 23, 59, 59, 0, zone)));
+    }
+
+    @Test
+    void emptyMeansClosed() {
+        assertTrue(OpeningHoursUtil.compile(null).isAlwaysClosed());
+        assertTrue(OpeningHoursUtil.compile("  ").isAlwaysClosed());
+        assertTrue(OpeningHoursUtil.compile("{}").isAlwaysClosed());
+        assertTrue(OpeningHoursUtil.compile("{\"MON\":null}").isAlwaysClosed());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Sun-Thu 09:00-18:00",
+            "{\"XYZ\":{\"open\":\"09:00\",\"close\":\"18:00\"}}",
+            "{\"MON\":{\"open\":\"09:00\"}}",
+            "{\"MON\":{\"open\":\"9am\",\"close\":\"18:00\"}}"
+    })
+    void malformedIsRejected(String json) {
+        assertThrows(IllegalArgumentException.class, () -> OpeningHoursUtil.compile(json));
+        // the read path still treats it as closed
+        assertFalse(OpeningHoursUtil.isOpenNow(json, OpeningHoursUtil.ZONE));
+    }
+
+    // opening_minutes as the database backend reads it: minute m = bit (m % 8) of byte (m / 8)
+    @Test
+    void storedBytesRoundTripAndMatchTheSqlLayout() {
+        WeeklySchedule schedule = OpeningHoursUtil.compile(
+                "{\"MON\":{\"open\":\"09:00\",\"close\":\"18:00\"},\"SAT\":{\"open\":\"22:00\",\"close\":\"02:00\"}}");
+        byte[] bytes = schedule.toBytes();
+        WeeklySchedule loaded = WeeklySchedule.fromBytes(bytes);
+
+        assertEquals(WeeklySchedule.BYTES, bytes.length);
+        for (int m = 0; m < WeeklySchedule.MINUTES_PER_WEEK; m++) {
+            boolean sqlOpen = (bytes[m / 8] & (1 << (m % 8))) != 0;
+            assertEquals(schedule.isOpenAt(m), sqlOpen, "minute " + m);
+            assertEquals(schedule.isOpenAt(m), loaded.isOpenAt(m), "minute " + m);
+        }
+        assertThrows(IllegalArgumentException.class, () -> WeeklySchedule.fromBytes(new byte[12]));
+    }
+
+    private static int at(DayOfWeek day, int hour, int minute) {
+        return (day.getValue() - 1) * WeeklySchedule.MINUTES_PER_DAY + hour * 60 + minute;
+    }
+
+    // OpeningHoursUtil.isOpenNow before the bitmap
+    private static boolean previouslyOpen(String openStr, String closeStr, LocalTime t) {
+        LocalTime open = LocalTime.parse(openStr);
+        LocalTime close = LocalTime.parse(closeStr);
+        if (close.isAfter(open) || close.equals(open)) {
+            return !t.isBefore(open) && t.isBefore(close);
+        }
+        return !t.isBefore(open) || t.isBefore(close);
+    }
+}